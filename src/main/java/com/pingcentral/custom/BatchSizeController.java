@@ -0,0 +1,129 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Decides how many rows the reader of a table puts into the next batch. The writer reports the rows, estimated bytes and
+ * duration of each batch it wrote, see {@link #record(int, long, long)}.
+ * <ul>
+ *     <li>A batch never exceeds the byte budget, based on the average size of the rows seen so far</li>
+ *     <li>With {@link Config#isAdaptiveBatchSize()} the size is adjusted every few batches: it keeps growing (or shrinking)
+ *     while the throughput improves and turns around once it drops. Batches that take longer than
+ *     {@link #TARGET_BATCH_NANOS} are shrunk</li>
+ * </ul>
+ * The reader and writer of one table share an instance
+ */
+final class BatchSizeController {
+
+    private static final Logger LOGGER = Logger.getLogger(BatchSizeController.class.getName());
+
+    static final long TARGET_BATCH_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /**
+     * The number of batches that are measured before the size is adjusted, single batches are too noisy
+     */
+    private static final int SAMPLE_BATCHES = 3;
+
+    /**
+     * Throughput changes below this ratio are treated as noise
+     */
+    private static final double TOLERANCE = 0.05;
+
+    private final String tableName;
+    private final boolean adaptive;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxBytes;
+    private volatile int size;
+    private volatile long bytesPerRow;
+    private int direction;
+    private double lastRowsPerNano;
+    private int sampleBatches;
+    private long sampleRows;
+    private long sampleNanos;
+    private long slowestNanos;
+
+    /**
+     * @param tableName The table, used for logging
+     * @param maxBytes  The byte budget of a batch
+     */
+    BatchSizeController(String tableName, Config config, long maxBytes) {
+        this.tableName = tableName;
+        this.adaptive = config.isAdaptiveBatchSize();
+        this.minSize = adaptive ? config.getMinBatchSize() : config.getBatchSize();
+        this.maxSize = adaptive ? config.getMaxBatchSize() : config.getBatchSize();
+        this.maxBytes = maxBytes;
+        this.size = config.getBatchSize();
+        this.direction = 1;
+    }
+
+    /**
+     * @return The number of rows for the next batch
+     */
+    int nextBatchSize() {
+        long perRow = bytesPerRow;
+        if (perRow <= 0) {
+            return size;
+        }
+        return (int) Math.max(1, Math.min(size, maxBytes / perRow));
+    }
+
+    /**
+     * @return The estimated bytes a batch may hold, see {@link RowBatch#getBytes()}
+     */
+    long getMaxBytes() {
+        return maxBytes;
+    }
+
+    int getBatchSize() {
+        return size;
+    }
+
+    /**
+     * Called by the writer after a batch was written
+     *
+     * @param rows  The rows of the batch
+     * @param bytes The estimated bytes of the batch
+     * @param nanos The time it took to write the batch
+     */
+    void record(int rows, long bytes, long nanos) {
+        if (rows == 0) {
+            return;
+        }
+        long perRow = Math.max(1, bytes / rows);
+        bytesPerRow = bytesPerRow == 0 ? perRow : (bytesPerRow * 3 + perRow) / 4;
+        // the last batch of a table is usually smaller and says nothing about the configured size
+        if (!adaptive || rows < nextBatchSize() / 2) {
+            return;
+        }
+        sampleBatches++;
+        sampleRows += rows;
+        sampleNanos += nanos;
+        slowestNanos = Math.max(slowestNanos, nanos);
+        if (sampleBatches < SAMPLE_BATCHES) {
+            return;
+        }
+        double rowsPerNano = (double) sampleRows / Math.max(1, sampleNanos);
+        if (slowestNanos > TARGET_BATCH_NANOS) {
+            direction = -1;
+        } else if (lastRowsPerNano > 0 && rowsPerNano < lastRowsPerNano * (1 - TOLERANCE)) {
+            direction = -direction;
+        }
+        lastRowsPerNano = rowsPerNano;
+        sampleBatches = 0;
+        sampleRows = 0;
+        sampleNanos = 0;
+        slowestNanos = 0;
+        int next = Math.max(minSize, Math.min(maxSize, direction > 0 ? size + Math.max(1, size / 2) : size * 2 / 3));
+        if (next == size) {
+            // reached a bound, try the other way next time
+            direction = -direction;
+        } else {
+            LOGGER.fine(String.format("Table: %s, batch size %d -> %d, %.0f rows/s, %d bytes per row", tableName, size, next, rowsPerNano * 1e9, bytesPerRow));
+            size = next;
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.Dialect;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Prepares the target for loading a lot of rows and restores it afterwards, see {@link Config#getBulkLoadMode()}:
+ * <ul>
+ *     <li>checks: foreign keys (and on MySQL/MariaDB unique keys) are not checked while rows are written. MySQL/MariaDB use
+ *     FOREIGN_KEY_CHECKS=0 and UNIQUE_CHECKS=0, PostgreSQL session_replication_role=replica, H2 REFERENTIAL_INTEGRITY FALSE.
+ *     Foreign keys are verified once all tables are loaded. session_replication_role requires superuser privileges, without
+ *     them PostgreSQL rows are written with checks</li>
+ *     <li>indexes: as checks, PostgreSQL additionally drops secondary indexes and rebuilds them in parallel afterwards</li>
+ * </ul>
+ * All tables are analyzed at the end. Each step is logged with its duration
+ */
+final class BulkLoad {
+
+    private static final Logger LOGGER = Logger.getLogger(BulkLoad.class.getName());
+
+    private final String mode;
+    private final Dialect dialect;
+    private final Connection connection;
+    private final List<String> tableNames;
+    private final int workers;
+    private final Map<String, String> droppedIndexes;
+    private boolean sessionChecksOff;
+
+    /**
+     * @param config     The configuration
+     * @param connection The target connection created by {@link DatabaseManager#initDb(boolean, boolean)}
+     * @param tableNames The target tables that are loaded
+     */
+    BulkLoad(Config config, Connection connection, List<String> tableNames) {
+        this.mode = config.getBulkLoadMode();
+        this.dialect = config.getTargetDatabases().get(0).getDialect();
+        this.connection = connection;
+        this.tableNames = tableNames;
+        this.workers = config.getParallelWorkers();
+        this.droppedIndexes = new LinkedHashMap<>();
+        this.sessionChecksOff = dialect == Dialect.MYSQL || dialect == Dialect.POSTGRESQL;
+    }
+
+    boolean isEnabled() {
+        return !Config.BULK_LOAD_MODE_OFF.equals(mode);
+    }
+
+    /**
+     * Runs before the first row is written
+     */
+    void prepare() throws SQLException {
+        if (!isEnabled()) {
+            return;
+        }
+        long started = System.nanoTime();
+        if (dialect == Dialect.H2) {
+            execute(connection, "SET REFERENTIAL_INTEGRITY FALSE");
+        }
+        if (dialect == Dialect.POSTGRESQL) {
+            sessionChecksOff = canSetReplicationRole();
+        }
+        if (Config.BULK_LOAD_MODE_INDEXES.equals(mode)) {
+            if (dialect == Dialect.POSTGRESQL) {
+                dropSecondaryIndexes();
+            } else {
+                LOGGER.warning(String.format("Dropping indexes is only supported for PostgreSQL, {bulk_load_mode} '%s' only disables checks", mode));
+            }
+        }
+        LOGGER.info(String.format("Bulk load: target prepared in %d ms, %d indexes dropped", millisSince(started), droppedIndexes.size()));
+    }
+
+    /**
+     * @return Connections with checks turned off for the session while they are in use
+     */
+    ConnectionProvider sessions(ConnectionProvider connections) {
+        if (!isEnabled() || !sessionChecksOff) {
+            return connections;
+        }
+        return new ConnectionProvider() {
+            @Override
+            public Connection acquire() throws SQLException {
+                Connection next = connections.acquire();
+                if (dialect == Dialect.MYSQL) {
+                    execute(next, "SET FOREIGN_KEY_CHECKS=0, UNIQUE_CHECKS=0");
+                } else {
+                    execute(next, "SET session_replication_role = replica");
+                }
+                return next;
+            }
+
+            @Override
+            public void release(Connection next) {
+                try {
+                    if (dialect == Dialect.MYSQL) {
+                        execute(next, "SET FOREIGN_KEY_CHECKS=1, UNIQUE_CHECKS=1");
+                    } else {
+                        execute(next, "SET session_replication_role = DEFAULT");
+                    }
+                } catch (SQLException e) {
+                    LOGGER.warning(String.format("The checks of a target connection could not be turned on again, error: %s", e.getMessage()));
+                }
+                connections.release(next);
+            }
+        };
+    }
+
+    /**
+     * Runs after all rows were written, also if the transfer failed: rebuilds dropped indexes, turns checks on again,
+     * verifies foreign keys and analyzes all tables
+     *
+     * @param connections Provides the connections for rebuilding indexes in parallel
+     */
+    void finish(ConnectionProvider connections) {
+        if (!isEnabled()) {
+            return;
+        }
+        long started = System.nanoTime();
+        rebuildIndexes(connections);
+        LOGGER.info(String.format("Bulk load: %d indexes rebuilt in %d ms", droppedIndexes.size(), millisSince(started)));
+        started = System.nanoTime();
+        if (dialect == Dialect.H2) {
+            try {
+                execute(connection, "SET REFERENTIAL_INTEGRITY TRUE");
+            } catch (SQLException e) {
+                LOGGER.warning(String.format("Referential integrity could not be turned on again, error: %s", e.getMessage()));
+            }
+        }
+        int violations = verifyForeignKeys();
+        LOGGER.info(String.format("Bulk load: foreign keys verified in %d ms, %d violations", millisSince(started), violations));
+        started = System.nanoTime();
+        for (String tableName : tableNames) {
+            try {
+                execute(connection, dialect == Dialect.POSTGRESQL ? String.format("ANALYZE %s", tableName) : String.format("ANALYZE TABLE %s", tableName));
+            } catch (SQLException e) {
+                LOGGER.warning(String.format("Table: %s, could not be analyzed, error: %s", tableName, e.getMessage()));
+            }
+        }
+        LOGGER.info(String.format("Bulk load: %d tables analyzed in %d ms", tableNames.size(), millisSince(started)));
+    }
+
+    /**
+     * Tries session_replication_role once on the connection of {@link #prepare()} instead of failing the first table
+     *
+     * @return False if the user is not allowed to set it, the rows are then written with checks
+     */
+    private boolean canSetReplicationRole() throws SQLException {
+        try {
+            execute(connection, "SET session_replication_role = replica");
+            execute(connection, "SET session_replication_role = DEFAULT");
+            return true;
+        } catch (SQLException e) {
+            if (!connection.getAutoCommit()) {
+                JdbcHelper.rollbackQuietly(connection);
+            }
+            LOGGER.warning(String.format("Bulk load: session_replication_role could not be set, it requires superuser privileges. Foreign keys are checked while rows are written, error: %s", e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Indexes that back a primary key or unique constraint are kept. The definitions are logged so that they can be
+     * recreated manually if the tool is stopped before {@link #finish(ConnectionProvider)} runs
+     */
+    private void dropSecondaryIndexes() throws SQLException {
+        String query = "SELECT i.indexname, i.indexdef FROM pg_indexes i WHERE i.schemaname = current_schema() AND i.tablename = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = (quote_ident(i.schemaname) || '.' || quote_ident(i.indexname))::regclass)";
+        try (PreparedStatement stmt = connection.prepareStatement(query)) {
+            for (String tableName : tableNames) {
+                stmt.setString(1, tableName.toLowerCase(Locale.ROOT));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        droppedIndexes.put(rs.getString(1), rs.getString(2));
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, String> index : droppedIndexes.entrySet()) {
+            LOGGER.info(String.format("Bulk load: dropping index, it is recreated with: %s", index.getValue()));
+            execute(connection, String.format("DROP INDEX %s", index.getKey()));
+        }
+    }
+
+    private void rebuildIndexes(ConnectionProvider connections) {
+        if (droppedIndexes.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, droppedIndexes.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (String indexDef : droppedIndexes.values()) {
+                futures.add(executor.submit(() -> {
+                    Connection next = connections.acquire();
+                    try {
+                        execute(next, indexDef);
+                    } finally {
+                        connections.release(next);
+                    }
+                    return null;
+                }));
+            }
+            Iterator<String> indexDefs = droppedIndexes.values().iterator();
+            for (Future<?> future : futures) {
+                String indexDef = indexDefs.next();
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    LOGGER.warning(String.format("The index could not be recreated, run it manually: %s, error: %s", indexDef, e.getMessage()));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Counts the rows whose foreign key values do not exist in the referenced table, for each foreign key of each table
+     *
+     * @return The number of violating rows
+     */
+    private int verifyForeignKeys() {
+        int violations = 0;
+        for (String tableName : tableNames) {
+            try {
+                for (Map.Entry<String, List<String[]>> foreignKey : importedKeys(tableName).entrySet()) {
+                    violations += countViolations(tableName, foreignKey.getKey(), foreignKey.getValue());
+                }
+            } catch (SQLException e) {
+                LOGGER.warning(String.format("Table: %s, foreign keys could not be verified, error: %s", tableName, e.getMessage()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * @return For each foreign key the referenced table, referenced column and referencing column of each key column
+     */
+    private Map<String, List<String[]>> importedKeys(String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        String name = metaData.storesUpperCaseIdentifiers() ? tableName.toUpperCase(Locale.ROOT) : metaData.storesLowerCaseIdentifiers() ? tableName.toLowerCase(Locale.ROOT) : tableName;
+        Map<String, List<String[]>> foreignKeys = new LinkedHashMap<>();
+        try (ResultSet rs = metaData.getImportedKeys(connection.getCatalog(), connection.getSchema(), name)) {
+            while (rs.next()) {
+                foreignKeys.computeIfAbsent(rs.getString("FK_NAME"), k -> new ArrayList<>())
+                        .add(new String[]{rs.getString("PKTABLE_NAME"), rs.getString("PKCOLUMN_NAME"), rs.getString("FKCOLUMN_NAME")});
+            }
+        }
+        return foreignKeys;
+    }
+
+    private int countViolations(String tableName, String foreignKeyName, List<String[]> columns) throws SQLException {
+        StringBuilder notNull = new StringBuilder();
+        StringBuilder join = new StringBuilder();
+        for (String[] column : columns) {
+            notNull.append(notNull.length() == 0 ? "" : " AND ").append(String.format("c.%s IS NOT NULL", column[2]));
+            join.append(join.length() == 0 ? "" : " AND ").append(String.format("p.%s = c.%s", column[1], column[2]));
+        }
+        String query = String.format("SELECT COUNT(*) FROM %s c WHERE %s AND NOT EXISTS (SELECT 1 FROM %s p WHERE %s)", tableName, notNull, columns.get(0)[0], join);
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            int count = rs.next() ? rs.getInt(1) : 0;
+            if (count > 0) {
+                LOGGER.warning(String.format("Table: %s, %d rows violate foreign key %s", tableName, count, foreignKeyName));
+            }
+            return count;
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static long millisSince(long started) {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
@@ -0,0 +1,423 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.Dialect;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Captures the inserts, updates and deletes that are applied to the source tables while they are copied and replays them
+ * on the target afterwards, see {@link Config#isChangeCapture()}. Each source table with a primary key gets a change table
+ * ({@value #CHANGES}n) and triggers ({@value #TRIGGER}n) that record the key of every row that changes:
+ * <ul>
+ *     <li>PostgreSQL: one trigger that calls a PL/pgSQL function of the same name</li>
+ *     <li>MySQL/MariaDB: one trigger per operation, suffixed with _i, _u and _d</li>
+ *     <li>H2: one trigger implemented by {@link ChangeCaptureTrigger}, it has to be on the classpath of the database</li>
+ * </ul>
+ * A replay reads the recorded keys, copies the current source rows of these keys to the target with
+ * {@link Config#DUPLICATE_HANDLING_UPDATE} and deletes the target rows whose key does not exist in the source anymore.
+ * The recorded keys are removed once they were replayed, keys recorded in the meantime are left for the next replay.
+ * Changes are replayed at least once, a row that changed again is copied in its latest state. All triggers and change
+ * tables are dropped when the capture is closed, leftovers of an earlier capture are dropped before it starts
+ */
+final class ChangeCapture implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeCapture.class.getName());
+
+    static final String CHANGES = "dbmerger_changes_";
+    static final String TRIGGER = "dbmerger_capture_";
+    static final String SEQ = "dbmerger_seq";
+    static final String OP = "dbmerger_op";
+
+    private final Config config;
+    private final Dialect dialect;
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final List<Capture> captures;
+
+    private ChangeCapture(Config config, ConnectionPool pool, Connection connection) {
+        this.config = config;
+        this.dialect = config.getSourceDatabase().getDialect();
+        this.pool = pool;
+        this.connection = connection;
+        this.captures = new ArrayList<>();
+    }
+
+    /**
+     * Installs the triggers. Changes applied to the source afterwards are captured
+     *
+     * @param tablePairs   The tables that are copied
+     * @param dependencies The tables each table references, see {@link TransferPlan#getTableDependencies()}
+     * @return The capture, it uses a connection of its own
+     * @throws SQLException If a trigger could not be installed, the triggers installed before are dropped again
+     */
+    static ChangeCapture start(Config config, List<TransferPlan.TablePair> tablePairs, Map<String, Set<String>> dependencies) throws SQLException {
+        ConnectionPool pool = new ConnectionPool(config.getSourceDatabase(), 1);
+        ChangeCapture capture;
+        try {
+            capture = new ChangeCapture(config, pool, pool.acquire());
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+        try {
+            int index = 1;
+            for (TransferPlan.TablePair tablePair : ordered(tablePairs, dependencies)) {
+                Capture next = new Capture(tablePair, index++);
+                capture.drop(next);
+                if (next.sourceKey.isEmpty()) {
+                    LOGGER.warning(String.format("Table %s has no primary key, its changes are not captured", tablePair.getSourceTable().getTableName()));
+                } else if (next.targetKey.size() != next.sourceKey.size()) {
+                    LOGGER.warning(String.format("Table %s has a different primary key in the target, its changes are not captured", tablePair.getSourceTable().getTableName()));
+                } else {
+                    capture.captures.add(next);
+                    capture.install(next);
+                }
+            }
+        } catch (SQLException e) {
+            capture.close();
+            throw e;
+        }
+        LOGGER.info(String.format("Change capture: triggers installed on %d tables", capture.captures.size()));
+        return capture;
+    }
+
+    /**
+     * Replays the changes that were captured so far, at most {@link Config#getCommitEvery()} per table. Rows are written in
+     * the order of the table dependencies, deleted in the reverse order
+     *
+     * @param target The target connection
+     * @return The number of changes that were replayed, 0 if none were captured
+     * @throws Exception If reading or writing failed. The changes that were not replayed remain in the change tables,
+     *                   call {@link #keep()} instead of {@link #close()} to not lose them
+     */
+    int replay(Connection target, RejectFile rejects, CheckpointFile checkpoints, MemoryGovernor memory) throws Exception {
+        List<Replay> replays = new ArrayList<>();
+        for (Capture capture : captures) {
+            Replay replay = read(capture);
+            if (!replay.seqs.isEmpty()) {
+                replays.add(replay);
+            }
+        }
+        for (Replay replay : replays) {
+            long started = System.nanoTime();
+            replay.written = new TableTransfer(replay.capture.tablePair, connection, target, config, rejects, checkpoints, null, memory, null, replay).run().getRows();
+            replay.elapsedNanos = System.nanoTime() - started;
+        }
+        int changes = 0;
+        for (int i = replays.size() - 1; i >= 0; i--) {
+            Replay replay = replays.get(i);
+            long started = System.nanoTime();
+            replay.deleted = deleteRemoved(replay, target);
+            remove(replay);
+            replay.elapsedNanos += System.nanoTime() - started;
+            changes += replay.seqs.size();
+        }
+        for (Replay replay : replays) {
+            LOGGER.info(String.format("Change capture: table %s, %d changes replayed (%d inserts, %d updates, %d deletes), %d rows written, %d rows deleted, duration: %d ms",
+                    replay.capture.tablePair.getTargetTable().getTableName(), replay.seqs.size(), replay.count('I'), replay.count('U'), replay.count('D'),
+                    replay.written, replay.deleted, replay.elapsedNanos / 1_000_000));
+        }
+        return changes;
+    }
+
+    /**
+     * @return The number of changes that are captured but not replayed yet
+     */
+    long pending() throws SQLException {
+        long pending = 0;
+        try (Statement stmt = connection.createStatement()) {
+            for (Capture capture : captures) {
+                try (ResultSet rs = stmt.executeQuery(String.format("SELECT COUNT(*) FROM %s%d", CHANGES, capture.index))) {
+                    rs.next();
+                    pending += rs.getLong(1);
+                }
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Drops all triggers and change tables. Changes that were not replayed are lost
+     */
+    @Override
+    public void close() {
+        for (Capture capture : captures) {
+            try {
+                drop(capture);
+            } catch (SQLException e) {
+                LOGGER.warning(String.format("Change capture: the trigger %s%d or change table %s%d of table %s could not be dropped, error: %s",
+                        TRIGGER, capture.index, CHANGES, capture.index, capture.tablePair.getSourceTable().getTableName(), e.getMessage()));
+            }
+        }
+        LOGGER.info(String.format("Change capture: triggers removed from %d tables", captures.size()));
+        pool.release(connection);
+        pool.close();
+    }
+
+    /**
+     * Closes the connection but keeps the triggers and change tables, the source goes on recording its changes. Their
+     * names are logged, they have to be replayed or dropped by hand
+     */
+    void keep() {
+        for (Capture capture : captures) {
+            LOGGER.warning(String.format("Change capture: the trigger %s%d and change table %s%d of table %s are kept",
+                    TRIGGER, capture.index, CHANGES, capture.index, capture.tablePair.getSourceTable().getTableName()));
+        }
+        pool.release(connection);
+        pool.close();
+    }
+
+    private void install(Capture capture) throws SQLException {
+        String table = capture.tablePair.getSourceTable().getTableName();
+        String changes = CHANGES + capture.index;
+        String trigger = TRIGGER + capture.index;
+        String keys = String.join(",", capture.sourceKey);
+        execute(String.format("CREATE TABLE %s AS SELECT %s FROM %s WHERE 1=0", changes, keys, table));
+        switch (dialect) {
+            case POSTGRESQL:
+                execute(String.format("ALTER TABLE %s ADD COLUMN %s BIGSERIAL PRIMARY KEY, ADD COLUMN %s CHAR(1)", changes, SEQ, OP));
+                break;
+            case MYSQL:
+                execute(String.format("ALTER TABLE %s ADD COLUMN %s BIGINT AUTO_INCREMENT PRIMARY KEY, ADD COLUMN %s CHAR(1)", changes, SEQ, OP));
+                break;
+            default:
+                execute(String.format("ALTER TABLE %s ADD COLUMN %s BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY", changes, SEQ));
+                execute(String.format("ALTER TABLE %s ADD COLUMN %s CHAR(1)", changes, OP));
+        }
+        // the replay looks up the changes of each row of the table
+        execute(String.format("CREATE INDEX %s_k ON %s (%s)", changes, changes, keys));
+        String insert = String.format("INSERT INTO %s (%s,%s) VALUES", changes, OP, keys);
+        switch (dialect) {
+            case POSTGRESQL:
+                execute(String.format("CREATE FUNCTION %s() RETURNS trigger AS $$ BEGIN "
+                                + "IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND (%s) IS DISTINCT FROM (%s)) THEN %s (left(TG_OP, 1),%s); END IF; "
+                                + "IF TG_OP <> 'DELETE' THEN %s (left(TG_OP, 1),%s); END IF; "
+                                + "RETURN NULL; END $$ LANGUAGE plpgsql",
+                        trigger, columns("OLD.", capture.sourceKey), columns("NEW.", capture.sourceKey),
+                        insert, columns("OLD.", capture.sourceKey), insert, columns("NEW.", capture.sourceKey)));
+                execute(String.format("CREATE TRIGGER %s AFTER INSERT OR UPDATE OR DELETE ON %s FOR EACH ROW EXECUTE PROCEDURE %s()", trigger, table, trigger));
+                break;
+            case MYSQL:
+                StringBuilder same = new StringBuilder();
+                for (String key : capture.sourceKey) {
+                    same.append(same.length() == 0 ? "" : " AND ").append(String.format("OLD.%s <=> NEW.%s", key, key));
+                }
+                execute(String.format("CREATE TRIGGER %s_i AFTER INSERT ON %s FOR EACH ROW %s ('I',%s)", trigger, table, insert, columns("NEW.", capture.sourceKey)));
+                execute(String.format("CREATE TRIGGER %s_u AFTER UPDATE ON %s FOR EACH ROW BEGIN IF NOT (%s) THEN %s ('U',%s); END IF; %s ('U',%s); END",
+                        trigger, table, same, insert, columns("OLD.", capture.sourceKey), insert, columns("NEW.", capture.sourceKey)));
+                execute(String.format("CREATE TRIGGER %s_d AFTER DELETE ON %s FOR EACH ROW %s ('D',%s)", trigger, table, insert, columns("OLD.", capture.sourceKey)));
+                break;
+            default:
+                execute(String.format("CREATE TRIGGER %s AFTER INSERT, UPDATE, DELETE ON %s FOR EACH ROW CALL '%s'", trigger, table, ChangeCaptureTrigger.class.getName()));
+        }
+    }
+
+    private void drop(Capture capture) throws SQLException {
+        String table = capture.tablePair.getSourceTable().getTableName();
+        String trigger = TRIGGER + capture.index;
+        switch (dialect) {
+            case POSTGRESQL:
+                execute(String.format("DROP TRIGGER IF EXISTS %s ON %s", trigger, table));
+                execute(String.format("DROP FUNCTION IF EXISTS %s()", trigger));
+                break;
+            case MYSQL:
+                for (String suffix : new String[]{"_i", "_u", "_d"}) {
+                    execute(String.format("DROP TRIGGER IF EXISTS %s%s", trigger, suffix));
+                }
+                break;
+            default:
+                execute(String.format("DROP TRIGGER IF EXISTS %s", trigger));
+        }
+        execute(String.format("DROP TABLE IF EXISTS %s%d", CHANGES, capture.index));
+    }
+
+    /**
+     * @return The changes captured for the table so far, in the order they were recorded
+     */
+    private Replay read(Capture capture) throws SQLException {
+        Replay replay = new Replay(capture);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.setMaxRows(config.getCommitEvery());
+            try (ResultSet rs = stmt.executeQuery(String.format("SELECT %s,%s FROM %s%d ORDER BY %s", SEQ, OP, CHANGES, capture.index, SEQ))) {
+                while (rs.next()) {
+                    replay.seqs.add(rs.getLong(1));
+                    replay.ops.append(rs.getString(2));
+                }
+            }
+        }
+        return replay;
+    }
+
+    /**
+     * Deletes the target rows of the replayed changes whose key does not exist in the source
+     *
+     * @return The number of deleted rows
+     */
+    private long deleteRemoved(Replay replay, Connection target) throws SQLException {
+        Capture capture = replay.capture;
+        StringBuilder on = new StringBuilder();
+        for (String key : capture.sourceKey) {
+            on.append(String.format(" AND t.%s = c.%s", key, key));
+        }
+        String removed = String.format("SELECT DISTINCT %s FROM %s%d c WHERE c.%s >= ? AND c.%s <= ? AND NOT EXISTS (SELECT 1 FROM %s t WHERE %s)",
+                columns("c.", capture.sourceKey), CHANGES, capture.index, SEQ, SEQ, capture.tablePair.getSourceTable().getTableName(), on.substring(" AND ".length()));
+        StringBuilder where = new StringBuilder();
+        for (String key : capture.targetKey) {
+            where.append(where.length() == 0 ? "" : " AND ").append(String.format("%s = ?", key));
+        }
+        long deleted = 0;
+        target.setAutoCommit(false);
+        try (PreparedStatement select = connection.prepareStatement(removed);
+             PreparedStatement delete = target.prepareStatement(String.format("DELETE FROM %s WHERE %s", capture.tablePair.getTargetTable().getTableName(), where))) {
+            select.setLong(1, replay.seqs.get(0));
+            select.setLong(2, replay.seqs.get(replay.seqs.size() - 1));
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 1; i <= capture.sourceKey.size(); i++) {
+                        delete.setObject(i, rs.getObject(i));
+                    }
+                    delete.addBatch();
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                delete.executeBatch();
+            }
+            target.commit();
+        } catch (SQLException e) {
+            JdbcHelper.rollbackQuietly(target);
+            throw e;
+        } finally {
+            JdbcHelper.restoreAutoCommit(target);
+        }
+        return deleted;
+    }
+
+    /**
+     * Removes the changes that were replayed, changes recorded in the meantime are kept
+     */
+    private void remove(Replay replay) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(String.format("DELETE FROM %s%d WHERE %s = ?", CHANGES, replay.capture.index, SEQ))) {
+            for (long seq : replay.seqs) {
+                stmt.setLong(1, seq);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void execute(String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static String columns(String prefix, List<String> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            sb.append(sb.length() == 0 ? "" : ",").append(prefix).append(column);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The tables in an order in which each table follows the tables it references. Tables that reference each
+     * other keep their order
+     */
+    private static List<TransferPlan.TablePair> ordered(List<TransferPlan.TablePair> tablePairs, Map<String, Set<String>> dependencies) {
+        Map<String, TransferPlan.TablePair> byName = new LinkedHashMap<>();
+        for (TransferPlan.TablePair tablePair : tablePairs) {
+            byName.put(TransferPlan.normalize(tablePair.getSourceTable().getTableName()), tablePair);
+        }
+        List<TransferPlan.TablePair> ordered = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (String name : byName.keySet()) {
+            visit(name, byName, dependencies, visited, ordered);
+        }
+        return ordered;
+    }
+
+    private static void visit(String name, Map<String, TransferPlan.TablePair> byName, Map<String, Set<String>> dependencies, Set<String> visited, List<TransferPlan.TablePair> ordered) {
+        if (!byName.containsKey(name) || !visited.add(name)) {
+            return;
+        }
+        for (String referenced : dependencies.getOrDefault(name, Collections.emptySet())) {
+            visit(referenced, byName, dependencies, visited, ordered);
+        }
+        ordered.add(byName.get(name));
+    }
+
+    /**
+     * A table whose changes are captured
+     */
+    private static final class Capture {
+
+        private final TransferPlan.TablePair tablePair;
+        private final int index;
+        private final List<String> sourceKey;
+        private final List<String> targetKey;
+
+        /**
+         * The target key columns are matched by name, in the order of the source key columns
+         */
+        private Capture(TransferPlan.TablePair tablePair, int index) {
+            this.tablePair = tablePair;
+            this.index = index;
+            this.sourceKey = tablePair.getSourceTable().getPrimaryKeyColumns();
+            this.targetKey = new ArrayList<>();
+            for (String key : sourceKey) {
+                tablePair.getTargetTable().getPrimaryKeyColumns().stream()
+                        .filter(column -> TransferPlan.normalize(column).equals(TransferPlan.normalize(key)))
+                        .findFirst()
+                        .ifPresent(targetKey::add);
+            }
+        }
+    }
+
+    /**
+     * The changes of a table that are replayed, they limit the source rows that are copied to the target
+     */
+    private static final class Replay implements RowFilter {
+
+        private final Capture capture;
+        private final List<Long> seqs;
+        private final StringBuilder ops;
+        private long written;
+        private long deleted;
+        private long elapsedNanos;
+
+        private Replay(Capture capture) {
+            this.capture = capture;
+            this.seqs = new ArrayList<>();
+            this.ops = new StringBuilder();
+        }
+
+        @Override
+        public String getSelectStmt(TableColumnTypeSelect table) {
+            StringBuilder on = new StringBuilder();
+            for (String key : capture.sourceKey) {
+                on.append(String.format(" AND c.%s = %s.%s", key, table.getTableName(), key));
+            }
+            return String.format("%s WHERE EXISTS (SELECT 1 FROM %s%d c WHERE c.%s >= ? AND c.%s <= ?%s)",
+                    table.getSelectStmt().replaceAll(";\\s*$", ""), CHANGES, capture.index, SEQ, SEQ, on);
+        }
+
+        @Override
+        public void bind(PreparedStatement stmt) throws SQLException {
+            stmt.setLong(1, seqs.get(0));
+            stmt.setLong(2, seqs.get(seqs.size() - 1));
+        }
+
+        private long count(char op) {
+            return ops.chars().filter(c -> c == op).count();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.pingcentral.custom;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The H2 trigger of {@link ChangeCapture}. It records the key of each inserted, updated or deleted row in the change table
+ * that belongs to the trigger, i.e. dbmerger_changes_3 for dbmerger_capture_3. The key columns are the columns of the
+ * change table. H2 creates the trigger by its class name, it has to be public
+ */
+public class ChangeCaptureTrigger implements Trigger {
+
+    private String insert;
+    private int[] keyPositions;
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+        String changes = (ChangeCapture.CHANGES + triggerName.substring(ChangeCapture.TRIGGER.length())).toUpperCase(Locale.ROOT);
+        DatabaseMetaData metaData = conn.getMetaData();
+        List<String> keys = new ArrayList<>();
+        try (ResultSet rs = metaData.getColumns(null, schemaName, changes, null)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                if (!column.equalsIgnoreCase(ChangeCapture.SEQ) && !column.equalsIgnoreCase(ChangeCapture.OP)) {
+                    keys.add(column);
+                }
+            }
+        }
+        keyPositions = new int[keys.size()];
+        try (ResultSet rs = metaData.getColumns(null, schemaName, tableName, null)) {
+            while (rs.next()) {
+                int key = keys.indexOf(rs.getString("COLUMN_NAME"));
+                if (key >= 0) {
+                    keyPositions[key] = rs.getInt("ORDINAL_POSITION") - 1;
+                }
+            }
+        }
+        insert = String.format("INSERT INTO \"%s\".\"%s\" (%s,\"%s\") VALUES (?%s)", schemaName, changes, ChangeCapture.OP,
+                String.join("\",\"", keys), ",?".repeat(keys.size()));
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(insert)) {
+            String op = oldRow == null ? "I" : newRow == null ? "D" : "U";
+            if (oldRow != null && (newRow == null || !sameKey(oldRow, newRow))) {
+                add(stmt, op, oldRow);
+            }
+            if (newRow != null) {
+                add(stmt, op, newRow);
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void add(PreparedStatement stmt, String op, Object[] row) throws SQLException {
+        stmt.setString(1, op);
+        for (int i = 0; i < keyPositions.length; i++) {
+            stmt.setObject(i + 2, row[keyPositions[i]]);
+        }
+        stmt.addBatch();
+    }
+
+    private boolean sameKey(Object[] oldRow, Object[] newRow) {
+        for (int position : keyPositions) {
+            if (!Objects.equals(oldRow[position], newRow[position])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
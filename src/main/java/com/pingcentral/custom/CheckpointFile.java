@@ -0,0 +1,208 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Records the progress of a transfer so that an interrupted transfer can be resumed, see {@link Config#getCheckpointFile()}.
+ * Each line is a tab separated entry that is appended once the target committed the rows it describes:
+ * <ul>
+ *     <li>range, table, lowest key (inclusive), highest key (exclusive): the rows of a table with a single integer primary
+ *     key within the range are in the target</li>
+ *     <li>started, table: a table without such a key is being copied, it may be in the target partially</li>
+ *     <li>done, table: all rows of the table are in the target</li>
+ * </ul>
+ * Without a file nothing is recorded. All workers share one instance
+ */
+final class CheckpointFile implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(CheckpointFile.class.getName());
+
+    private static final String DONE = "done";
+    private static final String STARTED = "started";
+    private static final String RANGE = "range";
+
+    private final String path;
+    private final BufferedWriter writer;
+    private final Set<String> done;
+    private final Set<String> started;
+    private final Map<String, TreeMap<Long, Long>> ranges;
+
+    /**
+     * @param path   The file the progress is written to, null to not record it
+     * @param resume true to continue with the progress recorded in the file, false to start a new one
+     * @throws IOException If the file could not be read or opened. When resuming it has to exist
+     */
+    CheckpointFile(String path, boolean resume) throws IOException {
+        this.path = path;
+        this.done = new HashSet<>();
+        this.started = new HashSet<>();
+        this.ranges = new HashMap<>();
+        if (path == null) {
+            this.writer = null;
+            return;
+        }
+        Path file = Paths.get(path);
+        if (resume) {
+            String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            for (String line : content.split("\\R")) {
+                load(line);
+            }
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            if (!content.isEmpty() && !content.endsWith("\n")) {
+                // the last line was cut off, the next one starts on its own
+                writer.newLine();
+            }
+        } else {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+    }
+
+    boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * @param table The name of the target table
+     * @return true if all rows of the table were copied before
+     */
+    synchronized boolean isDone(String table) {
+        return done.contains(TransferPlan.normalize(table));
+    }
+
+    /**
+     * @return true if the table was copied partially before, it has no single integer primary key to continue from
+     */
+    synchronized boolean isStarted(String table) {
+        return started.contains(TransferPlan.normalize(table));
+    }
+
+    /**
+     * @return true if rows of the table with a single integer primary key were copied before
+     */
+    synchronized boolean hasRanges(String table) {
+        return ranges.containsKey(TransferPlan.normalize(table));
+    }
+
+    /**
+     * @param range The lowest (inclusive) and highest (exclusive) key of a range of the table
+     * @return The parts of the range whose rows were not copied before, in the order of the keys
+     */
+    synchronized List<long[]> remaining(String table, long[] range) {
+        List<long[]> remaining = new ArrayList<>();
+        long next = range[0];
+        TreeMap<Long, Long> copied = ranges.getOrDefault(TransferPlan.normalize(table), new TreeMap<>());
+        for (Map.Entry<Long, Long> entry : copied.entrySet()) {
+            if (entry.getValue() <= next) {
+                continue;
+            }
+            if (entry.getKey() >= range[1]) {
+                break;
+            }
+            if (entry.getKey() > next) {
+                remaining.add(new long[]{next, entry.getKey()});
+            }
+            next = entry.getValue();
+        }
+        if (next < range[1]) {
+            remaining.add(new long[]{next, range[1]});
+        }
+        return remaining;
+    }
+
+    /**
+     * Called once the target committed the rows with keys from lower (inclusive) to upper (exclusive)
+     */
+    void committed(String table, long lower, long upper) {
+        if (upper > lower) {
+            append(String.format("%s\t%s\t%d\t%d", RANGE, TransferPlan.normalize(table), lower, upper));
+        }
+    }
+
+    /**
+     * Called before a table without a single integer primary key is copied
+     */
+    void started(String table) {
+        append(String.format("%s\t%s", STARTED, TransferPlan.normalize(table)));
+    }
+
+    /**
+     * Called once all rows of the table were copied and committed
+     */
+    void done(String table) {
+        append(String.format("%s\t%s", DONE, TransferPlan.normalize(table)));
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    private void append(String line) {
+        if (writer == null) {
+            return;
+        }
+        synchronized (this) {
+            load(line);
+            try {
+                writer.write(line);
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                LOGGER.warning(String.format("The progress could not be written to the {checkpoint_file} %s, error: %s", path, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Applies one line of the file. A line that cannot be parsed, i.e. the last one if the tool stopped while writing it,
+     * is ignored
+     */
+    private void load(String line) {
+        String[] fields = line.split("\t");
+        try {
+            if (fields.length == 2 && DONE.equals(fields[0])) {
+                done.add(fields[1]);
+            } else if (fields.length == 2 && STARTED.equals(fields[0])) {
+                started.add(fields[1]);
+            } else if (fields.length == 4 && RANGE.equals(fields[0])) {
+                add(ranges.computeIfAbsent(fields[1], k -> new TreeMap<>()), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+            } else if (!line.isEmpty()) {
+                LOGGER.warning(String.format("The line '%s' of the {checkpoint_file} %s is ignored", line, path));
+            }
+        } catch (NumberFormatException e) {
+            LOGGER.warning(String.format("The line '%s' of the {checkpoint_file} %s is ignored", line, path));
+        }
+    }
+
+    /**
+     * Adds a range to the ranges of a table, overlapping and adjacent ranges are merged
+     */
+    private static void add(TreeMap<Long, Long> copied, long lower, long upper) {
+        Map.Entry<Long, Long> before = copied.floorEntry(lower);
+        if (before != null && before.getValue() >= lower) {
+            lower = before.getKey();
+            upper = Math.max(upper, before.getValue());
+        }
+        for (Map.Entry<Long, Long> after = copied.ceilingEntry(lower); after != null && after.getKey() <= upper; after = copied.ceilingEntry(lower)) {
+            upper = Math.max(upper, after.getValue());
+            copied.remove(after.getKey());
+        }
+        copied.put(lower, upper);
+    }
+}
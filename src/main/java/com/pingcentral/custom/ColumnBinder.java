@@ -0,0 +1,235 @@
+package com.pingcentral.custom;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.function.LongFunction;
+
+/**
+ * Copies the value of one column from a source result set into a parameter of the target statement. Reading and binding
+ * are separate steps so that they can run on different threads. Binders are compiled once per table by
+ * {@link LiquibaseChangelogProcessor#compileColumnBinders}. Steps that need a round trip of their own, i.e. reading or
+ * creating a PostgreSQL large object, may be handed to {@link LargeObjectWorkers}
+ */
+public final class ColumnBinder {
+
+    @FunctionalInterface
+    interface ValueReader {
+        Object read(ResultSet source) throws SQLException, IOException;
+    }
+
+    @FunctionalInterface
+    interface ValueWriter {
+        void write(PreparedStatement target, int index, Object value) throws SQLException, IOException;
+    }
+
+    @FunctionalInterface
+    interface ValueConverter {
+        Object convert(Connection target, Object value) throws SQLException, IOException;
+    }
+
+    @FunctionalInterface
+    interface LongReader {
+        long read(ResultSet source) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface LongWriter {
+        void write(PreparedStatement target, int index, long value) throws SQLException;
+    }
+
+    private static final ValueConverter IDENTITY = (connection, value) -> value;
+
+    private final int targetIndex;
+    private final ValueReader reader;
+    private final ValueConverter loader;
+    private final ValueConverter converter;
+    private final ValueWriter writer;
+    private final LongReader longReader;
+    private final LongWriter longWriter;
+    private final LongFunction<Object> boxer;
+    private final int sqlType;
+
+    /**
+     * @param targetIndex The position of the parameter within the target insert statement
+     */
+    ColumnBinder(int targetIndex, ValueReader reader, ValueWriter writer) {
+        this(targetIndex, reader, IDENTITY, writer);
+    }
+
+    /**
+     * @param converter Turns the value that was read into the value that is stored in the target column, i.e. the oid of
+     *                  a new large object
+     */
+    ColumnBinder(int targetIndex, ValueReader reader, ValueConverter converter, ValueWriter writer) {
+        this(targetIndex, reader, null, converter, writer);
+    }
+
+    /**
+     * @param loader Turns the value that was read into the value of the column with the source connection, i.e. the
+     *               content of a large object. Null if the value read is the value of the column
+     */
+    ColumnBinder(int targetIndex, ValueReader reader, ValueConverter loader, ValueConverter converter, ValueWriter writer) {
+        this.targetIndex = targetIndex;
+        this.reader = reader;
+        this.loader = loader;
+        this.converter = converter;
+        this.writer = writer;
+        this.longReader = null;
+        this.longWriter = null;
+        this.boxer = null;
+        this.sqlType = Types.NULL;
+    }
+
+    /**
+     * A binder for a column whose values fit into a long, i.e. integers and booleans. A {@link RowBatch} keeps them in a
+     * long[], they are not boxed
+     *
+     * @param sqlType The type null values are bound with, see {@link Types}
+     * @param boxer   Turns the long into the value {@link #read(ResultSet)} returns, i.e. an Integer
+     */
+    ColumnBinder(int targetIndex, int sqlType, LongReader longReader, LongWriter longWriter, LongFunction<Object> boxer) {
+        this.targetIndex = targetIndex;
+        this.reader = source -> {
+            long value = longReader.read(source);
+            return source.wasNull() ? null : boxer.apply(value);
+        };
+        this.loader = null;
+        this.converter = IDENTITY;
+        this.writer = (target, index, value) -> {
+            if (value == null) {
+                target.setNull(index, sqlType);
+            } else {
+                longWriter.write(target, index, toLong(value));
+            }
+        };
+        this.longReader = longReader;
+        this.longWriter = longWriter;
+        this.boxer = boxer;
+        this.sqlType = sqlType;
+    }
+
+    /**
+     * @return true if the values are kept as long, see {@link #read(ResultSet, RowBatch, int, int, LargeObjectWorkers)}
+     */
+    boolean isPrimitive() {
+        return longReader != null;
+    }
+
+    /**
+     * @param source A result set positioned on a row
+     * @return The value of the column, null for SQL NULL
+     */
+    public Object read(ResultSet source) throws SQLException, IOException {
+        Object value = reader.read(source);
+        return loader == null || value == null ? value : loader.convert(source.getStatement().getConnection(), value);
+    }
+
+    /**
+     * Like {@link #read(ResultSet)}, but loading the value from the source or converting it for the target is left to
+     * the workers, the value is resolved when it is bound
+     *
+     * @param largeObjects The workers, null to read the value right away
+     */
+    Object read(ResultSet source, LargeObjectWorkers largeObjects) throws SQLException, IOException {
+        if (largeObjects == null) {
+            return read(source);
+        }
+        Object value = reader.read(source);
+        if (value == null) {
+            return null;
+        }
+        if (loader != null) {
+            return largeObjects.load(loader, value);
+        }
+        if (converter != IDENTITY) {
+            return largeObjects.store(converter, value);
+        }
+        return value;
+    }
+
+    /**
+     * Reads the value into a batch, without boxing it if the binder {@link #isPrimitive() is primitive}
+     *
+     * @param row    The row within the batch
+     * @param column The position of the target column, the same as the position of the binder
+     */
+    void read(ResultSet source, RowBatch batch, int row, int column, LargeObjectWorkers largeObjects) throws SQLException, IOException {
+        if (longReader == null) {
+            batch.setObject(row, column, read(source, largeObjects));
+            return;
+        }
+        long value = longReader.read(source);
+        if (source.wasNull()) {
+            batch.setNull(row, column);
+        } else {
+            batch.setLong(row, column, value);
+        }
+    }
+
+    /**
+     * Binds a value of a batch, without boxing it if the binder {@link #isPrimitive() is primitive}
+     *
+     * @param offset The number of parameters in front of the row the value belongs to
+     * @param row    The row within the batch
+     * @param column The position of the target column, the same as the position of the binder
+     */
+    void bind(PreparedStatement target, int offset, RowBatch batch, int row, int column) throws SQLException, IOException {
+        if (longWriter == null) {
+            bind(target, offset, batch.getObject(row, column));
+        } else if (batch.isNull(row, column)) {
+            target.setNull(targetIndex + offset, sqlType);
+        } else {
+            longWriter.write(target, targetIndex + offset, batch.getLong(row, column));
+        }
+    }
+
+    /**
+     * @return The value {@link #read(ResultSet)} returns for a long kept by a primitive binder
+     */
+    Object box(long value) {
+        return boxer.apply(value);
+    }
+
+    /**
+     * @param value A value a primitive binder returns from {@link #read(ResultSet)}
+     */
+    static long toLong(Object value) {
+        return value instanceof Boolean ? ((Boolean) value ? 1 : 0) : ((Number) value).longValue();
+    }
+
+    /**
+     * @param target The target statement
+     * @param value  A value returned by {@link #read(ResultSet)}
+     */
+    public void bind(PreparedStatement target, Object value) throws SQLException, IOException {
+        bind(target, 0, value);
+    }
+
+    /**
+     * @param target The target statement, i.e. a multi row insert statement
+     * @param offset The number of parameters in front of the row the value belongs to
+     * @param value  A value returned by {@link #read(ResultSet)}
+     */
+    public void bind(PreparedStatement target, int offset, Object value) throws SQLException, IOException {
+        writer.write(target, targetIndex + offset, convert(target.getConnection(), value));
+    }
+
+    /**
+     * Used by writers that do not bind parameters, i.e. PostgreSQL COPY
+     *
+     * @param target The target connection
+     * @param value  A value returned by {@link #read(ResultSet)}
+     * @return The value that is stored in the target column, null for SQL NULL
+     */
+    public Object convert(Connection target, Object value) throws SQLException, IOException {
+        if (value instanceof PendingValue) {
+            PendingValue pending = (PendingValue) value;
+            return pending.isConverted() ? pending.get() : converter.convert(target, pending.get());
+        }
+        return converter.convert(target, value);
+    }
+}
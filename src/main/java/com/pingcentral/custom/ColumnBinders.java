@@ -0,0 +1,180 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import org.postgresql.PGConnection;
+import org.postgresql.largeobject.LargeObject;
+import org.postgresql.largeobject.LargeObjectManager;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Creates the {@link ColumnBinder} for a column. All decisions are made when the binder is created so that nothing but
+ * reading and writing the value is left for each row
+ */
+final class ColumnBinders {
+
+    private ColumnBinders() {
+        // only static methods
+    }
+
+    /**
+     * @param kind        The kind of the column
+     * @param sourceIndex The position of the column within the source select statement
+     * @param targetIndex The position of the parameter within the target insert statement
+     * @return The binder
+     */
+    static ColumnBinder forKind(ColumnKind kind, int sourceIndex, int targetIndex) {
+        switch (kind) {
+            case INT:
+                return new ColumnBinder(targetIndex, Types.INTEGER,
+                        source -> source.getInt(sourceIndex),
+                        (target, index, value) -> target.setInt(index, (int) value),
+                        value -> (int) value);
+            case TINYINT:
+                return new ColumnBinder(targetIndex, Types.SMALLINT,
+                        source -> source.getShort(sourceIndex),
+                        (target, index, value) -> target.setShort(index, (short) value),
+                        value -> (short) value);
+            case NUMBER:
+                return new ColumnBinder(targetIndex,
+                        source -> source.getBigDecimal(sourceIndex),
+                        (target, index, value) -> target.setBigDecimal(index, (BigDecimal) value));
+            case BIGINT:
+                return new ColumnBinder(targetIndex, Types.BIGINT,
+                        source -> source.getLong(sourceIndex),
+                        PreparedStatement::setLong,
+                        value -> value);
+            case BOOLEAN:
+                return new ColumnBinder(targetIndex, Types.BOOLEAN,
+                        source -> source.getBoolean(sourceIndex) ? 1 : 0,
+                        (target, index, value) -> target.setBoolean(index, value != 0),
+                        value -> value != 0);
+            case TIMESTAMP:
+                return new ColumnBinder(targetIndex,
+                        source -> source.getTimestamp(sourceIndex),
+                        (target, index, value) -> target.setTimestamp(index, (Timestamp) value));
+            case DATE:
+                return new ColumnBinder(targetIndex,
+                        source -> source.getDate(sourceIndex),
+                        (target, index, value) -> target.setDate(index, (Date) value));
+            case BINARY:
+                return new ColumnBinder(targetIndex,
+                        source -> SpooledLob.readBinary(source.getBinaryStream(sourceIndex)),
+                        ColumnBinders::writeBinary);
+            case TEXT:
+                return forText(sourceIndex, targetIndex, false);
+            default:
+                return new ColumnBinder(targetIndex,
+                        source -> source.getObject(sourceIndex),
+                        (target, index, value) -> target.setObject(index, value));
+        }
+    }
+
+    /**
+     * @param postgresSource true if the source is of type PostgreSQL, values can be read as strings
+     */
+    static ColumnBinder forText(int sourceIndex, int targetIndex, boolean postgresSource) {
+        if (postgresSource) {
+            return new ColumnBinder(targetIndex,
+                    source -> source.getString(sourceIndex),
+                    ColumnBinders::writeText);
+        }
+        return new ColumnBinder(targetIndex,
+                source -> readClob(source.getClob(sourceIndex)),
+                ColumnBinders::writeText);
+    }
+
+    /**
+     * The source value is a clob that is written into a new PostgreSQL large object as UTF-8, in chunks. The target
+     * column receives its oid
+     */
+    static ColumnBinder forTextToLargeObject(int sourceIndex, int targetIndex) {
+        return new ColumnBinder(targetIndex,
+                source -> readClob(source.getClob(sourceIndex)),
+                (target, value) -> {
+                    if (value == null) {
+                        return null;
+                    }
+                    LargeObjectManager lobj = target.unwrap(PGConnection.class).getLargeObjectAPI();
+                    long oid = lobj.createLO(LargeObjectManager.READ | LargeObjectManager.WRITE);
+                    LargeObject obj = lobj.open(oid, LargeObjectManager.WRITE);
+                    // closing the stream closes the large object
+                    try (OutputStream out = obj.getOutputStream()) {
+                        SpooledLob.writeText(value, out);
+                    }
+                    return String.valueOf(oid);
+                },
+                (target, index, value) -> target.setString(index, (String) value));
+    }
+
+    /**
+     * The source value is the oid of a PostgreSQL large object, its content is decoded as UTF-8 in chunks. The target
+     * column receives the content
+     */
+    static ColumnBinder forTextFromLargeObject(int sourceIndex, int targetIndex) {
+        return new ColumnBinder(targetIndex,
+                source -> {
+                    long oid = source.getLong(sourceIndex);
+                    return oid > 0 ? oid : null; // indicates that the large object does not exist
+                },
+                (source, value) -> {
+                    LargeObjectManager lobj = source.unwrap(PGConnection.class).getLargeObjectAPI();
+                    LargeObject obj = lobj.open((Long) value, LargeObjectManager.READ);
+                    // closing the stream closes the large object
+                    return SpooledLob.readText(new InputStreamReader(obj.getInputStream(), StandardCharsets.UTF_8));
+                },
+                (target, value) -> value,
+                ColumnBinders::writeText);
+    }
+
+    /**
+     * A target column that does not exist in the source table
+     */
+    static ColumnBinder forMissingSource(int targetIndex) {
+        return new ColumnBinder(targetIndex,
+                source -> null,
+                (target, index, value) -> target.setNull(index, Types.NULL));
+    }
+
+    /**
+     * @return The value as String, or as {@link SpooledLob} if it is too large to keep it in memory
+     */
+    private static Object readClob(Clob clob) throws SQLException, IOException {
+        if (clob == null) {
+            return null;
+        }
+        try {
+            return SpooledLob.readText(clob.getCharacterStream());
+        } finally {
+            clob.free();
+        }
+    }
+
+    private static void writeText(PreparedStatement target, int index, Object value) throws SQLException, IOException {
+        if (value instanceof SpooledLob) {
+            SpooledLob lob = (SpooledLob) value;
+            target.setCharacterStream(index, lob.openReader(), lob.length());
+        } else {
+            target.setString(index, (String) value);
+        }
+    }
+
+    private static void writeBinary(PreparedStatement target, int index, Object value) throws SQLException, IOException {
+        if (value instanceof SpooledLob) {
+            SpooledLob lob = (SpooledLob) value;
+            target.setBinaryStream(index, lob.openStream(), lob.length());
+        } else {
+            target.setBytes(index, (byte[]) value);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigConnectionPool;
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.Dialect;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * A small pool of connections to one database. New connections run the configured session setup, idle connections are
+ * validated before they are handed out again. If all connections are in use {@link #acquire()} waits until one is released
+ */
+final class ConnectionPool implements ConnectionProvider, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(ConnectionPool.class.getName());
+
+    private final ConfigDatabase database;
+    private final ConfigConnectionPool settings;
+    private final int maxSize;
+    private final Deque<Connection> idle;
+    private int open;
+    private boolean closed;
+
+    /**
+     * @param database The database
+     * @param maxSize  The maximum number of open connections
+     * @throws SQLException If the initial connections could not be opened
+     */
+    ConnectionPool(ConfigDatabase database, int maxSize) throws SQLException {
+        this.database = database;
+        this.settings = database.getConnectionPool();
+        this.maxSize = maxSize;
+        this.idle = new ArrayDeque<>();
+        for (int i = 0; i < Math.min(settings.getMinSize(), maxSize); i++) {
+            idle.push(connect());
+            open++;
+        }
+        LOGGER.info(String.format("Connection pool for %s created, min: %d, max: %d", database.getName(), settings.getMinSize(), maxSize));
+    }
+
+    @Override
+    public Connection acquire() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.getTimeoutSeconds());
+        while (true) {
+            Connection connection;
+            synchronized (this) {
+                while (idle.isEmpty() && open >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (closed || remaining <= 0) {
+                        throw new SQLException(String.format("No connection to %s available after %d seconds", database.getName(), settings.getTimeoutSeconds()));
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException(String.format("Interrupted while waiting for a connection to %s", database.getName()));
+                    }
+                }
+                connection = idle.poll();
+                if (connection == null) {
+                    open++;
+                }
+            }
+            if (connection == null) {
+                try {
+                    return connect();
+                } catch (SQLException e) {
+                    discard(null);
+                    throw e;
+                }
+            }
+            if (isValid(connection)) {
+                return connection;
+            }
+            LOGGER.info(String.format("Idle connection to %s is not valid anymore and will be replaced", database.getName()));
+            discard(connection);
+        }
+    }
+
+    /**
+     * Returns a connection to the pool. An open transaction is rolled back, connections that are broken are closed
+     */
+    @Override
+    public void release(Connection connection) {
+        boolean reusable;
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            reusable = !connection.isClosed();
+        } catch (SQLException e) {
+            reusable = false;
+        }
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.push(connection);
+                notifyAll();
+                return;
+            }
+        }
+        discard(connection);
+    }
+
+    /**
+     * Closes all idle connections. Connections that are still in use are closed when they are released
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        Connection connection;
+        while ((connection = poll()) != null) {
+            discard(connection);
+        }
+    }
+
+    private synchronized Connection poll() {
+        return idle.poll();
+    }
+
+    private void discard(Connection connection) {
+        synchronized (this) {
+            open--;
+            notifyAll();
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.warning(e.getMessage());
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        if (database.getUsername() != null) {
+            properties.setProperty("user", database.getUsername());
+        }
+        if (database.getPassword() != null) {
+            properties.setProperty("password", database.getPassword());
+        }
+        if (database.getDialect() == Dialect.MYSQL) {
+            // a duplicate that ON DUPLICATE KEY UPDATE leaves unchanged counts 0 rows instead of the 1 row it found
+            properties.setProperty("useAffectedRows", "true");
+        }
+        Connection connection = DriverManager.getConnection(database.getJdbcUrl(), properties);
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : settings.getInitSql()) {
+                stmt.execute(sql);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private boolean isValid(Connection connection) {
+        try {
+            if (settings.getValidationQuery() == null) {
+                return connection.isValid(settings.getTimeoutSeconds());
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.setQueryTimeout(settings.getTimeoutSeconds());
+                stmt.execute(settings.getValidationQuery());
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.pingcentral.custom;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands out connections to one database. Every connection that was acquired has to be released again
+ */
+interface ConnectionProvider {
+
+    Connection acquire() throws SQLException;
+
+    void release(Connection connection);
+}
@@ -0,0 +1,237 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+import org.postgresql.PGConnection;
+import org.postgresql.PGStatement;
+import org.postgresql.copy.CopyOut;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.logging.Logger;
+
+/**
+ * Reads rows from a PostgreSQL source with COPY (SELECT ...) TO STDOUT in text format. Each row is decoded straight into
+ * the values the {@link ColumnBinder} of the target columns expect, no JDBC result set is involved
+ */
+final class CopyRowReader implements RowReader {
+
+    private static final Logger LOGGER = Logger.getLogger(CopyRowReader.class.getName());
+    private static final String BC = " BC";
+
+    private final TableColumnTypeSelect sourceTable;
+    private final int[] sourcePositions;
+    private final ColumnKind[] kinds;
+    private final CopyOut copyOut;
+    private final List<String> fields;
+
+    CopyRowReader(TransferPlan.TablePair tablePair, Connection sourceConnection, long[] keyRange) throws SQLException {
+        this.sourceTable = tablePair.getSourceTable();
+        int columns = tablePair.getTargetTable().getColumnTypes().size();
+        this.sourcePositions = new int[columns];
+        this.kinds = new ColumnKind[columns];
+        for (int i = 0; i < columns; i++) {
+            sourcePositions[i] = tablePair.getSourcePosition(i);
+            kinds[i] = tablePair.getValueKind(i);
+        }
+        this.fields = new ArrayList<>();
+        String select;
+        if (keyRange == null) {
+            select = sourceTable.getSelectStmt().replaceAll(";\\s*$", "");
+        } else {
+            select = sourceTable.getChunkSelectStmt()
+                    .replaceFirst("\\?", Long.toString(keyRange[0]))
+                    .replaceFirst("\\?", Long.toString(keyRange[1]));
+        }
+        this.copyOut = sourceConnection.unwrap(PGConnection.class).getCopyAPI().copyOut(String.format("COPY (%s) TO STDOUT", select));
+    }
+
+    @Override
+    public boolean next(RowBatch batch) throws SQLException {
+        byte[] line;
+        while ((line = copyOut.readFromCopy()) != null) {
+            int row = batch.nextRow();
+            try {
+                split(new String(line, StandardCharsets.UTF_8), fields);
+                for (int i = 0; i < sourcePositions.length; i++) {
+                    batch.set(row, i, sourcePositions[i] < 0 ? null : decode(kinds[i], fields.get(sourcePositions[i])));
+                }
+                batch.addRow();
+                return true;
+            } catch (Exception e) {
+                batch.discardRow();
+                LOGGER.warning(String.format("Table: %s, row skipped, error: %s", sourceTable.getTableName(), e.getMessage()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the COPY if not all rows were read
+     */
+    @Override
+    public void close() throws SQLException {
+        if (copyOut.isActive()) {
+            copyOut.cancelCopy();
+        }
+    }
+
+    /**
+     * Splits one line of the COPY text format into its unescaped fields, \N becomes null
+     */
+    static void split(String line, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        int end = line.endsWith("\n") ? line.length() - 1 : line.length();
+        boolean isNull = false;
+        for (int i = 0; i <= end; i++) {
+            char c = i < end ? line.charAt(i) : '\t';
+            if (c == '\t') {
+                fields.add(isNull ? null : field.toString());
+                field.setLength(0);
+                isNull = false;
+            } else if (c == '\\' && i + 1 < end) {
+                char escaped = line.charAt(++i);
+                switch (escaped) {
+                    case 'N':
+                        isNull = true;
+                        break;
+                    case 't':
+                        field.append('\t');
+                        break;
+                    case 'n':
+                        field.append('\n');
+                        break;
+                    case 'r':
+                        field.append('\r');
+                        break;
+                    case 'b':
+                        field.append('\b');
+                        break;
+                    case 'f':
+                        field.append('\f');
+                        break;
+                    case 'v':
+                        field.append('\u000B');
+                        break;
+                    default:
+                        field.append(escaped);
+                }
+            } else {
+                field.append(c);
+            }
+        }
+    }
+
+    /**
+     * @return The value in the type the binder of the column kind expects, see {@link ColumnBinders#forKind}
+     */
+    static Object decode(ColumnKind kind, String text) {
+        if (text == null) {
+            return null;
+        }
+        switch (kind) {
+            case INT:
+                return Integer.valueOf(text);
+            case TINYINT:
+                return Short.valueOf(text);
+            case NUMBER:
+                return new BigDecimal(text);
+            case BIGINT:
+                return Long.valueOf(text);
+            case BOOLEAN:
+                return "t".equals(text);
+            case TIMESTAMP:
+                return parseTimestamp(text);
+            case DATE:
+                return parseDate(text);
+            case BINARY:
+                return parseBytea(text);
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Accepts dates before Christ, i.e. 0044-03-15 BC, infinity and -infinity. They are mapped the way the PostgreSQL JDBC
+     * driver maps them, see {@link PGStatement#DATE_POSITIVE_INFINITY}
+     */
+    private static Date parseDate(String text) {
+        if ("infinity".equals(text)) {
+            return new Date(PGStatement.DATE_POSITIVE_INFINITY);
+        } else if ("-infinity".equals(text)) {
+            return new Date(PGStatement.DATE_NEGATIVE_INFINITY);
+        }
+        boolean bc = text.endsWith(BC);
+        LocalDate date = LocalDate.parse(bc ? text.substring(0, text.length() - BC.length()) : text);
+        return new Date(toMillis(date.atStartOfDay(), bc, TimeZone.getDefault()));
+    }
+
+    /**
+     * Accepts timestamps with and without time zone offset, i.e. 2021-03-04 05:06:07.123+01 or 2021-03-04 05:06:07, before
+     * Christ, i.e. 0044-03-15 12:00:00 BC, infinity and -infinity. They are mapped like {@link #parseDate}
+     */
+    private static Timestamp parseTimestamp(String text) {
+        if ("infinity".equals(text)) {
+            return new Timestamp(PGStatement.DATE_POSITIVE_INFINITY);
+        } else if ("-infinity".equals(text)) {
+            return new Timestamp(PGStatement.DATE_NEGATIVE_INFINITY);
+        }
+        boolean bc = text.endsWith(BC);
+        if (bc) {
+            text = text.substring(0, text.length() - BC.length());
+        }
+        TimeZone timeZone = TimeZone.getDefault();
+        int offset = Math.max(text.lastIndexOf('+'), text.lastIndexOf('-'));
+        if (offset > 10) {
+            String zone = text.substring(offset);
+            if (zone.length() == 3) {
+                zone = zone + ":00";
+            }
+            timeZone = TimeZone.getTimeZone(ZoneOffset.of(zone));
+            text = text.substring(0, offset);
+        }
+        LocalDateTime dateTime = LocalDateTime.parse(text.replace(' ', 'T'));
+        Timestamp timestamp = new Timestamp(toMillis(dateTime, bc, timeZone));
+        timestamp.setNanos(dateTime.getNano());
+        return timestamp;
+    }
+
+    /**
+     * Uses the Julian/Gregorian calendar of {@link java.util.Date} like {@link Timestamp#valueOf}, the year is the year of
+     * the era PostgreSQL prints
+     */
+    private static long toMillis(LocalDateTime dateTime, boolean bc, TimeZone timeZone) {
+        Calendar calendar = new GregorianCalendar(timeZone);
+        calendar.clear();
+        calendar.set(Calendar.ERA, bc ? GregorianCalendar.BC : GregorianCalendar.AD);
+        calendar.set(dateTime.getYear(), dateTime.getMonthValue() - 1, dateTime.getDayOfMonth(), dateTime.getHour(), dateTime.getMinute(), dateTime.getSecond());
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @param text A bytea value in hex format, i.e. \x00ff
+     */
+    private static byte[] parseBytea(String text) {
+        if (!text.startsWith("\\x")) {
+            throw new IllegalArgumentException("Only the hex format of bytea is supported (bytea_output = 'hex')");
+        }
+        byte[] bytes = new byte[(text.length() - 2) / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(text.substring(2 + i * 2, 4 + i * 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,122 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Writes rows into a PostgreSQL target with COPY ... FROM STDIN in text format, one COPY per batch. This avoids binding
+ * and executing a statement per row
+ */
+final class CopyRowWriter implements RowWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(CopyRowWriter.class.getName());
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final TableColumnTypeSelect targetTable;
+    private final ColumnBinder[] binders;
+    private final Connection targetConnection;
+    private final CopyManager copyManager;
+    private final String copyStmt;
+    private final StringBuilder buffer;
+
+    CopyRowWriter(TransferPlan.TablePair tablePair, Connection targetConnection) throws SQLException {
+        this.targetTable = tablePair.getTargetTable();
+        this.binders = tablePair.getBinders();
+        this.targetConnection = targetConnection;
+        this.copyManager = targetConnection.unwrap(PGConnection.class).getCopyAPI();
+        this.copyStmt = String.format("COPY %s (%s) FROM STDIN",
+                targetTable.getTableName(),
+                targetTable.getColumnTypes().stream().map(ColumnType::getColumnName).collect(Collectors.joining(",")));
+        this.buffer = new StringBuilder();
+    }
+
+    @Override
+    public int write(RowBatch batch) throws SQLException {
+        buffer.setLength(0);
+        int rows = 0;
+        for (int r = 0; r < batch.size(); r++) {
+            int rowStart = buffer.length();
+            try {
+                for (int i = 0; i < binders.length; i++) {
+                    if (i > 0) {
+                        buffer.append('\t');
+                    }
+                    appendValue(buffer, SpooledLob.inline(binders[i].convert(targetConnection, batch.get(r, i))));
+                }
+                buffer.append('\n');
+                rows++;
+            } catch (Exception e) {
+                LOGGER.warning(String.format("Table: %s, row skipped, error: %s", targetTable.getTableName(), e.getMessage()));
+                buffer.setLength(rowStart);
+            }
+        }
+        if (rows > 0) {
+            try {
+                copyManager.copyIn(copyStmt, new StringReader(buffer.toString()));
+            } catch (SQLException e) {
+                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), new int[0], e);
+            } catch (IOException e) {
+                throw new SQLException(e.getMessage(), e);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() {
+        buffer.setLength(0);
+        buffer.trimToSize();
+    }
+
+    /**
+     * Appends a value in the text format of COPY: NULL is \N, backslash, tab, newline and carriage return are escaped,
+     * binary values use the hex format of bytea
+     */
+    static void appendValue(StringBuilder buffer, Object value) {
+        if (value == null) {
+            buffer.append("\\N");
+        } else if (value instanceof Boolean) {
+            buffer.append((Boolean) value ? 't' : 'f');
+        } else if (value instanceof BigDecimal) {
+            buffer.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof byte[]) {
+            buffer.append("\\\\x");
+            for (byte b : (byte[]) value) {
+                buffer.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+        } else {
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\':
+                        buffer.append("\\\\");
+                        break;
+                    case '\t':
+                        buffer.append("\\t");
+                        break;
+                    case '\n':
+                        buffer.append("\\n");
+                        break;
+                    case '\r':
+                        buffer.append("\\r");
+                        break;
+                    default:
+                        buffer.append(c);
+                }
+            }
+        }
+    }
+}
@@ -3,17 +3,15 @@ package com.pingcentral.custom;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pingcentral.custom.model.*;
-import org.postgresql.PGConnection;
-import org.postgresql.largeobject.LargeObject;
-import org.postgresql.largeobject.LargeObjectManager;
 
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Reader;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 public class DatabaseManager {
@@ -24,6 +22,10 @@ public class DatabaseManager {
     private final LiquibaseChangelogProcessor liquibaseChangelogProcessor;
     private Config config;
     private Connection sourceConnection, targetConnection;
+    private TransferPlan transferPlan;
+    private ConnectionPool sourcePool, targetPool;
+    private SourceSnapshot sourceSnapshot;
+    private ChangeCapture changeCapture;
 
     /**
      * Initializes the tool
@@ -64,17 +66,19 @@ public class DatabaseManager {
     }
 
     /**
-     * A facade to {@link LiquibaseChangelogProcessor#processLiquibaseFiles()}
+     * A facade to {@link LiquibaseChangelogProcessor#processLiquibaseFiles()}. It also creates the {@link TransferPlan}
      *
      * @return
      * @throws JsonProcessingException
      */
     public void processLiquibaseFiles() {
         liquibaseChangelogProcessor.processLiquibaseFiles();
+        transferPlan = TransferPlan.create(liquibaseChangelogProcessor, config.getSourceDatabase(), config.getTargetDatabases().get(0));
     }
 
     /**
-     * Initializes connections to the source and target databases
+     * Initializes connections to the source and target databases. With {@link Config#isConsistentSnapshot()} the source
+     * connection starts a snapshot that all workers read from, see {@link SourceSnapshot}
      *
      * @param sourceDb true to connect to the source database
      * @param targetDb true to connect to the target database
@@ -82,21 +86,17 @@ public class DatabaseManager {
      */
     public void initDb(boolean sourceDb, boolean targetDb) throws Exception {
         if (sourceDb) {
-            sourceConnection = DriverManager.getConnection(
-                    config.getSourceDatabase().getJdbcUrl(),
-                    config.getSourceDatabase().getUsername(),
-                    config.getSourceDatabase().getPassword()
-            );
+            sourcePool = new ConnectionPool(config.getSourceDatabase(), poolSize(config.getSourceDatabase()));
+            sourceConnection = sourcePool.acquire();
             LOGGER.info(String.format("Connection to source database %s created", config.getSourceDatabase().getName()));
+            if (config.isConsistentSnapshot()) {
+                sourceSnapshot = SourceSnapshot.open(config.getSourceDatabase(), sourceConnection, workerConnections(sourcePool, sourceConnection), config.getParallelWorkers());
+            }
         }
         if (targetDb) {
             // remember, only one target database is supported at this point in time
-            ConfigDatabase targetDbms = config.getTargetDatabases().get(0);
-            targetConnection = DriverManager.getConnection(
-                    targetDbms.getJdbcUrl(),
-                    targetDbms.getUsername(),
-                    targetDbms.getPassword()
-            );
+            targetPool = new ConnectionPool(config.getTargetDatabases().get(0), poolSize(config.getTargetDatabases().get(0)));
+            targetConnection = targetPool.acquire();
             LOGGER.info(String.format("Connection to target database %s created", config.getTargetDatabases().get(0).getName()));
         }
     }
@@ -110,247 +110,568 @@ public class DatabaseManager {
      */
     public void closeDb(boolean sourceDb, boolean targetDb) throws Exception {
         if (sourceDb) {
-            sourceConnection.close();
+            if (sourceSnapshot != null) {
+                sourceSnapshot.close();
+                sourceSnapshot = null;
+            }
+            sourcePool.release(sourceConnection);
+            sourcePool.close();
             LOGGER.info(String.format("Connection to source database %s closed", config.getSourceDatabase().getName()));
         }
         if (targetDb) {
-            targetConnection.close();
+            targetPool.release(targetConnection);
+            targetPool.close();
             LOGGER.info(String.format("Connection to target database %s closed", config.getTargetDatabases().get(0).getName()));
         }
     }
 
     /**
-     * Deletes all data from the target databases. This is useful to avoid any data conflicts when data is copied from the source to the target databases
+     * Deletes all data from the target databases. This is useful to avoid any data conflicts when data is copied from the source to the target databases.
+     * Tables are wiped by {@link Config#getParallelWorkers()} workers, a table only after all tables that reference it. The
+     * {@link Config#getWipeStrategy()} decides between DELETE and TRUNCATE. Tables that still contain rows afterwards are logged.
+     * The progress recorded in the {@link Config#getCheckpointFile()} is discarded first, it does not match the target anymore
      */
     public void deleteDataFromTargetDbms() {
         if (config.isDeleteTargetData()) {
+            if (config.getCheckpointFile() != null) {
+                try {
+                    new CheckpointFile(config.getCheckpointFile(), false).close();
+                } catch (IOException e) {
+                    throw new RuntimeException(String.format("The {checkpoint_file} %s could not be reset, no data was deleted. Error: %s", config.getCheckpointFile(), e.getMessage()));
+                }
+            }
             LOGGER.info(String.format("Deleting data from target database %s", config.getTargetDatabases().get(0).getName()));
+            long started = System.nanoTime();
+            List<TableColumnTypeSelect> tables = new ArrayList<>();
             Map<String, List<TableColumnTypeSelect>> tt = ((TreeMap) liquibaseChangelogProcessor.getTargetTables()).descendingMap();
             for (List<TableColumnTypeSelect> table : tt.values()) {
-                for (TableColumnTypeSelect next : table) {
+                tables.addAll(table);
+            }
+            // a table is wiped after the tables that reference it, the reverse of the transfer order
+            Map<String, Set<String>> referencedBy = new HashMap<>();
+            for (Map.Entry<String, Set<String>> next : transferPlan.getTableDependencies().entrySet()) {
+                for (String referenced : next.getValue()) {
+                    referencedBy.computeIfAbsent(referenced, k -> new HashSet<>()).add(next.getKey());
+                }
+            }
+            Dialect dialect = config.getTargetDatabases().get(0).getDialect();
+            boolean truncate = Config.WIPE_STRATEGY_TRUNCATE.equals(config.getWipeStrategy());
+            try {
+                if (truncate && dialect == Dialect.H2) {
+                    execute(targetConnection, "SET REFERENTIAL_INTEGRITY FALSE");
+                }
+                TableScheduler<TableColumnTypeSelect> scheduler = new TableScheduler<>(tables, table -> TransferPlan.normalize(table.getTableName()), referencedBy);
+                scheduler.run(config.getParallelWorkers(), workerConnections(sourcePool, sourceConnection), workerConnections(targetPool, targetConnection),
+                        (table, context) -> wipeTable(context.getTargetConnection(), table, truncate ? dialect : null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warning("Deleting target database data was interrupted");
+            } catch (SQLException e) {
+                LOGGER.warning(e.getMessage());
+            } finally {
+                if (truncate && dialect == Dialect.H2) {
                     try {
-                        Statement stmt = targetConnection.createStatement();
-                        stmt.executeUpdate(next.getDeleteStmt());
-                        stmt.close();
-                    } catch (Exception e) {
+                        execute(targetConnection, "SET REFERENTIAL_INTEGRITY TRUE");
+                    } catch (SQLException e) {
                         LOGGER.warning(e.getMessage());
                     }
                 }
             }
-            LOGGER.info("DONE - Deleting target database data completed");
+            for (TableColumnTypeSelect next : tables) {
+                try (Statement stmt = targetConnection.createStatement(); ResultSet rs = stmt.executeQuery(String.format("SELECT COUNT(*) FROM %s", next.getTableName()))) {
+                    if (rs.next() && rs.getLong(1) > 0) {
+                        LOGGER.warning(String.format("Table: %s, %d rows remain after deleting target database data", next.getTableName(), rs.getLong(1)));
+                    }
+                } catch (SQLException e) {
+                    LOGGER.warning(e.getMessage());
+                }
+            }
+            LOGGER.info(String.format("DONE - Deleting target database data completed in %d ms", (System.nanoTime() - started) / 1_000_000));
+        }
+    }
+
+    /**
+     * @param truncateDialect The dialect of the target to truncate the table, null to delete its rows
+     */
+    private void wipeTable(Connection connection, TableColumnTypeSelect table, Dialect truncateDialect) {
+        try {
+            if (truncateDialect == null) {
+                execute(connection, table.getDeleteStmt());
+            } else if (truncateDialect == Dialect.POSTGRESQL) {
+                execute(connection, String.format("TRUNCATE TABLE %s CASCADE", table.getTableName()));
+            } else if (truncateDialect == Dialect.MYSQL) {
+                execute(connection, "SET FOREIGN_KEY_CHECKS=0");
+                try {
+                    execute(connection, String.format("TRUNCATE TABLE %s", table.getTableName()));
+                } finally {
+                    execute(connection, "SET FOREIGN_KEY_CHECKS=1");
+                }
+            } else {
+                execute(connection, String.format("TRUNCATE TABLE %s", table.getTableName()));
+            }
+        } catch (SQLException e) {
+            LOGGER.warning(String.format("Table: %s, data could not be deleted, error: %s", table.getTableName(), e.getMessage()));
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
         }
     }
 
     /**
-     * Copies all data from the source database to the target databases
+     * Copies all data from the source database to the target databases. Tables are copied by {@link Config#getParallelWorkers()}
+     * workers, a table is only copied after the tables it references, see {@link TableScheduler}. Each table is read and
+     * written by separate threads, see {@link TableTransfer}. Tables with a single integer primary key may be split into key
+     * ranges that are copied concurrently, see {@link Config#getChunkSize()}. The target may be prepared for bulk loading,
+     * see {@link BulkLoad}. Rows the target rejects are collected in the {@link RejectFile}, the progress is recorded in the
+     * {@link CheckpointFile}
      */
     public void transferFromDbToDb() {
+        transferFromDbToDb(false);
+    }
 
-        /*
-          This code has a complex data structure to keep the order of tables as they were created
-         */
-
-        LOGGER.info(String.format("Transferring data from %s to %s", config.getSourceDatabase().getName(), config.getTargetDatabases().get(0).getName()));
-        for (List<TableColumnTypeSelect> nextSourceTables : liquibaseChangelogProcessor.getSourceTables().values()) {
-            for (TableColumnTypeSelect nextSourceTable : nextSourceTables) {
-                for (List<TableColumnTypeSelect> nextTargetTables : liquibaseChangelogProcessor.getTargetTables().values()) {
-                    for (TableColumnTypeSelect nextTargetTable : nextTargetTables) {
-                        if (nextTargetTable.getTableName().equalsIgnoreCase(nextSourceTable.getTableName())) {
-                            try {
-                                Statement sourceStmt = sourceConnection.createStatement();
-                                PreparedStatement targetStmt = targetConnection.prepareStatement(nextTargetTable.getInsertStmt());
-                                ResultSet sourceResultSet = sourceStmt.executeQuery(nextSourceTable.getSelectStmt());
-                                int rowcount = 0;
-                                while (sourceResultSet.next()) {
-                                    try {
-                                        sourceConnection.setAutoCommit(false);
-                                        targetConnection.setAutoCommit(false);
-                                        for (ColumnType next : nextSourceTable.getColumnTypes()) {
-                                            String columnName = next.getColumnName();
-                                            String columnType = next.getColumnType().toLowerCase();
-                                            if (columnType.startsWith("int")) {
-                                                targetStmt.setInt(next.getIndex(), sourceResultSet.getInt(columnName));
-                                            } else if (columnType.startsWith("tinyint")) {
-                                                targetStmt.setShort(next.getIndex(), sourceResultSet.getShort(columnName));
-                                            } else if (columnType.startsWith("number")) {
-                                                targetStmt.setBigDecimal(next.getIndex(), sourceResultSet.getBigDecimal(columnName));
-                                            } else if (columnType.startsWith("bigint")) {
-                                                targetStmt.setLong(next.getIndex(), sourceResultSet.getLong(columnName));
-                                            } else if (columnType.startsWith("boolean")) {
-                                                targetStmt.setBoolean(next.getIndex(), sourceResultSet.getBoolean(columnName));
-                                            } else if (columnType.startsWith("timestamp")) {
-                                                targetStmt.setTimestamp(next.getIndex(), sourceResultSet.getTimestamp(columnName));
-                                            } else if (columnType.startsWith("date")) {
-                                                targetStmt.setDate(next.getIndex(), sourceResultSet.getDate(columnName));
-                                            } else if (columnType.startsWith("clob") || columnType.startsWith("varchar") || columnType.startsWith("char") || columnType.startsWith("text") || columnType.startsWith("uuid")) {
-                                                String clobValue = null;
-                                                Set<String> fromColumns = config.getTargetDatabases().get(0).getFromPostgresLargeObjectColumnsAsMap().get(nextTargetTable.getTableName());
-                                                if (fromColumns != null && fromColumns.contains(columnName)) {
-                                                    // this is an oid from PostgreSQL
-                                                    long oid = sourceResultSet.getLong(columnName);
-                                                    if (oid > 0) { // indicates that the large object does not exist
-                                                        LargeObjectManager lobj = sourceConnection.unwrap(org.postgresql.PGConnection.class).getLargeObjectAPI();
-                                                        LargeObject obj = lobj.open(oid, LargeObjectManager.READ);
-                                                        byte[] buf = new byte[obj.size()];
-                                                        obj.read(buf, 0, obj.size());
-                                                        clobValue = new String(buf);
-                                                        obj.close();
-                                                    }
-                                                } else if (config.getSourceDatabase().isPostgresType()) {
-                                                    clobValue = sourceResultSet.getString(columnName);
-                                                } else {
-                                                    Clob clob = sourceResultSet.getClob(columnName);
-                                                    if (clob != null) {
-                                                        clobValue = processClob(clob.getCharacterStream());
-                                                        Set<String> toColumns = config.getTargetDatabases().get(0).getToPostgresLargeObjectColumnsAsMap().get(nextTargetTable.getTableName());
-                                                        if (toColumns != null && toColumns.contains(columnName)) {
-                                                            PGConnection unwrap = targetConnection.unwrap(PGConnection.class);
-                                                            LargeObjectManager lobj = unwrap.getLargeObjectAPI();
-                                                            long oid = lobj.createLO(LargeObjectManager.READ | LargeObjectManager.WRITE);
-                                                            LargeObject obj = lobj.open(oid, LargeObjectManager.WRITE);
-                                                            obj.write(clobValue.getBytes(), 0, clobValue.length());
-                                                            obj.close();
-                                                            clobValue = String.valueOf(oid);
-                                                        }
-                                                    }
-                                                }
-                                                targetStmt.setString(next.getIndex(), clobValue);
-                                            } else if (columnType.startsWith("blob") || columnType.startsWith("byte")) {
-                                                byte[] byteArray = sourceResultSet.getBytes(columnName);
-                                                targetStmt.setBytes(next.getIndex(), byteArray);
-                                            }
-                                            targetConnection.commit();
-                                            sourceConnection.commit();
-                                        }
-                                        targetStmt.execute();
-                                        targetConnection.commit();
-                                        sourceConnection.commit();
-                                        targetConnection.setAutoCommit(true);
-                                        sourceConnection.setAutoCommit(true);
-                                        rowcount++;
-                                    } catch (Exception e) {
-                                        if (e.getMessage().toLowerCase().contains("duplicate")) {
-                                            LOGGER.info(String.format("Duplicate entry found in table: %s", nextTargetTable.getTableName()));
-                                        } else {
-                                            LOGGER.warning(String.format("Table: %s, error: %s", nextTargetTable.getTableName(), e.getMessage()));
-                                        }
-                                        try {
-                                            targetConnection.rollback();
-                                        } catch (SQLException ex) {
-                                            LOGGER.warning(String.format("Should not have happened ... :%s", ex.getMessage()));
-                                        }
-                                    }
-                                }
-                                sourceResultSet.close();
-                                sourceStmt.close();
-                                targetStmt.close();
-                                if (rowcount > 0) {
-                                    LOGGER.info(String.format("Target table %s updated, row count: %d", nextTargetTable.getTableName(), rowcount));
+    /**
+     * Like {@link #transferFromDbToDb()}, but continues the transfer recorded in the {@link Config#getCheckpointFile()}:
+     * tables that were copied completely are skipped, tables with a single integer primary key continue after the last
+     * committed key. Tables without such a key that were copied partially are copied again, their rows are deleted first
+     * unless {@link Config#getDuplicateHandling()} skips or updates existing rows
+     *
+     * @param resume true to continue the recorded transfer, false to start a new one
+     */
+    public void transferFromDbToDb(boolean resume) {
+        if (resume && config.getCheckpointFile() == null) {
+            throw new RuntimeException("Resuming a transfer needs a {checkpoint_file}");
+        }
+        transfer(resume ? "Resuming transferring" : "Transferring", config.getCheckpointFile(), resume, null);
+    }
+
+    /**
+     * Copies the rows that were inserted or updated since the previous sync, without deleting target data. Tables with a
+     * {@link Config#getWatermarks() watermark column} only copy the rows whose value is above the one recorded in the
+     * {@link Config#getWatermarkFile()}, all other tables are copied completely. Rows are written with
+     * {@link Config#DUPLICATE_HANDLING_UPDATE}, rows that exist in the target are updated. Rows deleted from the source
+     * remain in the target
+     */
+    public void syncFromDbToDb() {
+        if (!Config.DUPLICATE_HANDLING_UPDATE.equals(config.getDuplicateHandling())) {
+            LOGGER.info(String.format("Syncing updates rows that exist in the target, the {duplicate_handling} '%s' is replaced by '%s'", config.getDuplicateHandling(), Config.DUPLICATE_HANDLING_UPDATE));
+            config.setDuplicateHandling(Config.DUPLICATE_HANDLING_UPDATE);
+            validateDuplicateHandling(config, config.getDuplicateHandling());
+        }
+        for (ConfigWatermark next : config.getWatermarks()) {
+            TransferPlan.TablePair tablePair = transferPlan.getTablePairs().stream()
+                    .filter(pair -> pair.getSourceTable().getTableName().equalsIgnoreCase(next.getTable()))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException(String.format("The table %s of the {watermarks} is not transferred", next.getTable())));
+            ColumnType column = watermarkColumn(tablePair);
+            if (!Watermark.supports(ColumnKind.of(column.getColumnType()))) {
+                throw new RuntimeException(String.format("The column %s of table %s cannot be used as watermark, its type is %s", column.getColumnName(), next.getTable(), column.getColumnType()));
+            }
+        }
+        WatermarkFile watermarks;
+        try {
+            watermarks = new WatermarkFile(config.getWatermarkFile());
+        } catch (IOException e) {
+            LOGGER.warning(String.format("The {watermark_file} %s could not be read, no data was synced. Error: %s", config.getWatermarkFile(), e.getMessage()));
+            return;
+        }
+        transfer("Syncing", null, false, watermarks);
+    }
+
+    /**
+     * Installs triggers on the source tables that record the changes applied to them from now on, see {@link ChangeCapture}.
+     * Only if {@link Config#isChangeCapture()} is set. It has to run before the source snapshot is started, see
+     * {@link #initDb(boolean, boolean)}, so that no change is missed
+     *
+     * @throws SQLException If the triggers could not be installed
+     */
+    public void startChangeCapture() throws SQLException {
+        if (config.isChangeCapture()) {
+            LOGGER.info(String.format("Capturing changes of source database %s", config.getSourceDatabase().getName()));
+            changeCapture = ChangeCapture.start(config, transferPlan.getTablePairs(), transferPlan.getTableDependencies());
+        }
+    }
+
+    /**
+     * Replays the changes captured since {@link #startChangeCapture()} on the target, round after round until a round
+     * replays no more than {@link Config#getChangeCaptureLag()} changes or {@link Config#getChangeCaptureMaxRounds()} are
+     * reached. The log reports the changes of each round and those that remain, writes to the source should stop before
+     * the last rounds. A source
+     * snapshot of {@link Config#isConsistentSnapshot()} is closed afterwards, the target matches the current source
+     *
+     * @throws SQLException If the changes could not be replayed. The triggers and change tables are kept on the source
+     *                      and {@link #stopChangeCapture()} does not drop them
+     */
+    public void replayChanges() throws SQLException {
+        if (changeCapture == null) {
+            return;
+        }
+        if (!Config.DUPLICATE_HANDLING_UPDATE.equals(config.getDuplicateHandling())) {
+            LOGGER.info(String.format("Replaying changes updates rows that exist in the target, the {duplicate_handling} '%s' is replaced by '%s'", config.getDuplicateHandling(), Config.DUPLICATE_HANDLING_UPDATE));
+            config.setDuplicateHandling(Config.DUPLICATE_HANDLING_UPDATE);
+        }
+        LOGGER.info(String.format("Replaying the changes captured in %s to %s", config.getSourceDatabase().getName(), config.getTargetDatabases().get(0).getName()));
+        long started = System.nanoTime();
+        int rounds = 0;
+        long replayed = 0;
+        try (RejectFile rejects = new RejectFile(config.getRejectFile());
+             CheckpointFile checkpoints = new CheckpointFile(null, false)) {
+            MemoryGovernor memory = new MemoryGovernor(config.getMemoryBudget());
+            int changes;
+            do {
+                changes = changeCapture.replay(targetConnection, rejects, checkpoints, memory);
+                rounds++;
+                replayed += changes;
+                LOGGER.info(String.format("Change capture: round %d replayed %d changes", rounds, changes));
+            } while (changes > config.getChangeCaptureLag() && rounds < config.getChangeCaptureMaxRounds());
+            long lag = changeCapture.pending();
+            if (lag > 0) {
+                LOGGER.warning(String.format("Change capture: stopped after %d rounds, %d changes applied to the source meanwhile are not replayed", rounds, lag));
+            }
+            if (rejects.getCount() > 0) {
+                LOGGER.warning(String.format("%d rows were rejected by the target%s", rejects.getCount(),
+                        rejects.getPath() == null ? "" : String.format(", see %s", rejects.getPath())));
+            }
+        } catch (Exception e) {
+            changeCapture.keep();
+            changeCapture = null;
+            throw new SQLException(String.format("Replaying the captured changes failed, the target misses changes of the source. Error: %s", e.getMessage()), e);
+        }
+        LOGGER.info(String.format("DONE - Replaying %d changes in %d rounds completed in %d ms", replayed, rounds, (System.nanoTime() - started) / 1_000_000));
+        if (sourceSnapshot != null) {
+            // the target caught up with the current source, comparing it with the snapshot would report every replayed change
+            LOGGER.info("Change capture: the source snapshot is closed, the target is compared with the current source");
+            sourceSnapshot.close();
+            sourceSnapshot = null;
+        }
+    }
+
+    /**
+     * Removes the triggers and change tables of {@link #startChangeCapture()} from the source. Changes applied to the
+     * source afterwards are not copied
+     */
+    public void stopChangeCapture() {
+        if (changeCapture != null) {
+            changeCapture.close();
+            changeCapture = null;
+        }
+    }
+
+    /**
+     * @param action         How the transfer is logged
+     * @param checkpointFile The {@link CheckpointFile}, null to not record the progress
+     * @param resume         true to continue the progress recorded in the checkpoint file
+     * @param watermarks     The values of the previous sync, null to copy all rows
+     */
+    private void transfer(String action, String checkpointFile, boolean resume, WatermarkFile watermarks) {
+        LOGGER.info(String.format("%s data from %s to %s", action, config.getSourceDatabase().getName(), config.getTargetDatabases().get(0).getName()));
+        TableScheduler<TransferPlan.TablePair> scheduler = new TableScheduler<>(
+                transferPlan.getTablePairs(),
+                tablePair -> TransferPlan.normalize(tablePair.getSourceTable().getTableName()),
+                transferPlan.getTableDependencies()
+        );
+        ConnectionProvider targetConnections = workerConnections(targetPool, targetConnection);
+        BulkLoad bulkLoad = new BulkLoad(config, targetConnection, targetTableNames());
+        CheckpointFile checkpoints;
+        try {
+            checkpoints = new CheckpointFile(checkpointFile, resume);
+        } catch (IOException e) {
+            LOGGER.warning(String.format("The {checkpoint_file} %s could not be %s, no data was transferred. Error: %s", checkpointFile, resume ? "read" : "opened", e.getMessage()));
+            return;
+        }
+        RejectFile rejects;
+        try {
+            rejects = new RejectFile(config.getRejectFile());
+        } catch (IOException e) {
+            LOGGER.warning(String.format("The {reject_file} %s could not be opened, no data was transferred. Error: %s", config.getRejectFile(), e.getMessage()));
+            closeCheckpoints(checkpoints);
+            return;
+        }
+        LargeObjectWorkers largeObjects = openLargeObjectWorkers();
+        MemoryGovernor memory = new MemoryGovernor(config.getMemoryBudget());
+        SpooledLob.setMemoryLimit(config.getSpillThreshold());
+        try {
+            bulkLoad.prepare();
+            ConnectionProvider sourceConnections = sourceSnapshot != null ? sourceSnapshot : workerConnections(sourcePool, sourceConnection);
+            scheduler.run(config.getParallelWorkers(), sourceConnections, bulkLoad.sessions(targetConnections), (tablePair, context) -> {
+                if (watermarks != null) {
+                    syncTable(tablePair, context, watermarks, rejects, checkpoints, largeObjects, memory);
+                    return;
+                }
+                String tableName = tablePair.getTargetTable().getTableName();
+                if (checkpoints.isDone(tableName)) {
+                    LOGGER.info(String.format("Table %s was copied completely before and is skipped", tableName));
+                    return;
+                }
+                List<long[]> keyRanges = keyRanges(tablePair, context.getSourceConnection(), checkpoints);
+                if (keyRanges == null) {
+                    if (checkpoints.isStarted(tableName)) {
+                        restartTable(context.getTargetConnection(), tablePair.getTargetTable());
+                    }
+                    if (checkpoints.isEnabled()) {
+                        checkpoints.started(tableName);
+                    }
+                    logStatistics(new TableTransfer(tablePair, context.getSourceConnection(), context.getTargetConnection(), config, rejects, checkpoints, largeObjects, memory).run());
+                    checkpoints.done(tableName);
+                    return;
+                }
+                if (keyRanges.isEmpty()) {
+                    LOGGER.info(String.format("Table %s was copied completely before", tableName));
+                    checkpoints.done(tableName);
+                    return;
+                }
+                if (checkpoints.hasRanges(tableName)) {
+                    LOGGER.info(String.format("Table %s continues after the key ranges that were copied before", tableName));
+                }
+                if (keyRanges.size() > 1) {
+                    LOGGER.info(String.format("Table %s is copied in %d key ranges", tablePair.getSourceTable().getTableName(), keyRanges.size()));
+                }
+                TableStatistics statistics = new TableStatistics(tableName);
+                AtomicInteger remaining = new AtomicInteger(keyRanges.size());
+                AtomicBoolean failed = new AtomicBoolean();
+                long started = System.nanoTime();
+                for (long[] keyRange : keyRanges) {
+                    context.fork(chunkContext -> {
+                        try {
+                            statistics.merge(new TableTransfer(tablePair, chunkContext.getSourceConnection(), chunkContext.getTargetConnection(), config, rejects, checkpoints, largeObjects, memory, keyRange).run());
+                        } catch (Exception e) {
+                            failed.set(true);
+                            throw e;
+                        } finally {
+                            if (remaining.decrementAndGet() == 0) {
+                                statistics.setElapsedNanos(System.nanoTime() - started);
+                                logStatistics(statistics);
+                                if (!failed.get()) {
+                                    checkpoints.done(tableName);
                                 }
-                            } catch (Exception e) {
-                                LOGGER.warning(e.getMessage());
                             }
                         }
-                    }
+                    });
                 }
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warning("Transferring data was interrupted");
+        } catch (SQLException e) {
+            LOGGER.warning(String.format("The target could not be prepared for bulk loading, no data was transferred. Error: %s", e.getMessage()));
+        } finally {
+            if (largeObjects != null) {
+                largeObjects.close();
+            }
+            bulkLoad.finish(targetConnections);
+            try {
+                rejects.close();
+            } catch (IOException e) {
+                LOGGER.warning(String.format("The {reject_file} %s could not be closed, error: %s", config.getRejectFile(), e.getMessage()));
+            }
+            closeCheckpoints(checkpoints);
+        }
+        LOGGER.info(String.format("Memory: %s", memory));
+        if (rejects.getCount() > 0) {
+            LOGGER.warning(String.format("%d rows were rejected by the target%s", rejects.getCount(),
+                    rejects.getPath() == null ? "" : String.format(", see %s", rejects.getPath())));
+        }
+        LOGGER.info(String.format("DONE - %s data completed", action));
+    }
+
+    /**
+     * Copies the rows of a table that changed since the previous sync and records the new watermark value once they were
+     * committed. Tables without a watermark column are copied completely, tables without a primary key are skipped as their
+     * rows cannot be updated
+     */
+    private void syncTable(TransferPlan.TablePair tablePair, TableScheduler.Context context, WatermarkFile watermarks, RejectFile rejects, CheckpointFile checkpoints, LargeObjectWorkers largeObjects, MemoryGovernor memory) throws Exception {
+        String tableName = tablePair.getSourceTable().getTableName();
+        if (tablePair.getTargetTable().getPrimaryKeyColumns().isEmpty()) {
+            LOGGER.warning(String.format("Table %s has no primary key and is not synced", tableName));
+            return;
+        }
+        ColumnType column = watermarkColumn(tablePair);
+        if (column == null) {
+            LOGGER.info(String.format("Table %s has no watermark column and is copied completely", tableName));
+            logStatistics(new TableTransfer(tablePair, context.getSourceConnection(), context.getTargetConnection(), config, rejects, checkpoints, largeObjects, memory).run());
+            return;
+        }
+        String lower = watermarks.get(tableName, column.getColumnName());
+        Watermark watermark = Watermark.read(context.getSourceConnection(), tablePair.getSourceTable(), column, lower);
+        if (watermark == null) {
+            LOGGER.info(String.format("Table %s has no rows with %s above %s", tableName, column.getColumnName(), lower));
+            return;
+        }
+        LOGGER.info(String.format("Table %s is synced with %s", tableName, watermark));
+        logStatistics(new TableTransfer(tablePair, context.getSourceConnection(), context.getTargetConnection(), config, rejects, checkpoints, largeObjects, memory, null, watermark).run());
+        watermarks.set(tableName, column.getColumnName(), watermark.getUpper());
+    }
+
+    /**
+     * @return The configured watermark column of the source table, null if it has none
+     */
+    private ColumnType watermarkColumn(TransferPlan.TablePair tablePair) {
+        TableColumnTypeSelect table = tablePair.getSourceTable();
+        for (ConfigWatermark next : config.getWatermarks()) {
+            if (table.getTableName().equalsIgnoreCase(next.getTable())) {
+                return table.getColumnTypes().stream()
+                        .filter(ct -> ct.getColumnName().equalsIgnoreCase(next.getColumn()))
+                        .findFirst()
+                        .orElseThrow(() -> new RuntimeException(String.format("The watermark column %s does not exist in table %s", next.getColumn(), next.getTable())));
             }
         }
-        LOGGER.info("DONE - Transferring data completed");
+        return null;
+    }
+
+    private void closeCheckpoints(CheckpointFile checkpoints) {
+        try {
+            checkpoints.close();
+        } catch (IOException e) {
+            LOGGER.warning(String.format("The {checkpoint_file} %s could not be closed, error: %s", checkpoints.getPath(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Removes the rows a previous transfer left in a table it did not complete. With {@link Config#getDuplicateHandling()}
+     * other than fail they are kept, the rows that are copied again are skipped or update them
+     */
+    private void restartTable(Connection connection, TableColumnTypeSelect table) throws SQLException {
+        if (!Config.DUPLICATE_HANDLING_FAIL.equals(config.getDuplicateHandling())) {
+            LOGGER.info(String.format("Table %s was copied partially before and is copied again, with {duplicate_handling} '%s' for the rows that exist", table.getTableName(), config.getDuplicateHandling()));
+            return;
+        }
+        LOGGER.info(String.format("Table %s was copied partially before, its rows are deleted and it is copied again", table.getTableName()));
+        execute(connection, table.getDeleteStmt());
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * @return The workers for the large object columns, see {@link Config#getLargeObjectWorkers()}. Null if not configured,
+     * no table has large object columns or the connections could not be opened
+     */
+    private LargeObjectWorkers openLargeObjectWorkers() {
+        if (config.getLargeObjectWorkers() == 0 || transferPlan.getTablePairs().stream().noneMatch(TransferPlan.TablePair::hasLargeObjectColumns)) {
+            return null;
+        }
+        try {
+            LargeObjectWorkers largeObjects = LargeObjectWorkers.open(config, sourceSnapshot);
+            LOGGER.info(String.format("%d large object workers started", config.getLargeObjectWorkers()));
+            return largeObjects;
+        } catch (SQLException e) {
+            LOGGER.warning(String.format("The connections of the {large_object_workers} could not be opened, large objects are copied by the table workers. Error: %s", e.getMessage()));
+            return null;
+        }
     }
 
     /**
-     * Compares all rows of all tables between the source and target database
+     * Compares all rows of all tables between the source and target database. Columns that are translated from or to
+     * PostgreSQL large objects are skipped as they contain an oid on one side
      */
     public void compareFromDbToDb() {
         if (config.isCompareData()) {
             LOGGER.info(String.format("Comparing data between %s and %s", config.getSourceDatabase().getName(), config.getTargetDatabases().get(0).getName()));
-            for (List<TableColumnTypeSelect> from : liquibaseChangelogProcessor.getSourceTables().values()) {
-                for (TableColumnTypeSelect nextSourceTable : from) {
-                    for (List<TableColumnTypeSelect> table : liquibaseChangelogProcessor.getTargetTables().values()) {
-                        for (TableColumnTypeSelect nextTargetTable : table) {
-                            if (nextTargetTable.getTableName().equalsIgnoreCase(nextSourceTable.getTableName())) {
+            for (TransferPlan.TablePair tablePair : transferPlan.getTablePairs()) {
+                TableColumnTypeSelect nextSourceTable = tablePair.getSourceTable();
+                TableColumnTypeSelect nextTargetTable = tablePair.getTargetTable();
+                List<ColumnType> columnTypes = nextSourceTable.getColumnTypes();
+                try {
+                    Statement sourceStmt = JdbcHelper.createStreamingStatement(sourceConnection, config.getSourceDatabase());
+                    ResultSet sourceResultSet = sourceStmt.executeQuery(nextSourceTable.getSelectStmt());
+                    Statement targetStmt = JdbcHelper.createStreamingStatement(targetConnection, config.getTargetDatabases().get(0));
+                    ResultSet targetResultSet = targetStmt.executeQuery(nextTargetTable.getSelectStmt());
+                    while (sourceResultSet.next()) {
+                        targetResultSet.next();
+                        try {
+                            for (int i = 0; i < columnTypes.size(); i++) {
+                                ColumnType next = columnTypes.get(i);
+                                int sourcePosition = i + 1;
+                                int targetPosition = tablePair.getTargetPosition(i);
+                                if (targetPosition == 0 || tablePair.isLargeObjectColumn(i)) {
+                                    continue;
+                                }
                                 try {
-                                    Statement sourceStmt = sourceConnection.createStatement();
-                                    ResultSet sourceResultSet = sourceStmt.executeQuery(nextSourceTable.getSelectStmt());
-                                    Statement targetStmt = targetConnection.createStatement();
-                                    ResultSet targetResultSet = targetStmt.executeQuery(nextTargetTable.getSelectStmt());
-                                    while (sourceResultSet.next()) {
-                                        targetResultSet.next();
-                                        try {
-                                            for (ColumnType next : nextSourceTable.getColumnTypes()) {
-                                                String columnName = next.getColumnName();
-                                                String columnType = next.getColumnType().toLowerCase();
-                                                try {
-                                                    if (columnType.startsWith("varchar") || columnType.startsWith("char") || columnType.startsWith("text")) {
-                                                        String fromResult = sourceResultSet.getString(columnName);
-                                                        String toResult = targetResultSet.getString(columnName);
-                                                        if (fromResult != null && toResult != null && !fromResult.equals(toResult)) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("int")) {
-                                                        int fromResult = sourceResultSet.getInt(columnName);
-                                                        int toResult = targetResultSet.getInt(columnName);
-                                                        if (fromResult != toResult) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("tinyint")) {
-                                                        short fromResult = sourceResultSet.getShort(columnName);
-                                                        short toResult = targetResultSet.getShort(columnName);
-                                                        if (fromResult != toResult) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("number")) {
-                                                        BigDecimal fromResult = sourceResultSet.getBigDecimal(columnName);
-                                                        BigDecimal toResult = targetResultSet.getBigDecimal(columnName);
-                                                        if (!fromResult.equals(toResult)) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("bigint")) {
-                                                        long fromResult = sourceResultSet.getLong(columnName);
-                                                        long toResult = targetResultSet.getLong(columnName);
-                                                        if (fromResult != toResult) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("boolean")) {
-                                                        boolean fromResult = sourceResultSet.getBoolean(columnName);
-                                                        boolean toResult = targetResultSet.getBoolean(columnName);
-                                                        if (fromResult != toResult) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("clob")) {
-                                                        String fromResult = sourceResultSet.getString(columnName);
-                                                        String toResult = targetResultSet.getString(columnName);
-                                                        if (fromResult != null && !fromResult.equals(toResult)) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    } else if (columnType.startsWith("blob") || columnType.startsWith("byte")) {
-                                                        byte[] fromBlob = sourceResultSet.getBytes(columnName);
-                                                        String fromResult = Base64.getEncoder().encodeToString(fromBlob);
-                                                        byte[] toBlob = targetResultSet.getBytes(columnName);
-                                                        String toResult = Base64.getEncoder().encodeToString(toBlob);
-                                                        if (!fromResult.equals(toResult)) {
-                                                            LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", nextSourceTable.getTableName(), columnName, next.getColumnType(), fromResult, toResult));
-                                                        }
-                                                    }
-                                                } catch (Exception e) {
-                                                    LOGGER.warning(String.format("Table: %s, column: %s, columnType: %s, error: %s", nextSourceTable.getTableName(), columnName, columnType, e.getMessage()));
-                                                    throw e;
-                                                }
+                                    switch (tablePair.getKind(i)) {
+                                        case TEXT: {
+                                            String fromResult = sourceResultSet.getString(sourcePosition);
+                                            String toResult = targetResultSet.getString(targetPosition);
+                                            if (fromResult != null && !fromResult.equals(toResult)) {
+                                                logDifference(nextSourceTable, next, fromResult, toResult);
                                             }
-                                        } catch (Exception e) {
-                                            LOGGER.warning(e.getMessage());
+                                            break;
                                         }
+                                        case INT: {
+                                            int fromResult = sourceResultSet.getInt(sourcePosition);
+                                            int toResult = targetResultSet.getInt(targetPosition);
+                                            if (fromResult != toResult) {
+                                                logDifference(nextSourceTable, next, fromResult, toResult);
+                                            }
+                                            break;
+                                        }
+                                        case TINYINT: {
+                                            short fromResult = sourceResultSet.getShort(sourcePosition);
+                                            short toResult = targetResultSet.getShort(targetPosition);
+                                            if (fromResult != toResult) {
+                                                logDifference(nextSourceTable, next, fromResult, toResult);
+                                            }
+                                            break;
+                                        }
+                                        case NUMBER: {
+                                            BigDecimal fromResult = sourceResultSet.getBigDecimal(sourcePosition);
+                                            BigDecimal toResult = targetResultSet.getBigDecimal(targetPosition);
+                                            if (fromResult == null ? toResult != null : toResult == null || fromResult.compareTo(toResult) != 0) {
+                                                logDifference(nextSourceTable, next, fromResult, toResult);
+                                            }
+                                            break;
+                                        }
+                                        case BIGINT: {
+                                            long fromResult = sourceResultSet.getLong(sourcePosition);
+                                            long toResult = targetResultSet.getLong(targetPosition);
+                                            if (fromResult != toResult) {
+                                                logDifference(nextSourceTable, next, fromResult, toResult);
+                                            }
+                                            break;
+                                        }
+                                        case BOOLEAN: {
+                                            boolean fromResult = sourceResultSet.getBoolean(sourcePosition);
+                                            boolean toResult = targetResultSet.getBoolean(targetPosition);
+                                            if (fromResult != toResult) {
+                                                logDifference(nextSourceTable, next, fromResult, toResult);
+                                            }
+                                            break;
+                                        }
+                                        case BINARY: {
+                                            byte[] fromBlob = sourceResultSet.getBytes(sourcePosition);
+                                            byte[] toBlob = targetResultSet.getBytes(targetPosition);
+                                            if (!Arrays.equals(fromBlob, toBlob)) {
+                                                logDifference(nextSourceTable, next,
+                                                        fromBlob == null ? null : Base64.getEncoder().encodeToString(fromBlob),
+                                                        toBlob == null ? null : Base64.getEncoder().encodeToString(toBlob));
+                                            }
+                                            break;
+                                        }
+                                        default:
+                                            // not compared
                                     }
-                                    sourceResultSet.close();
-                                    sourceStmt.close();
-                                    targetResultSet.close();
-                                    targetStmt.close();
                                 } catch (Exception e) {
-                                    LOGGER.warning(e.getMessage());
+                                    LOGGER.warning(String.format("Table: %s, column: %s, columnType: %s, error: %s", nextSourceTable.getTableName(), next.getColumnName(), next.getColumnType(), e.getMessage()));
+                                    throw e;
                                 }
                             }
+                        } catch (Exception e) {
+                            LOGGER.warning(e.getMessage());
                         }
                     }
+                    sourceResultSet.close();
+                    sourceStmt.close();
+                    targetResultSet.close();
+                    targetStmt.close();
+                } catch (Exception e) {
+                    LOGGER.warning(e.getMessage());
+                } finally {
+                    // a source snapshot stays open, all tables are compared against the image that was copied
+                    if (sourceSnapshot == null) {
+                        JdbcHelper.endStreaming(sourceConnection, config.getSourceDatabase());
+                    }
+                    JdbcHelper.endStreaming(targetConnection, config.getTargetDatabases().get(0));
                 }
             }
             LOGGER.info("DONE - Comparing data complete");
@@ -363,14 +684,123 @@ public class DatabaseManager {
         return config;
     }
 
-    private String processClob(Reader clobStreamReader) throws IOException {
-        int intch;
-        StringBuilder sb = new StringBuilder();
-        while ((intch = clobStreamReader.read()) != -1) {
-            char ch = (char) intch;
-            sb.append(ch);
+    /**
+     * @return The configured maximum size of the connection pool or, if not configured, one connection per worker plus the
+     * connection created by {@link #initDb(boolean, boolean)}
+     */
+    private int poolSize(ConfigDatabase database) {
+        if (database.getConnectionPool().getMaxSize() > 0) {
+            return database.getConnectionPool().getMaxSize();
+        }
+        return requiredConnections();
+    }
+
+    private int requiredConnections() {
+        return config.getParallelWorkers() == 1 ? 1 : config.getParallelWorkers() + 1;
+    }
+
+    /**
+     * Splits a table into ranges of {@link Config#getChunkSize()} primary key values, see
+     * {@link TableColumnTypeSelect#getKeyBoundsStmt()}. The ranges are based on the lowest and highest key, gaps between
+     * keys lead to ranges with less rows. With a {@link CheckpointFile} a table that is not split is read as one range, so
+     * that its progress can be recorded, and the ranges that were copied before are left out
+     *
+     * @return The lowest (inclusive) and highest (exclusive) key of each range that remains. Null if the table is copied
+     * at once
+     */
+    private List<long[]> keyRanges(TransferPlan.TablePair tablePair, Connection connection, CheckpointFile checkpoints) throws SQLException {
+        List<long[]> keyRanges = new ArrayList<>();
+        String keyBoundsStmt = tablePair.getSourceTable().getKeyBoundsStmt();
+        long chunkSize = config.getChunkSize();
+        boolean resumable = checkpoints.isEnabled() && tablePair.getKeyPosition() >= 0;
+        if ((chunkSize < 1 && !resumable) || keyBoundsStmt == null) {
+            return null;
+        }
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(keyBoundsStmt)) {
+            if (!rs.next()) {
+                return null;
+            }
+            long min = rs.getLong(1);
+            long max = rs.getLong(2);
+            if (rs.wasNull()) {
+                return null;
+            }
+            if (chunkSize < 1 || max - min < chunkSize) {
+                if (!resumable) {
+                    return null;
+                }
+                keyRanges.add(new long[]{min, max + 1});
+            } else {
+                for (long lower = min; lower <= max; lower += chunkSize) {
+                    keyRanges.add(new long[]{lower, lower + Math.min(chunkSize, max - lower + 1)});
+                    if (max - lower < chunkSize) {
+                        break;
+                    }
+                }
+            }
+        }
+        List<long[]> remaining = new ArrayList<>();
+        for (long[] keyRange : keyRanges) {
+            remaining.addAll(checkpoints.remaining(tablePair.getTargetTable().getTableName(), keyRange));
+        }
+        return remaining;
+    }
+
+    /**
+     * @return The names of all target tables that are transferred, each once
+     */
+    private List<String> targetTableNames() {
+        Set<String> tableNames = new LinkedHashSet<>();
+        for (TransferPlan.TablePair tablePair : transferPlan.getTablePairs()) {
+            tableNames.add(tablePair.getTargetTable().getTableName());
+        }
+        return new ArrayList<>(tableNames);
+    }
+
+    private void logStatistics(TableStatistics statistics) {
+        if (statistics.getRows() > 0 || statistics.getSkippedRows() > 0 || statistics.getUnreportedRows() > 0 || statistics.getRejectedRows() > 0) {
+            LOGGER.info(String.format("Target table %s updated, %s", statistics.getTableName(), statistics));
+        }
+    }
+
+    /**
+     * With a single worker the connection created by {@link #initDb(boolean, boolean)} is shared, otherwise each worker
+     * borrows its own connection from the pool
+     */
+    private ConnectionProvider workerConnections(ConnectionPool pool, Connection shared) {
+        if (config.getParallelWorkers() == 1) {
+            return new ConnectionProvider() {
+                @Override
+                public Connection acquire() {
+                    return shared;
+                }
+
+                @Override
+                public void release(Connection connection) {
+                    // the shared connection is released by closeDb()
+                }
+            };
+        }
+        return pool;
+    }
+
+    private void logDifference(TableColumnTypeSelect table, ColumnType columnType, Object fromResult, Object toResult) {
+        LOGGER.warning(String.format("table: %s, column: %s, type: %s, fromResult: %s, toResult: %s", table.getTableName(), columnType.getColumnName(), columnType.getColumnType(), fromResult, toResult));
+    }
+
+    /**
+     * Duplicates can only be skipped or updated by targets with a known dialect that do not use 'copy', 'load_data' can
+     * only skip them
+     */
+    private void validateDuplicateHandling(Config config, String duplicateHandling) {
+        if (!Config.DUPLICATE_HANDLING_FAIL.equals(duplicateHandling)) {
+            ConfigDatabase target = config.getTargetDatabases().get(0);
+            if (target.getDialect() == Dialect.OTHER || ConfigDatabase.LOAD_METHOD_COPY.equals(target.getLoadMethod())
+                    || (ConfigDatabase.LOAD_METHOD_LOAD_DATA.equals(target.getLoadMethod()) && Config.DUPLICATE_HANDLING_UPDATE.equals(duplicateHandling))) {
+                throw new RuntimeException(String.format("The {duplicate_handling} '%s' is not supported for the {load_method} '%s' of target database '%s'",
+                        duplicateHandling, target.getLoadMethod(), target.getName()));
+            }
         }
-        return sb.toString();
     }
 
     private void validateConfig(Config config) {
@@ -383,16 +813,104 @@ public class DatabaseManager {
         // - source and target cannot be the same database type
         // - either configure translate_all=true && do not provide a list of columns
         // - or configure translate_all=false && provide a list of columns
+        // - batch_size, commit_every, queue_depth, parallel_workers, max_batch_bytes and spill_threshold have to be greater than 0
+        // - with adaptive_batch_size the batch_size lies within min_batch_size and max_batch_size
+        // - fetch_size, chunk_size, large_object_workers and memory_budget cannot be negative
+        // - the connection pools need room for all workers
+        // - the load_method of a target is either 'insert', 'multi_row', for PostgreSQL 'copy' or for MySQL/MariaDB 'load_data'
+        // - the extract_method of the source is either 'jdbc' or, for PostgreSQL, 'copy'
+        // - the bulk_load_mode is one of 'off', 'checks' and 'indexes'
+        // - the wipe_strategy is either 'delete' or 'truncate'
+        // - the duplicate_handling is one of 'fail', 'ignore' and 'update', the latter two need a PostgreSQL, MySQL/MariaDB or H2
+        //   target that does not use 'copy'. 'load_data' only supports 'ignore'
+        // - the watermarks need a watermark_file and name a table and a column each
+        // - change_capture needs a PostgreSQL, MySQL/MariaDB or H2 source and a target that supports the duplicate_handling 'update'
+        // - change_capture_lag cannot be negative, change_capture_max_rounds has to be greater than 0
         //
         if (config.getTargetDatabases().size() != 1) {
             throw new RuntimeException("The configuration needs to contain exactly one target database");
         }
+        if (config.getBatchSize() < 1 || config.getCommitEvery() < 1) {
+            throw new RuntimeException("The values of {batch_size} and {commit_every} have to be greater than 0");
+        }
+        if (config.getMaxBatchBytes() < 1) {
+            throw new RuntimeException("The value of {max_batch_bytes} has to be greater than 0");
+        }
+        if (config.getSpillThreshold() < 1) {
+            throw new RuntimeException("The value of {spill_threshold} has to be greater than 0");
+        }
+        if (config.getMemoryBudget() < 0) {
+            throw new RuntimeException("The value of {memory_budget} cannot be negative");
+        }
+        if (config.isAdaptiveBatchSize() && (config.getMinBatchSize() < 1 || config.getBatchSize() < config.getMinBatchSize() || config.getBatchSize() > config.getMaxBatchSize())) {
+            throw new RuntimeException("With {adaptive_batch_size} the {batch_size} has to lie within {min_batch_size} and {max_batch_size}, which has to be greater than 0");
+        }
+        if (config.getQueueDepth() < 1) {
+            throw new RuntimeException("The value of {queue_depth} has to be greater than 0");
+        }
+        if (config.getParallelWorkers() < 1) {
+            throw new RuntimeException("The value of {parallel_workers} has to be greater than 0");
+        }
+        if (config.getChunkSize() < 0) {
+            throw new RuntimeException("The value of {chunk_size} cannot be negative");
+        }
+        if (config.getLargeObjectWorkers() < 0) {
+            throw new RuntimeException("The value of {large_object_workers} cannot be negative");
+        }
+        if (config.getSourceDatabase().getFetchSize() < 0 || config.getTargetDatabases().get(0).getFetchSize() < 0) {
+            throw new RuntimeException("The value of {fetch_size} cannot be negative");
+        }
+        for (ConfigDatabase next : Arrays.asList(config.getSourceDatabase(), config.getTargetDatabases().get(0))) {
+            ConfigConnectionPool pool = next.getConnectionPool();
+            if (pool.getMinSize() < 0 || pool.getTimeoutSeconds() < 1) {
+                throw new RuntimeException(String.format("The {connection_pool} of database %s needs a {min_size} of at least 0 and a {timeout_seconds} of at least 1", next.getName()));
+            }
+            if (pool.getMaxSize() > 0 && (pool.getMaxSize() < requiredConnections() || pool.getMaxSize() < pool.getMinSize())) {
+                throw new RuntimeException(String.format("The {max_size} of the {connection_pool} of database %s has to be at least %d and not less than {min_size}", next.getName(), requiredConnections()));
+            }
+        }
         if (config.getSourceDatabase().getDbmsType().startsWith("post") && !config.getSourceDatabase().isPostgresType()) {
             LOGGER.warning("It appears that the source database is of type 'postgresql' but the flag 'postgres_type=true' has not been set. Please set the flag if it is the case.");
         }
         if (!config.getSourceDatabase().getDbmsType().startsWith("post") && config.getSourceDatabase().isPostgresType()) {
             LOGGER.warning("It appears that the source database is not of type 'postgresql' but the flag 'postgres_type=true' has been set. Please unset the flag if it is the case.");
         }
+        if (!Arrays.asList(Config.WIPE_STRATEGY_DELETE, Config.WIPE_STRATEGY_TRUNCATE).contains(config.getWipeStrategy())) {
+            throw new RuntimeException(String.format("The {wipe_strategy} '%s' is not supported", config.getWipeStrategy()));
+        }
+        if (!Arrays.asList(Config.DUPLICATE_HANDLING_FAIL, Config.DUPLICATE_HANDLING_IGNORE, Config.DUPLICATE_HANDLING_UPDATE).contains(config.getDuplicateHandling())) {
+            throw new RuntimeException(String.format("The {duplicate_handling} '%s' is not supported", config.getDuplicateHandling()));
+        }
+        validateDuplicateHandling(config, config.getDuplicateHandling());
+        if (config.getChangeCaptureLag() < 0 || config.getChangeCaptureMaxRounds() < 1) {
+            throw new RuntimeException("The value of {change_capture_lag} cannot be negative and {change_capture_max_rounds} has to be greater than 0");
+        }
+        if (config.isChangeCapture()) {
+            if (config.getSourceDatabase().getDialect() == Dialect.OTHER) {
+                throw new RuntimeException(String.format("The {change_capture} is not supported for the dbms_type '%s' of source database '%s'",
+                        config.getSourceDatabase().getDbmsType(), config.getSourceDatabase().getName()));
+            }
+            // captured changes are replayed as upserts
+            validateDuplicateHandling(config, Config.DUPLICATE_HANDLING_UPDATE);
+        }
+        if (!config.getWatermarks().isEmpty() && config.getWatermarkFile() == null) {
+            throw new RuntimeException("The {watermarks} need a {watermark_file}");
+        }
+        for (ConfigWatermark next : config.getWatermarks()) {
+            if (next.getTable() == null || next.getColumn() == null) {
+                throw new RuntimeException("Each of the {watermarks} needs a {table} and a {column}");
+            }
+        }
+        if (!Arrays.asList(Config.BULK_LOAD_MODE_OFF, Config.BULK_LOAD_MODE_CHECKS, Config.BULK_LOAD_MODE_INDEXES).contains(config.getBulkLoadMode())) {
+            throw new RuntimeException(String.format("The {bulk_load_mode} '%s' is not supported", config.getBulkLoadMode()));
+        }
+        if (ConfigDatabase.EXTRACT_METHOD_COPY.equals(config.getSourceDatabase().getExtractMethod())) {
+            if (config.getSourceDatabase().getDialect() != Dialect.POSTGRESQL) {
+                throw new RuntimeException(String.format("The {extract_method} '%s' is only supported for PostgreSQL", config.getSourceDatabase().getExtractMethod()));
+            }
+        } else if (!ConfigDatabase.EXTRACT_METHOD_JDBC.equals(config.getSourceDatabase().getExtractMethod())) {
+            throw new RuntimeException(String.format("The {extract_method} '%s' is not supported", config.getSourceDatabase().getExtractMethod()));
+        }
         Set<String> databaseNames = new HashSet<>();
         Set<String> databaseTypes = new HashSet<>();
         ConfigDatabase source = config.getSourceDatabase();
@@ -406,6 +924,17 @@ public class DatabaseManager {
             if (!databaseTypes.add(next.getDbmsType().toLowerCase())) {
                 throw new RuntimeException(String.format("The source (%s) and target (%s) database cannot be of the same dbms_type", source.getName(), next.getName()));
             }
+            if (ConfigDatabase.LOAD_METHOD_COPY.equals(next.getLoadMethod())) {
+                if (next.getDialect() != Dialect.POSTGRESQL) {
+                    throw new RuntimeException(String.format("The {load_method} '%s' is only supported for PostgreSQL. Check the config of target database '%s'", next.getLoadMethod(), next.getName()));
+                }
+            } else if (ConfigDatabase.LOAD_METHOD_LOAD_DATA.equals(next.getLoadMethod())) {
+                if (next.getDialect() != Dialect.MYSQL) {
+                    throw new RuntimeException(String.format("The {load_method} '%s' is only supported for MySQL/MariaDB. Check the config of target database '%s'", next.getLoadMethod(), next.getName()));
+                }
+            } else if (!ConfigDatabase.LOAD_METHOD_INSERT.equals(next.getLoadMethod()) && !ConfigDatabase.LOAD_METHOD_MULTI_ROW.equals(next.getLoadMethod())) {
+                throw new RuntimeException(String.format("The {load_method} '%s' is not supported. Check the config of target database '%s'", next.getLoadMethod(), next.getName()));
+            }
             for (PostgresLargeObjectTranslation nextPLOT : next.getTranslateToPostgresClobObjects()) {
                 if (nextPLOT.isTranslateAll() && !nextPLOT.getColumns().isEmpty()) {
                     throw new RuntimeException(String.format("If {translate_all=true} is configured a list of columns is not supported. Check the config of target database '%s'", next.getName()));
@@ -0,0 +1,84 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Writes rows with the batched insert statement of the target table, see {@link TableColumnTypeSelect#getInsertStmt(String)}
+ */
+final class InsertRowWriter implements RowWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(InsertRowWriter.class.getName());
+
+    private final TableColumnTypeSelect targetTable;
+    private final ColumnBinder[] binders;
+    private final PreparedStatement targetStmt;
+    private final boolean ignoreDuplicates;
+    private int skippedRows;
+    private int unreportedRows;
+
+    InsertRowWriter(TransferPlan.TablePair tablePair, Connection targetConnection, String duplicateHandling) throws SQLException {
+        this.targetTable = tablePair.getTargetTable();
+        this.binders = tablePair.getBinders();
+        this.targetStmt = targetConnection.prepareStatement(RowWriter.insertStmt(targetTable, duplicateHandling));
+        this.ignoreDuplicates = Config.DUPLICATE_HANDLING_IGNORE.equals(duplicateHandling);
+    }
+
+    @Override
+    public int write(RowBatch batch) throws SQLException {
+        skippedRows = 0;
+        unreportedRows = 0;
+        int batched = 0;
+        for (int r = 0; r < batch.size(); r++) {
+            try {
+                for (int i = 0; i < binders.length; i++) {
+                    binders[i].bind(targetStmt, 0, batch, r, i);
+                }
+                targetStmt.addBatch();
+                batched++;
+            } catch (Exception e) {
+                LOGGER.warning(String.format("Table: %s, row skipped, error: %s", targetTable.getTableName(), e.getMessage()));
+                targetStmt.clearParameters();
+            }
+        }
+        if (batched > 0) {
+            try {
+                int[] counts = targetStmt.executeBatch();
+                if (ignoreDuplicates) {
+                    for (int count : counts) {
+                        if (count == 0) {
+                            skippedRows++;
+                        } else if (count == Statement.SUCCESS_NO_INFO) {
+                            // i.e. the bulk batches of MariaDB Connector/J 3.x
+                            unreportedRows++;
+                        }
+                    }
+                }
+            } finally {
+                targetStmt.clearBatch();
+            }
+        }
+        return batched - skippedRows - unreportedRows;
+    }
+
+    @Override
+    public int getSkippedRows() {
+        return skippedRows;
+    }
+
+    @Override
+    public int getUnreportedRows() {
+        return unreportedRows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        targetStmt.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.Dialect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Small helpers for handling connections and statements
+ */
+final class JdbcHelper {
+
+    private static final Logger LOGGER = Logger.getLogger(JdbcHelper.class.getName());
+
+    private JdbcHelper() {
+        // only static methods
+    }
+
+    /**
+     * Creates a statement that streams its result, see {@link Dialect#createStreamingStatement(Connection, int)}. Autocommit
+     * is turned off if the dialect requires it, {@link #endStreaming(Connection, ConfigDatabase)} turns it back on
+     */
+    static Statement createStreamingStatement(Connection connection, ConfigDatabase database) throws SQLException {
+        Dialect dialect = database.getDialect();
+        if (dialect.requiresTransactionForStreaming() && connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+        return dialect.createStreamingStatement(connection, database.getFetchSize());
+    }
+
+    /**
+     * Same as {@link #createStreamingStatement(Connection, ConfigDatabase)} for a prepared statement
+     */
+    static PreparedStatement prepareStreamingStatement(Connection connection, ConfigDatabase database, String sql) throws SQLException {
+        Dialect dialect = database.getDialect();
+        if (dialect.requiresTransactionForStreaming() && connection.getAutoCommit()) {
+            connection.setAutoCommit(false);
+        }
+        return dialect.prepareStreamingStatement(connection, sql, database.getFetchSize());
+    }
+
+    static void endStreaming(Connection connection, ConfigDatabase database) {
+        if (database.getDialect().requiresTransactionForStreaming()) {
+            rollbackQuietly(connection);
+            restoreAutoCommit(connection);
+        }
+    }
+
+    static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ex) {
+            LOGGER.warning(String.format("Should not have happened ... :%s", ex.getMessage()));
+        }
+    }
+
+    static void restoreAutoCommit(Connection connection) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ex) {
+            LOGGER.warning(String.format("Should not have happened ... :%s", ex.getMessage()));
+        }
+    }
+
+    /**
+     * @return The largest packet a MySQL/MariaDB server accepts, 4 MiB if it cannot be read
+     */
+    static long maxAllowedPacket(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery("SELECT @@max_allowed_packet")) {
+            return rs.next() ? rs.getLong(1) : 4L * 1024 * 1024;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+/**
+ * Reads rows with the select statement of the source table and the {@link ColumnBinder} of each column. The result is
+ * streamed, see {@link JdbcHelper#createStreamingStatement}
+ */
+final class JdbcRowReader implements RowReader {
+
+    private static final Logger LOGGER = Logger.getLogger(JdbcRowReader.class.getName());
+
+    private final TableColumnTypeSelect sourceTable;
+    private final ColumnBinder[] binders;
+    private final Statement sourceStmt;
+    private final ResultSet sourceResultSet;
+    private final LargeObjectWorkers largeObjects;
+
+    JdbcRowReader(TransferPlan.TablePair tablePair, Connection sourceConnection, ConfigDatabase sourceDatabase, long[] keyRange, RowFilter filter, LargeObjectWorkers largeObjects) throws SQLException {
+        this.sourceTable = tablePair.getSourceTable();
+        this.binders = tablePair.getBinders();
+        this.largeObjects = largeObjects;
+        if (filter != null) {
+            PreparedStatement filterStmt = JdbcHelper.prepareStreamingStatement(sourceConnection, sourceDatabase, filter.getSelectStmt(sourceTable));
+            filter.bind(filterStmt);
+            this.sourceStmt = filterStmt;
+        } else if (keyRange == null) {
+            this.sourceStmt = JdbcHelper.createStreamingStatement(sourceConnection, sourceDatabase);
+        } else {
+            PreparedStatement chunkStmt = JdbcHelper.prepareStreamingStatement(sourceConnection, sourceDatabase, sourceTable.getChunkSelectStmt());
+            chunkStmt.setLong(1, keyRange[0]);
+            chunkStmt.setLong(2, keyRange[1]);
+            this.sourceStmt = chunkStmt;
+        }
+        try {
+            this.sourceResultSet = sourceStmt instanceof PreparedStatement ? ((PreparedStatement) sourceStmt).executeQuery() : sourceStmt.executeQuery(sourceTable.getSelectStmt());
+        } catch (SQLException e) {
+            sourceStmt.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean next(RowBatch batch) throws SQLException {
+        while (sourceResultSet.next()) {
+            int row = batch.nextRow();
+            try {
+                for (int i = 0; i < binders.length; i++) {
+                    binders[i].read(sourceResultSet, batch, row, i, largeObjects);
+                }
+                batch.addRow();
+                return true;
+            } catch (Exception e) {
+                batch.discardRow();
+                LOGGER.warning(String.format("Table: %s, row skipped, error: %s", sourceTable.getTableName(), e.getMessage()));
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            sourceResultSet.close();
+        } finally {
+            sourceStmt.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Reads and creates PostgreSQL large objects ahead of the writers, see {@link Config#getLargeObjectWorkers()}. The reader
+ * of a table hands the large object columns of each row to the workers and puts a {@link PendingValue} into the row, the
+ * writer waits for it when it binds the row. Rows keep their order, only the large object round trips overlap.
+ * <p>
+ * Each worker keeps a source and a target connection of its own. Every large object is read or created in a transaction
+ * of its own that is committed right away, so that the row written later on another connection can reference it. Large
+ * objects of rows the target rejects are not removed, vacuumlo cleans them up. All tables share one instance.
+ * <p>
+ * With a {@link SourceSnapshot} every read transaction joins the exported snapshot, so the large objects are read at the
+ * same point in time as the rows that reference them
+ */
+final class LargeObjectWorkers implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(LargeObjectWorkers.class.getName());
+
+    private final ConnectionProvider sourceConnections;
+    private final ConnectionProvider targetConnections;
+    private final ExecutorService executor;
+    private final ThreadLocal<Connection> sourceConnection;
+    private final ThreadLocal<Connection> targetConnection;
+    private final List<Connection> acquiredSource;
+    private final List<Connection> acquiredTarget;
+    private final List<ConnectionPool> pools;
+    private SourceSnapshot snapshot;
+
+    /**
+     * @param sourceConnections Provides the connections large objects are read with
+     * @param targetConnections Provides the connections large objects are created with
+     * @param workers           The number of workers, each acquires up to one connection of each provider
+     */
+    LargeObjectWorkers(ConnectionProvider sourceConnections, ConnectionProvider targetConnections, int workers) {
+        this.sourceConnections = sourceConnections;
+        this.targetConnections = targetConnections;
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "dbmerger-large-object");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sourceConnection = new ThreadLocal<>();
+        this.targetConnection = new ThreadLocal<>();
+        this.acquiredSource = new ArrayList<>();
+        this.acquiredTarget = new ArrayList<>();
+        this.pools = new ArrayList<>();
+    }
+
+    /**
+     * @param snapshot The snapshot the rows are read in, null if the source is not read in a snapshot
+     * @return Workers with connection pools of their own, closed with the workers
+     * @throws SQLException If the pools could not be opened
+     */
+    static LargeObjectWorkers open(Config config, SourceSnapshot snapshot) throws SQLException {
+        int workers = config.getLargeObjectWorkers();
+        ConnectionPool sourcePool = new ConnectionPool(config.getSourceDatabase(), workers);
+        ConnectionPool targetPool;
+        try {
+            targetPool = new ConnectionPool(config.getTargetDatabases().get(0), workers);
+        } catch (SQLException e) {
+            sourcePool.close();
+            throw e;
+        }
+        LargeObjectWorkers largeObjects = new LargeObjectWorkers(sourcePool, targetPool, workers);
+        largeObjects.pools.add(sourcePool);
+        largeObjects.pools.add(targetPool);
+        largeObjects.snapshot = snapshot;
+        return largeObjects;
+    }
+
+    /**
+     * @param loader The step that reads the value with a source connection
+     * @param value  The value read from the source row, i.e. the oid
+     * @return The value that still has to be converted for the target
+     */
+    PendingValue load(ColumnBinder.ValueConverter loader, Object value) {
+        return submit(loader, value, sourceConnection, sourceConnections, acquiredSource, false);
+    }
+
+    /**
+     * @param converter The step that stores the value with a target connection
+     * @param value     The value read from the source row, closed once it was stored, see {@link SpooledLob}
+     * @return The value of the target column, i.e. the oid
+     */
+    PendingValue store(ColumnBinder.ValueConverter converter, Object value) {
+        return submit(converter, value, targetConnection, targetConnections, acquiredTarget, true);
+    }
+
+    /**
+     * Waits for the running steps and releases the connections of the workers
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.warning("The large object workers did not finish within a minute");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            acquiredSource.forEach(sourceConnections::release);
+            acquiredTarget.forEach(targetConnections::release);
+            acquiredSource.clear();
+            acquiredTarget.clear();
+        }
+        pools.forEach(ConnectionPool::close);
+    }
+
+    private PendingValue submit(ColumnBinder.ValueConverter step, Object value, ThreadLocal<Connection> connection, ConnectionProvider connections, List<Connection> acquired, boolean converted) {
+        PendingValue pending = new PendingValue(converted);
+        executor.execute(() -> {
+            try {
+                Connection next = connection(connection, connections, acquired);
+                try {
+                    if (!converted && snapshot != null) {
+                        snapshot.join(next);
+                    }
+                    Object result = step.convert(next, value);
+                    next.commit();
+                    pending.complete(result);
+                } catch (Exception e) {
+                    JdbcHelper.rollbackQuietly(next);
+                    throw e;
+                }
+            } catch (Exception e) {
+                pending.fail(e);
+            } finally {
+                SpooledLob.closeAll(new Object[]{value});
+            }
+        });
+        return pending;
+    }
+
+    private Connection connection(ThreadLocal<Connection> connection, ConnectionProvider connections, List<Connection> acquired) throws SQLException {
+        Connection next = connection.get();
+        if (next == null) {
+            next = connections.acquire();
+            synchronized (this) {
+                acquired.add(next);
+            }
+            // the large object API only works within a transaction
+            next.setAutoCommit(false);
+            connection.set(next);
+        }
+        return next;
+    }
+}
@@ -2,7 +2,9 @@ package com.pingcentral.custom;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pingcentral.custom.model.ColumnKind;
 import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.Dialect;
 import com.pingcentral.custom.model.LiquibaseChangesAsJson;
 import com.pingcentral.custom.model.TableColumnTypeSelect;
 import org.w3c.dom.Document;
@@ -34,6 +36,12 @@ public class LiquibaseChangelogProcessor {
      */
     private final Map<String, Integer> tableIndexes;
 
+    /**
+     * Foreign keys by constraint name, each one as {base table, referenced table}. Needed to find tables that can be processed concurrently
+     */
+    private final Map<String, String[]> foreignKeys;
+    private Map<String, Set<String>> tableDependencies;
+
     private final DocumentBuilder db;
     private final File changelogMaster;
     private final String sourceDbms;
@@ -57,6 +65,7 @@ public class LiquibaseChangelogProcessor {
         this.sourceDbms = sourceDbms;
         this.targetDbms = targetDbms;
         this.tableIndexes = new HashMap<>();
+        this.foreignKeys = new LinkedHashMap<>();
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
         try {
             // optional, but recommended
@@ -85,6 +94,7 @@ public class LiquibaseChangelogProcessor {
         LiquibaseChangesAsJson output = new LiquibaseChangesAsJson();
         output.setDatabases(dbmsList);
         output.setTableIndexes(tableIndexes);
+        output.setTableDependencies(tableDependencies);
 
         ObjectMapper mapper = new ObjectMapper();
         return mapper.writeValueAsString(output);
@@ -116,8 +126,15 @@ public class LiquibaseChangelogProcessor {
             tableIndexes.putAll(dbmsTables.getTableIndexes());
             dbmsList.get(sourceDbms).putAll(dbmsTables.getDatabases().get(sourceDbms));
             dbmsList.get(targetDbms).putAll(dbmsTables.getDatabases().get(targetDbms));
+            tableDependencies = dbmsTables.getTableDependencies() == null ? new HashMap<>() : dbmsTables.getTableDependencies();
         } else {
             processLiquibaseConfigFiles(processLiquibaseChangelogMaster(), dbmsList);
+            tableDependencies = new HashMap<>();
+            for (String[] foreignKey : foreignKeys.values()) {
+                if (!foreignKey[0].equalsIgnoreCase(foreignKey[1])) {
+                    tableDependencies.computeIfAbsent(foreignKey[0], k -> new TreeSet<>()).add(foreignKey[1]);
+                }
+            }
         }
         sourceTables = dbmsList.get(sourceDbms);
         targetTables = dbmsList.get(targetDbms);
@@ -131,6 +148,53 @@ public class LiquibaseChangelogProcessor {
         return targetTables;
     }
 
+    /**
+     * @return The tables each table references with foreign keys, by table name. Empty if the changelog files do not declare any
+     */
+    public Map<String, Set<String>> getTableDependencies() {
+        return tableDependencies;
+    }
+
+    /**
+     * Compiles the binders that copy a row of the source table into the insert statement of the target table. The source
+     * column at position n of {@link TableColumnTypeSelect#getSelectStmt()} is matched by name with its position within
+     * {@link TableColumnTypeSelect#getInsertStmt()} of the target table, both positions are resolved here
+     *
+     * @param sourceTable                    The source table
+     * @param targetTable                    The target table
+     * @param fromPostgresLargeObjectColumns Columns (lower case) that hold a PostgreSQL large object oid in the source table, may be null
+     * @param toPostgresLargeObjectColumns   Columns (lower case) that receive a PostgreSQL large object oid in the target table, may be null
+     * @param postgresSource                 true if the source database is of type PostgreSQL
+     * @return One binder per target column, in the order of the target insert statement
+     */
+    public ColumnBinder[] compileColumnBinders(TableColumnTypeSelect sourceTable, TableColumnTypeSelect targetTable, Set<String> fromPostgresLargeObjectColumns, Set<String> toPostgresLargeObjectColumns, boolean postgresSource) {
+        Map<String, ColumnType> sourceColumns = new HashMap<>();
+        for (ColumnType ct : sourceTable.getColumnTypes()) {
+            sourceColumns.put(TransferPlan.normalize(ct.getColumnName()), ct);
+        }
+        List<ColumnBinder> binders = new ArrayList<>();
+        for (ColumnType targetColumn : targetTable.getColumnTypes()) {
+            ColumnType sourceColumn = sourceColumns.get(TransferPlan.normalize(targetColumn.getColumnName()));
+            if (sourceColumn == null) {
+                LOGGER.warning(String.format("Table: %s, column %s does not exist in the source table and will be set to null", targetTable.getTableName(), targetColumn.getColumnName()));
+                binders.add(ColumnBinders.forMissingSource(targetColumn.getIndex()));
+                continue;
+            }
+            ColumnKind kind = ColumnKind.of(sourceColumn.getColumnType());
+            String columnName = TransferPlan.normalize(sourceColumn.getColumnName());
+            if (kind == ColumnKind.TEXT && fromPostgresLargeObjectColumns != null && fromPostgresLargeObjectColumns.contains(columnName)) {
+                binders.add(ColumnBinders.forTextFromLargeObject(sourceColumn.getIndex(), targetColumn.getIndex()));
+            } else if (kind == ColumnKind.TEXT && !postgresSource && toPostgresLargeObjectColumns != null && toPostgresLargeObjectColumns.contains(columnName)) {
+                binders.add(ColumnBinders.forTextToLargeObject(sourceColumn.getIndex(), targetColumn.getIndex()));
+            } else if (kind == ColumnKind.TEXT) {
+                binders.add(ColumnBinders.forText(sourceColumn.getIndex(), targetColumn.getIndex(), postgresSource));
+            } else {
+                binders.add(ColumnBinders.forKind(kind, sourceColumn.getIndex(), targetColumn.getIndex()));
+            }
+        }
+        return binders.toArray(new ColumnBinder[0]);
+    }
+
     /**
      * Some Liquibase changelof master files may use properties to translate data types to database specific ones. This method helps in processing those
      *
@@ -224,6 +288,7 @@ public class LiquibaseChangelogProcessor {
                                     tableIndexes.put(tableName, tableIndex);
                                     tableIndex++;
                                     Map<String, TableColumnTypeSelect> response = processCreateTable(element);
+                                    processInlineForeignKeys(tableName, element);
                                     dbmsList.get(sourceDbms).computeIfAbsent(tableName, k -> new ArrayList<>());
                                     dbmsList.get(sourceDbms).get(tableName).add(response.get(sourceDbms));
                                     dbmsList.get(targetDbms).computeIfAbsent(tableName, k -> new ArrayList<>());
@@ -255,14 +320,41 @@ public class LiquibaseChangelogProcessor {
                                 } else if ("addColumn".equalsIgnoreCase(element.getTagName())) {
                                     String tableName = element.getAttribute("tableName");
                                     Map<String, TableColumnTypeSelect> response = processCreateTable(element);
+                                    processInlineForeignKeys(tableName, element);
                                     dbmsList.get(sourceDbms).computeIfAbsent(tableName, k -> new ArrayList<>());
                                     for (TableColumnTypeSelect next : dbmsList.get(sourceDbms).get(tableName)) {
                                         next.addColumnType(response.get(sourceDbms).getColumnTypes());
+                                        next.addPrimaryKeyColumns(response.get(sourceDbms).getPrimaryKeyColumns());
                                     }
                                     dbmsList.get(targetDbms).computeIfAbsent(tableName, k -> new ArrayList<>());
                                     for (TableColumnTypeSelect next : dbmsList.get(targetDbms).get(tableName)) {
                                         next.addColumnType(response.get(targetDbms).getColumnTypes());
+                                        next.addPrimaryKeyColumns(response.get(targetDbms).getPrimaryKeyColumns());
+                                    }
+                                } else if ("addPrimaryKey".equalsIgnoreCase(element.getTagName())) {
+                                    String tableName = element.getAttribute("tableName");
+                                    List<String> primaryKeyColumns = new ArrayList<>();
+                                    for (String columnName : element.getAttribute("columnNames").split(",")) {
+                                        primaryKeyColumns.add(columnName.trim());
+                                    }
+                                    for (TableColumnTypeSelect tcts : dbmsList.get(sourceDbms).get(tableName)) {
+                                        tcts.setPrimaryKeyColumns(new ArrayList<>(primaryKeyColumns));
+                                    }
+                                    for (TableColumnTypeSelect tcts : dbmsList.get(targetDbms).get(tableName)) {
+                                        tcts.setPrimaryKeyColumns(new ArrayList<>(primaryKeyColumns));
                                     }
+                                } else if ("dropPrimaryKey".equalsIgnoreCase(element.getTagName())) {
+                                    String tableName = element.getAttribute("tableName");
+                                    for (TableColumnTypeSelect tcts : dbmsList.get(sourceDbms).get(tableName)) {
+                                        tcts.setPrimaryKeyColumns(new ArrayList<>());
+                                    }
+                                    for (TableColumnTypeSelect tcts : dbmsList.get(targetDbms).get(tableName)) {
+                                        tcts.setPrimaryKeyColumns(new ArrayList<>());
+                                    }
+                                } else if ("addForeignKeyConstraint".equalsIgnoreCase(element.getTagName())) {
+                                    addForeignKey(element.getAttribute("constraintName"), element.getAttribute("baseTableName"), element.getAttribute("referencedTableName"));
+                                } else if ("dropForeignKeyConstraint".equalsIgnoreCase(element.getTagName())) {
+                                    foreignKeys.remove(TransferPlan.normalize(element.getAttribute("constraintName")));
                                 } else {
                                     unhandled.add(element.getTagName());
                                 }
@@ -291,6 +383,13 @@ public class LiquibaseChangelogProcessor {
                     }
                     sb.append(" FROM ").append(tableName).append(";");
                     tableList.setSelectStmt(sb.toString());
+                    // tables with a single, integer based primary key can be read in chunks of key ranges
+                    String primaryKey = getChunkableKey(tableList);
+                    if (primaryKey != null) {
+                        String columns = sb.substring("SELECT ".length(), sb.indexOf(" FROM "));
+                        tableList.setKeyBoundsStmt(String.format("SELECT MIN(%s),MAX(%s) FROM %s", primaryKey, primaryKey, tableName));
+                        tableList.setChunkSelectStmt(String.format("SELECT %s FROM %s WHERE %s >= ? AND %s < ? ORDER BY %s", columns, tableName, primaryKey, primaryKey, primaryKey));
+                    }
                 }
             }
         }
@@ -302,7 +401,7 @@ public class LiquibaseChangelogProcessor {
                 }
             }
         }
-        // create insert statement for each table as preparedStatement
+        // create insert statement for each table as preparedStatement, multi row variants are sized by the parameter limit
         for (String dbms : dbmsList.keySet()) {
             for (String tableName : dbmsList.get(dbms).keySet()) {
                 for (TableColumnTypeSelect tableList : dbmsList.get(dbms).get(tableName)) {
@@ -326,11 +425,130 @@ public class LiquibaseChangelogProcessor {
                     }
                     sb.append(")");
                     tableList.setInsertStmt(sb.toString());
+                    setConflictStmts(Dialect.of(dbms), tableName, tableList, sb.toString());
+                    tableList.setMaxRowsPerInsert(Math.max(1, Dialect.of(dbms).getMaxBindParameters() / Math.max(1, columnCount)));
                 }
             }
         }
     }
 
+    /**
+     * Creates the insert statements that skip or update rows whose key exists already, see
+     * {@link TableColumnTypeSelect#getInsertIgnoreStmt()} and {@link TableColumnTypeSelect#getUpsertStmt()}. PostgreSQL
+     * uses ON CONFLICT, MySQL/MariaDB ON DUPLICATE KEY UPDATE, H2 MERGE. MySQL/MariaDB skip a duplicate by assigning the key
+     * to itself, INSERT IGNORE would turn all errors into warnings and insert altered rows. Statements that need the
+     * primary key are only created if the changelog declares it
+     */
+    private void setConflictStmts(Dialect dialect, String tableName, TableColumnTypeSelect table, String insertStmt) {
+        List<String> primaryKey = table.getPrimaryKeyColumns();
+        List<String> columns = new ArrayList<>();
+        List<String> others = new ArrayList<>();
+        for (ColumnType ct : table.getColumnTypes()) {
+            columns.add(ct.getColumnName());
+            if (primaryKey.stream().noneMatch(ct.getColumnName()::equalsIgnoreCase)) {
+                others.add(ct.getColumnName());
+            }
+        }
+        String keyList = String.join(",", primaryKey);
+        String insertIgnore = null;
+        String upsert = null;
+        switch (dialect) {
+            case POSTGRESQL:
+                insertIgnore = insertStmt + " ON CONFLICT DO NOTHING";
+                if (!primaryKey.isEmpty()) {
+                    upsert = others.isEmpty() ? String.format("%s ON CONFLICT (%s) DO NOTHING", insertStmt, keyList)
+                            : String.format("%s ON CONFLICT (%s) DO UPDATE SET %s", insertStmt, keyList, assignments(others, "%s=EXCLUDED.%s"));
+                }
+                break;
+            case MYSQL:
+                if (!primaryKey.isEmpty()) {
+                    insertIgnore = String.format("%s ON DUPLICATE KEY UPDATE %s=%s", insertStmt, primaryKey.get(0), primaryKey.get(0));
+                }
+                upsert = String.format("%s ON DUPLICATE KEY UPDATE %s", insertStmt, assignments(others.isEmpty() ? columns : others, "%s=VALUES(%s)"));
+                break;
+            case H2:
+                if (!primaryKey.isEmpty()) {
+                    String values = insertStmt.substring(insertStmt.indexOf(" VALUES ("));
+                    StringBuilder on = new StringBuilder();
+                    for (String key : primaryKey) {
+                        on.append(on.length() == 0 ? "" : " AND ").append(String.format("t.%s=s.%s", key, key));
+                    }
+                    // the columns of the derived table get no type of their own, large values have to be cast to keep them intact
+                    StringBuilder typed = new StringBuilder();
+                    for (ColumnType ct : table.getColumnTypes()) {
+                        String type = ct.getColumnType() == null ? "" : ct.getColumnType().toLowerCase(Locale.ROOT);
+                        String parameter = "?";
+                        if (others.contains(ct.getColumnName()) && ColumnKind.of(type) == ColumnKind.BINARY) {
+                            parameter = "CAST(? AS BLOB)";
+                        } else if (others.contains(ct.getColumnName()) && (type.startsWith("clob") || type.startsWith("text"))) {
+                            parameter = "CAST(? AS CLOB)";
+                        }
+                        typed.append(typed.length() == 0 ? "" : ",").append(parameter);
+                    }
+                    insertIgnore = String.format("MERGE INTO %s t USING (VALUES (%s)) s(%s) ON %s WHEN NOT MATCHED THEN INSERT (%s) VALUES (s.%s)",
+                            tableName, typed, String.join(",", columns), on, String.join(",", columns), String.join(",s.", columns));
+                    upsert = String.format("MERGE INTO %s(%s) KEY(%s)%s", tableName, String.join(",", columns), keyList, values);
+                }
+                break;
+            default:
+                break;
+        }
+        table.setInsertIgnoreStmt(insertIgnore);
+        table.setUpsertStmt(upsert);
+    }
+
+    private static String assignments(List<String> columns, String format) {
+        StringBuilder sb = new StringBuilder();
+        for (String column : columns) {
+            sb.append(sb.length() == 0 ? "" : ",").append(String.format(format, column, column));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Finds foreign keys that are declared within the columns of createTable or addColumn, i.e.:
+     * &lt;constraints foreignKeyName="fk_name" references="other_table(id)"/&gt;
+     */
+    private void processInlineForeignKeys(String tableName, Element element) {
+        NodeList constraints = element.getElementsByTagName("constraints");
+        for (int i = 0; i < constraints.getLength(); i++) {
+            Element constraint = (Element) constraints.item(i);
+            String referencedTable = constraint.getAttribute("referencedTableName");
+            String references = constraint.getAttribute("references");
+            if (referencedTable.isEmpty() && !references.isEmpty()) {
+                referencedTable = references.contains("(") ? references.substring(0, references.indexOf('(')) : references;
+            }
+            if (!referencedTable.isEmpty()) {
+                addForeignKey(constraint.getAttribute("foreignKeyName"), tableName, referencedTable);
+            }
+        }
+    }
+
+    private void addForeignKey(String constraintName, String baseTable, String referencedTable) {
+        // the schema is not part of the table names managed by this tool
+        String referenced = referencedTable.trim();
+        referenced = referenced.substring(referenced.lastIndexOf('.') + 1);
+        String key = constraintName.isEmpty() ? String.format("%s->%s", baseTable, referenced) : constraintName;
+        foreignKeys.put(TransferPlan.normalize(key), new String[]{baseTable, referenced});
+    }
+
+    /**
+     * @return The primary key column if the table has a single primary key column of an integer type, otherwise null
+     */
+    private String getChunkableKey(TableColumnTypeSelect table) {
+        if (table.getPrimaryKeyColumns().size() != 1) {
+            return null;
+        }
+        String primaryKey = table.getPrimaryKeyColumns().get(0);
+        for (ColumnType ct : table.getColumnTypes()) {
+            if (ct.getColumnName().equalsIgnoreCase(primaryKey)) {
+                ColumnKind kind = ColumnKind.of(ct.getColumnType());
+                return kind == ColumnKind.INT || kind == ColumnKind.BIGINT || kind == ColumnKind.TINYINT ? ct.getColumnName() : null;
+            }
+        }
+        return null;
+    }
+
     private Map<String, TableColumnTypeSelect> processCreateTable(Element createTableElement) {
 
         Map<String, TableColumnTypeSelect> result = new HashMap<>();
@@ -350,6 +568,11 @@ public class LiquibaseChangelogProcessor {
                 Element elementColumn = (Element) nodeColumn;
                 sourceTable.addColumnType(new ColumnType(elementColumn.getAttribute("name"), getDbDataType(sourceDbms, elementColumn.getAttribute("type"))));
                 targetTable.addColumnType(new ColumnType(elementColumn.getAttribute("name"), getDbDataType(targetDbms, elementColumn.getAttribute("type"))));
+                NodeList constraints = elementColumn.getElementsByTagName("constraints");
+                if (constraints.getLength() > 0 && "true".equalsIgnoreCase(((Element) constraints.item(0)).getAttribute("primaryKey"))) {
+                    sourceTable.addPrimaryKeyColumns(Collections.singletonList(elementColumn.getAttribute("name")));
+                    targetTable.addPrimaryKeyColumns(Collections.singletonList(elementColumn.getAttribute("name")));
+                }
             }
         }
         result.put(sourceDbms, sourceTable);
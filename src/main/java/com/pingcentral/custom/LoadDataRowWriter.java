@@ -0,0 +1,231 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Writes rows into a MySQL/MariaDB target with LOAD DATA LOCAL INFILE, one statement per batch. The rows are encoded in
+ * memory and handed to the driver as the content of the local file, nothing is written to disk. Binary columns are sent
+ * as hex and decoded by the server. With {@link Config#DUPLICATE_HANDLING_IGNORE} rows whose key exists are skipped (LOAD
+ * DATA ... IGNORE). The server handles LOAD DATA LOCAL as if IGNORE was given in any case, duplicates and conversion
+ * errors only raise warnings. A batch with warnings, or without IGNORE fewer loaded rows than sent, is therefore rejected
+ * like a failed insert. If the server does not allow local files the rows are inserted instead
+ */
+final class LoadDataRowWriter implements RowWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(LoadDataRowWriter.class.getName());
+
+    /**
+     * ER_NOT_ALLOWED_COMMAND, ER_CLIENT_LOCAL_FILES_DISABLED, ER_LOAD_INFILE_CAPABILITY_DISABLED
+     */
+    private static final int[] LOCAL_INFILE_DISABLED = {1148, 3948, 3950};
+
+    private static final int ER_DUP_ENTRY = 1062;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final TransferPlan.TablePair tablePair;
+    private final TableColumnTypeSelect targetTable;
+    private final ColumnBinder[] binders;
+    private final Connection targetConnection;
+    private final Statement loadStmt;
+    private final String loadSql;
+    private final String duplicateHandling;
+    private final boolean ignoreDuplicates;
+    private final StringBuilder buffer;
+    private RowWriter fallback;
+    private int skippedRows;
+
+    private LoadDataRowWriter(TransferPlan.TablePair tablePair, Connection targetConnection, String duplicateHandling) throws SQLException {
+        this.tablePair = tablePair;
+        this.duplicateHandling = duplicateHandling;
+        this.ignoreDuplicates = Config.DUPLICATE_HANDLING_IGNORE.equals(duplicateHandling);
+        this.targetTable = tablePair.getTargetTable();
+        this.binders = tablePair.getBinders();
+        this.targetConnection = targetConnection;
+        this.loadStmt = targetConnection.createStatement();
+        this.loadSql = loadStatement(tablePair, ignoreDuplicates);
+        this.buffer = new StringBuilder();
+    }
+
+    /**
+     * @return A writer using LOAD DATA or, if the server has local files disabled, an {@link InsertRowWriter}
+     */
+    static RowWriter create(TransferPlan.TablePair tablePair, Connection targetConnection, String duplicateHandling) throws SQLException {
+        try (Statement stmt = targetConnection.createStatement(); ResultSet rs = stmt.executeQuery("SHOW VARIABLES LIKE 'local_infile'")) {
+            if (rs.next() && !"ON".equalsIgnoreCase(rs.getString(2)) && !"1".equals(rs.getString(2))) {
+                LOGGER.warning(String.format("Table: %s, the target does not allow LOAD DATA LOCAL INFILE (local_infile=%s), rows are inserted instead", tablePair.getTargetTable().getTableName(), rs.getString(2)));
+                return new InsertRowWriter(tablePair, targetConnection, duplicateHandling);
+            }
+        }
+        return new LoadDataRowWriter(tablePair, targetConnection, duplicateHandling);
+    }
+
+    @Override
+    public int write(RowBatch batch) throws SQLException {
+        if (fallback != null) {
+            return fallback.write(batch);
+        }
+        skippedRows = 0;
+        buffer.setLength(0);
+        int rows = 0;
+        for (int r = 0; r < batch.size(); r++) {
+            int rowStart = buffer.length();
+            try {
+                for (int i = 0; i < binders.length; i++) {
+                    if (i > 0) {
+                        buffer.append('\t');
+                    }
+                    appendValue(buffer, SpooledLob.inline(binders[i].convert(targetConnection, batch.get(r, i))));
+                }
+                buffer.append('\n');
+                rows++;
+            } catch (Exception e) {
+                LOGGER.warning(String.format("Table: %s, row skipped, error: %s", targetTable.getTableName(), e.getMessage()));
+                buffer.setLength(rowStart);
+            }
+        }
+        if (rows > 0) {
+            try {
+                loadStmt.unwrap(org.mariadb.jdbc.Statement.class).setLocalInfileInputStream(new ByteArrayInputStream(buffer.toString().getBytes(StandardCharsets.UTF_8)));
+                loadStmt.execute(loadSql);
+                int loaded = loadStmt.getUpdateCount();
+                String warnings = warnings();
+                if (warnings != null || (!ignoreDuplicates && loaded != rows)) {
+                    throw new SQLException(String.format("LOAD DATA loaded %d of %d rows%s", loaded, rows, warnings == null ? "" : ", warnings: " + warnings));
+                }
+                if (ignoreDuplicates) {
+                    skippedRows = loaded < 0 ? 0 : Math.max(0, rows - loaded);
+                    rows -= skippedRows;
+                }
+            } catch (SQLException e) {
+                if (isLocalInfileDisabled(e)) {
+                    LOGGER.warning(String.format("Table: %s, LOAD DATA LOCAL INFILE was rejected, rows are inserted instead. Error: %s", targetTable.getTableName(), e.getMessage()));
+                    fallback = new InsertRowWriter(tablePair, targetConnection, duplicateHandling);
+                    return fallback.write(batch);
+                }
+                throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), new int[0], e);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public int getSkippedRows() {
+        return fallback != null ? fallback.getSkippedRows() : skippedRows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            loadStmt.close();
+        } finally {
+            if (fallback != null) {
+                fallback.close();
+            }
+        }
+    }
+
+    /**
+     * @return The warnings of the last statement, null if it raised none. Duplicate keys are left out with
+     * {@link Config#DUPLICATE_HANDLING_IGNORE}
+     */
+    private String warnings() throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        try (Statement stmt = targetConnection.createStatement(); ResultSet rs = stmt.executeQuery("SHOW WARNINGS")) {
+            while (rs.next()) {
+                if (!(ignoreDuplicates && rs.getInt("Code") == ER_DUP_ENTRY)) {
+                    sb.append(sb.length() == 0 ? "" : "; ").append(rs.getString("Message"));
+                }
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * Columns with binary values are loaded into a variable and decoded with UNHEX
+     */
+    private static String loadStatement(TransferPlan.TablePair tablePair, boolean ignoreDuplicates) {
+        List<ColumnType> columns = tablePair.getTargetTable().getColumnTypes();
+        StringBuilder columnList = new StringBuilder();
+        StringBuilder setList = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            String columnName = columns.get(i).getColumnName();
+            if (i > 0) {
+                columnList.append(',');
+            }
+            if (tablePair.getValueKind(i) == ColumnKind.BINARY) {
+                columnList.append("@c").append(i);
+                setList.append(setList.length() == 0 ? " SET " : ",").append(String.format("%s=UNHEX(@c%d)", columnName, i));
+            } else {
+                columnList.append(columnName);
+            }
+        }
+        return String.format("LOAD DATA LOCAL INFILE 'rows' %sINTO TABLE %s CHARACTER SET utf8mb4 FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (%s)%s",
+                ignoreDuplicates ? "IGNORE " : "", tablePair.getTargetTable().getTableName(), columnList, setList);
+    }
+
+    private static boolean isLocalInfileDisabled(SQLException e) {
+        for (int errorCode : LOCAL_INFILE_DISABLED) {
+            if (e.getErrorCode() == errorCode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends a value in the default format of LOAD DATA: NULL is \N, backslash, tab, newline, carriage return and the NUL
+     * character are escaped, booleans are 1 and 0 and binary values are hex encoded
+     */
+    static void appendValue(StringBuilder buffer, Object value) {
+        if (value == null) {
+            buffer.append("\\N");
+        } else if (value instanceof Boolean) {
+            buffer.append((Boolean) value ? '1' : '0');
+        } else if (value instanceof BigDecimal) {
+            buffer.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof byte[]) {
+            for (byte b : (byte[]) value) {
+                buffer.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+            }
+        } else {
+            String text = value.toString();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '\\':
+                        buffer.append("\\\\");
+                        break;
+                    case '\t':
+                        buffer.append("\\t");
+                        break;
+                    case '\n':
+                        buffer.append("\\n");
+                        break;
+                    case '\r':
+                        buffer.append("\\r");
+                        break;
+                    case '\0':
+                        buffer.append("\\0");
+                        break;
+                    default:
+                        buffer.append(c);
+                }
+            }
+        }
+    }
+}
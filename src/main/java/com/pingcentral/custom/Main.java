@@ -15,6 +15,8 @@ public class Main {
     private static final String validateTarget = "validate-target";
     private static final String changelogToJson = "changelog-to-json";
     private static final String transferData = "transfer-data";
+    private static final String resumeTransfer = "resume-transfer";
+    private static final String syncData = "sync-data";
 
     public static void main(String[] args) {
         if (args.length != 2) {
@@ -70,15 +72,44 @@ public class Main {
                     // read the changelog-master file and produce a list of all liquibase config files
                     // process the Liquibase config files
                     dm.processLiquibaseFiles();
-                    // initialize the database connections
+                    // optionally capture the changes applied to the source while the data is copied
+                    dm.startChangeCapture();
+                    try {
+                        // initialize the database connections
+                        dm.initDb(true, true);
+                        // optionally delete all data from the target database
+                        dm.deleteDataFromTargetDbms();
+                        // copy all data to the target database
+                        dm.transferFromDbToDb();
+                        // replay the captured changes until the target caught up
+                        dm.replayChanges();
+                        // optionally compare target and source database
+                        dm.compareFromDbToDb();
+                        // close the database connections
+                        dm.closeDb(true, true);
+                    } finally {
+                        // remove the triggers of the change capture
+                        dm.stopChangeCapture();
+                    }
+                    break;
+                }
+                case resumeTransfer: {
+                    DatabaseManager dm = new DatabaseManager(configFileLocation);
+                    dm.processLiquibaseFiles();
+                    dm.initDb(true, true);
+                    // the target data is kept, tables continue where the interrupted transfer stopped
+                    dm.transferFromDbToDb(true);
+                    dm.compareFromDbToDb();
+                    dm.closeDb(true, true);
+                    break;
+                }
+                case syncData: {
+                    DatabaseManager dm = new DatabaseManager(configFileLocation);
+                    dm.processLiquibaseFiles();
                     dm.initDb(true, true);
-                    // optionally delete all data from the target database
-                    dm.deleteDataFromTargetDbms();
-                    // copy all data to the target database
-                    dm.transferFromDbToDb();
-                    // optionally compare target and source database
+                    // the target data is kept, rows that changed since the previous sync are inserted or updated
+                    dm.syncFromDbToDb();
                     dm.compareFromDbToDb();
-                    // close the database connections
                     dm.closeDb(true, true);
                     break;
                 }
@@ -102,6 +133,8 @@ public class Main {
         sb.append("validate-source: test the connection to the source database\n\t");
         sb.append("validate-target: test the connection to the target database\n\t");
         sb.append("transfer-data: transfer data from the source to the target database\n\t");
+        sb.append("resume-transfer: continue an interrupted transfer-data, see checkpoint_file\n\t");
+        sb.append("sync-data: copy the rows that changed since the previous sync, see watermarks\n\t");
         sb.append("changelog-to-json: processes the liquibase changelog files into a json file (changelog-{timestamp}.json)\n");
         sb.append("Find more info in the README file\n");
         return sb.toString();
@@ -0,0 +1,77 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the row data that all table transfers hold in memory at the same time, see {@link Config#getMemoryBudget()}.
+ * A reader reserves the estimated size of a batch before it hands it to the writer, see {@link RowBatch#getMemoryBytes()},
+ * and waits while the budget is used up. The writer releases it once the batch was written. A batch is always admitted
+ * if nothing else is reserved, so that a batch larger than the budget cannot block a transfer forever.
+ * <p>
+ * Values larger than {@link Config#getSpillThreshold()} do not count, they are spilled to temporary files while they
+ * wait, see {@link SpooledLob}. All workers share one instance
+ */
+final class MemoryGovernor {
+
+    private final long budget;
+    private final long spilledValuesBefore;
+    private final long spilledBytesBefore;
+    private long reserved;
+    private long peak;
+    private long blockedNanos;
+
+    /**
+     * @param budget The maximum number of bytes, 0 for no limit
+     */
+    MemoryGovernor(long budget) {
+        this.budget = budget;
+        this.spilledValuesBefore = SpooledLob.getSpilledValues();
+        this.spilledBytesBefore = SpooledLob.getSpilledBytes();
+    }
+
+    /**
+     * @param bytes   The estimated size of the batch
+     * @param timeout The maximum time to wait in milliseconds
+     * @return true if the bytes were reserved, false if the budget was still used up after the timeout
+     */
+    synchronized boolean reserve(long bytes, long timeout) throws InterruptedException {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(timeout);
+        try {
+            while (budget > 0 && reserved > 0 && reserved + bytes > budget) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            reserved += bytes;
+            peak = Math.max(peak, reserved);
+            return true;
+        } finally {
+            blockedNanos += System.nanoTime() - started;
+        }
+    }
+
+    synchronized void release(long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    synchronized long getPeakBytes() {
+        return peak;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("peak row data in memory: %.1f MiB%s, readers waited for memory: %d ms, values spilled to temporary files: %d (%.1f MiB)",
+                mebibytes(peak), budget > 0 ? String.format(" of %.1f MiB", mebibytes(budget)) : "", TimeUnit.NANOSECONDS.toMillis(blockedNanos),
+                SpooledLob.getSpilledValues() - spilledValuesBefore, mebibytes(SpooledLob.getSpilledBytes() - spilledBytesBefore));
+    }
+
+    private static double mebibytes(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+}
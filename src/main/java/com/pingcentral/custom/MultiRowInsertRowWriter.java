@@ -0,0 +1,164 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.Dialect;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Writes rows with insert statements that hold many rows each, see {@link TableColumnTypeSelect#getMultiRowStmt(String, int)}.
+ * Rows are grouped into statements of a fixed size, the remainder of a batch uses a shorter tail statement. For MySQL/MariaDB
+ * a statement is also cut short before its estimated size exceeds max_allowed_packet
+ */
+final class MultiRowInsertRowWriter implements RowWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(MultiRowInsertRowWriter.class.getName());
+
+    private final TableColumnTypeSelect targetTable;
+    private final ColumnBinder[] binders;
+    private final Connection targetConnection;
+    private final String insertStmt;
+    private final boolean ignoreDuplicates;
+    private final int rowsPerStatement;
+    private final long maxStatementBytes;
+    private final int[] pending;
+    private int pendingRows;
+    private RowBatch batch;
+    private PreparedStatement fullStmt;
+    private PreparedStatement tailStmt;
+    private int tailRows;
+    private int skippedRows;
+
+    /**
+     * @param batchSize         The number of rows per batch, no statement holds more rows
+     * @param duplicateHandling The configured {@link Config#getDuplicateHandling()}
+     */
+    MultiRowInsertRowWriter(TransferPlan.TablePair tablePair, Connection targetConnection, ConfigDatabase targetDatabase, int batchSize, String duplicateHandling) throws SQLException {
+        this.targetTable = tablePair.getTargetTable();
+        this.binders = tablePair.getBinders();
+        this.targetConnection = targetConnection;
+        this.insertStmt = RowWriter.insertStmt(targetTable, duplicateHandling);
+        this.ignoreDuplicates = Config.DUPLICATE_HANDLING_IGNORE.equals(duplicateHandling);
+        int maxRows = targetTable.getMaxRowsPerInsert();
+        if (maxRows < 1) {
+            // tables from an older changelog json file
+            maxRows = Math.max(1, targetDatabase.getDialect().getMaxBindParameters() / Math.max(1, binders.length));
+        }
+        this.rowsPerStatement = Math.min(maxRows, batchSize);
+        this.maxStatementBytes = targetDatabase.getDialect() == Dialect.MYSQL ? JdbcHelper.maxAllowedPacket(targetConnection) * 9 / 10 : Long.MAX_VALUE;
+        this.pending = new int[rowsPerStatement];
+    }
+
+    @Override
+    public int write(RowBatch batch) throws SQLException {
+        skippedRows = 0;
+        this.batch = batch;
+        int rows = 0;
+        long bytes = 0;
+        for (int r = 0; r < batch.size(); r++) {
+            long rowBytes = batch.estimateBytes(r);
+            if (pendingRows > 0 && bytes + rowBytes > maxStatementBytes) {
+                rows += flush();
+                bytes = 0;
+            }
+            pending[pendingRows++] = r;
+            bytes += rowBytes;
+            if (pendingRows == rowsPerStatement) {
+                rows += flush();
+                bytes = 0;
+            }
+        }
+        return rows + flush();
+    }
+
+    @Override
+    public int getSkippedRows() {
+        return skippedRows;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (fullStmt != null) {
+                fullStmt.close();
+            }
+        } finally {
+            if (tailStmt != null) {
+                tailStmt.close();
+            }
+        }
+    }
+
+    /**
+     * Inserts the pending rows with one statement. Rows that cannot be bound are skipped and the others bound again
+     *
+     * @return The number of rows inserted, with {@link Config#DUPLICATE_HANDLING_IGNORE} without the skipped ones
+     */
+    private int flush() throws SQLException {
+        try {
+            while (pendingRows > 0) {
+                PreparedStatement stmt = statementFor(pendingRows);
+                int failed = bind(stmt);
+                if (failed < 0) {
+                    int inserted;
+                    try {
+                        inserted = stmt.executeUpdate();
+                    } catch (SQLException e) {
+                        throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), new int[0], e);
+                    }
+                    if (ignoreDuplicates) {
+                        skippedRows += Math.max(0, pendingRows - inserted);
+                        return Math.min(inserted, pendingRows);
+                    }
+                    return pendingRows;
+                }
+                pendingRows--;
+                System.arraycopy(pending, failed + 1, pending, failed, pendingRows - failed);
+                stmt.clearParameters();
+            }
+            return 0;
+        } finally {
+            pendingRows = 0;
+        }
+    }
+
+    /**
+     * @return The index of the first row that could not be bound, -1 if all rows were bound
+     */
+    private int bind(PreparedStatement stmt) throws SQLException {
+        for (int r = 0; r < pendingRows; r++) {
+            try {
+                for (int i = 0; i < binders.length; i++) {
+                    binders[i].bind(stmt, r * binders.length, batch, pending[r], i);
+                }
+            } catch (Exception e) {
+                LOGGER.warning(String.format("Table: %s, row skipped, error: %s", targetTable.getTableName(), e.getMessage()));
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    private PreparedStatement statementFor(int rows) throws SQLException {
+        if (rows == rowsPerStatement) {
+            if (fullStmt == null) {
+                fullStmt = targetConnection.prepareStatement(targetTable.getMultiRowStmt(insertStmt, rows));
+            }
+            return fullStmt;
+        }
+        if (tailStmt == null || tailRows != rows) {
+            if (tailStmt != null) {
+                tailStmt.close();
+            }
+            tailStmt = targetConnection.prepareStatement(targetTable.getMultiRowStmt(insertStmt, rows));
+            tailRows = rows;
+        }
+        return tailStmt;
+    }
+}
@@ -0,0 +1,81 @@
+package com.pingcentral.custom;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The value of a column that one of the {@link LargeObjectWorkers} is still loading or converting. The writer waits for
+ * it when the row is bound, see {@link ColumnBinder#convert}
+ */
+final class PendingValue implements AutoCloseable {
+
+    private final CompletableFuture<Object> future;
+    private final boolean converted;
+
+    /**
+     * @param converted true if the result is the value stored in the target column, false if it still has to be converted
+     */
+    PendingValue(boolean converted) {
+        this.future = new CompletableFuture<>();
+        this.converted = converted;
+    }
+
+    boolean isConverted() {
+        return converted;
+    }
+
+    /**
+     * Called by the worker. A result that is not needed anymore because the row was dropped is closed
+     */
+    void complete(Object result) {
+        if (!future.complete(result)) {
+            SpooledLob.closeAll(new Object[]{result});
+        }
+    }
+
+    void fail(Throwable error) {
+        future.completeExceptionally(error);
+    }
+
+    /**
+     * @return The result, waits until the worker is done
+     * @throws SQLException If the worker failed with a {@link SQLException} or the thread was interrupted
+     * @throws IOException  If the worker failed otherwise
+     */
+    Object get() throws SQLException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a large object");
+        } catch (CancellationException e) {
+            throw new IOException("The large object was cancelled", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Closes the result once the row was written, or drops it if the worker is not done yet
+     */
+    @Override
+    public void close() {
+        if (!future.cancel(false) && !future.isCompletedExceptionally()) {
+            SpooledLob.closeAll(new Object[]{future.join()});
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<large object>";
+    }
+}
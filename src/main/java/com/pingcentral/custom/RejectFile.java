@@ -0,0 +1,97 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Collects the rows the target rejected. Each row is appended to the configured file as one line of tab separated values:
+ * table, key and error. Without a file the rows are logged instead. The key lists the primary key columns with their
+ * values, or all columns if the primary key is unknown. All workers share one instance
+ */
+final class RejectFile implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(RejectFile.class.getName());
+
+    private final String path;
+    private final BufferedWriter writer;
+    private final AtomicLong count;
+
+    /**
+     * @param path The file the rejected rows are appended to, null to only log them
+     */
+    RejectFile(String path) throws IOException {
+        this.path = path;
+        this.writer = path == null ? null : Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.count = new AtomicLong();
+    }
+
+    /**
+     * @param table The target table
+     * @param row   The rejected row, one value per target column
+     * @param error The reason the target gave
+     */
+    void reject(TableColumnTypeSelect table, Object[] row, String error) {
+        count.incrementAndGet();
+        String key = describeKey(table, row);
+        String reason = error == null ? "" : error.replaceAll("\\s+", " ").trim();
+        if (writer == null) {
+            LOGGER.warning(String.format("Table: %s, row rejected, key: %s, error: %s", table.getTableName(), key, reason));
+        } else {
+            synchronized (writer) {
+                try {
+                    writer.write(String.format("%s\t%s\t%s", table.getTableName(), key, reason));
+                    writer.newLine();
+                    writer.flush();
+                } catch (IOException e) {
+                    LOGGER.warning(String.format("The rejected row could not be written to %s, error: %s", path, e.getMessage()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of rows rejected so far
+     */
+    long getCount() {
+        return count.get();
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return The primary key of the row, i.e. id=5, or all values if the primary key is unknown
+     */
+    static String describeKey(TableColumnTypeSelect table, Object[] row) {
+        List<ColumnType> columns = table.getColumnTypes();
+        List<String> primaryKey = table.getPrimaryKeyColumns();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.size() && i < row.length; i++) {
+            String columnName = columns.get(i).getColumnName();
+            if (primaryKey.isEmpty() || primaryKey.stream().anyMatch(columnName::equalsIgnoreCase)) {
+                Object value = row[i];
+                sb.append(sb.length() == 0 ? "" : ",").append(columnName).append('=')
+                        .append(value instanceof byte[] ? String.format("<%d bytes>", ((byte[]) value).length) : String.valueOf(value).replaceAll("\\s+", " "));
+            }
+        }
+        return sb.toString();
+    }
+}
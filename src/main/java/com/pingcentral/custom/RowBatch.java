@@ -0,0 +1,281 @@
+package com.pingcentral.custom;
+
+import java.util.Arrays;
+
+/**
+ * A number of rows that were read from a source table and are handed to the writer of the target table. Values are
+ * stored by column: columns whose {@link ColumnBinder#isPrimitive() binder is primitive} in a long[] with a null bitmap,
+ * all others in an Object[]. Integers and booleans are therefore never boxed between reading and binding. Batches are
+ * reused for the following batches of the same table, see {@link #reset(int)}
+ */
+final class RowBatch {
+
+    /**
+     * Marks the end of a table
+     */
+    static final RowBatch END = new RowBatch(new ColumnBinder[0], 0);
+
+    /**
+     * Marks the end of a table whose rows could not be read completely
+     */
+    static final RowBatch FAILED = new RowBatch(new ColumnBinder[0], 0);
+
+    private final ColumnBinder[] binders;
+    private final long[][] longs;
+    private final long[][] nulls;
+    private final Object[][] objects;
+    private final int capacity;
+    private final int offset;
+    private final boolean slice;
+    private int limit;
+    private int size;
+    private long bytes;
+    private long memoryBytes;
+
+    /**
+     * @param binders  The binders of the target table, one per column
+     * @param capacity The maximum number of rows
+     */
+    RowBatch(ColumnBinder[] binders, int capacity) {
+        this.binders = binders;
+        this.longs = new long[binders.length][];
+        this.nulls = new long[binders.length][];
+        this.objects = new Object[binders.length][];
+        for (int c = 0; c < binders.length; c++) {
+            if (binders[c].isPrimitive()) {
+                longs[c] = new long[capacity];
+                nulls[c] = new long[(capacity + 63) >> 6];
+            } else {
+                objects[c] = new Object[capacity];
+            }
+        }
+        this.capacity = capacity;
+        this.offset = 0;
+        this.slice = false;
+        this.limit = capacity;
+    }
+
+    private RowBatch(RowBatch batch, int from, int to) {
+        this.binders = batch.binders;
+        this.longs = batch.longs;
+        this.nulls = batch.nulls;
+        this.objects = batch.objects;
+        this.capacity = to - from;
+        this.offset = batch.offset + from;
+        this.slice = true;
+        this.limit = to - from;
+        this.size = to - from;
+        for (int r = 0; r < size; r++) {
+            bytes += estimateBytes(r);
+        }
+    }
+
+    /**
+     * @return The number of rows the batch can hold
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Empties the batch so that it can be filled again. Values of the previous rows must have been released
+     *
+     * @param limit The number of rows after which the batch is full, not more than {@link #capacity()}
+     */
+    void reset(int limit) {
+        for (int c = 0; c < binders.length; c++) {
+            if (objects[c] != null) {
+                Arrays.fill(objects[c], 0, size, null);
+            } else {
+                Arrays.fill(nulls[c], 0);
+            }
+        }
+        this.limit = limit;
+        this.size = 0;
+        this.bytes = 0;
+        this.memoryBytes = 0;
+    }
+
+    /**
+     * @return The index of the row that is filled next, see {@link #addRow()}
+     */
+    int nextRow() {
+        return size;
+    }
+
+    /**
+     * Adds the row at {@link #nextRow()} once all of its values were set
+     */
+    void addRow() {
+        bytes += estimateBytes(size);
+        memoryBytes += estimateMemory(size);
+        size++;
+    }
+
+    /**
+     * Drops the values set for the row at {@link #nextRow()}, i.e. because one of them could not be read
+     */
+    void discardRow() {
+        for (int c = 0; c < binders.length; c++) {
+            if (objects[c] != null) {
+                SpooledLob.closeAll(objects[c], size, size + 1);
+                objects[c][size] = null;
+            }
+        }
+    }
+
+    void setLong(int row, int column, long value) {
+        int index = offset + row;
+        longs[column][index] = value;
+        nulls[column][index >> 6] &= ~(1L << index);
+    }
+
+    void setNull(int row, int column) {
+        int index = offset + row;
+        if (objects[column] != null) {
+            objects[column][index] = null;
+        } else {
+            nulls[column][index >> 6] |= 1L << index;
+        }
+    }
+
+    void setObject(int row, int column, Object value) {
+        objects[column][offset + row] = value;
+    }
+
+    /**
+     * Sets a value of any column, primitive columns take the value that {@link ColumnBinder#read} returns for them
+     */
+    void set(int row, int column, Object value) {
+        if (value == null) {
+            setNull(row, column);
+        } else if (objects[column] != null) {
+            setObject(row, column, value);
+        } else {
+            setLong(row, column, ColumnBinder.toLong(value));
+        }
+    }
+
+    boolean isNull(int row, int column) {
+        int index = offset + row;
+        return objects[column] != null ? objects[column][index] == null : (nulls[column][index >> 6] & (1L << index)) != 0;
+    }
+
+    long getLong(int row, int column) {
+        return longs[column][offset + row];
+    }
+
+    Object getObject(int row, int column) {
+        return objects[column][offset + row];
+    }
+
+    /**
+     * @return The value of any column, values of primitive columns are boxed
+     */
+    Object get(int row, int column) {
+        if (objects[column] != null) {
+            return getObject(row, column);
+        }
+        return isNull(row, column) ? null : binders[column].box(getLong(row, column));
+    }
+
+    /**
+     * @return The values of a row, values of primitive columns are boxed
+     */
+    Object[] getRow(int row) {
+        Object[] values = new Object[binders.length];
+        for (int c = 0; c < binders.length; c++) {
+            values[c] = get(row, c);
+        }
+        return values;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return A batch with the rows from (inclusive) to (exclusive). It shares the values with this batch
+     */
+    RowBatch slice(int from, int to) {
+        return new RowBatch(this, from, to);
+    }
+
+    boolean isFull() {
+        return size == limit;
+    }
+
+    /**
+     * Deletes the values of the rows that were spooled to files, once the batch was written
+     */
+    void release() {
+        if (slice) {
+            return;
+        }
+        for (int c = 0; c < binders.length; c++) {
+            if (objects[c] != null) {
+                SpooledLob.closeAll(objects[c], 0, size);
+            }
+        }
+    }
+
+    /**
+     * @return The estimated size of the values of all rows, see {@link #estimateBytes(int)}
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return The estimated heap the values of all rows take, see {@link MemoryGovernor}
+     */
+    long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    /**
+     * A rough upper bound of the size of a row, i.e. within the text of a statement
+     */
+    long estimateBytes(int row) {
+        long rowBytes = 0;
+        for (int c = 0; c < binders.length; c++) {
+            rowBytes += objects[c] == null ? 32 : estimateBytes(getObject(row, c));
+        }
+        return rowBytes;
+    }
+
+    /**
+     * The approximate heap a row takes, values spilled to files only count with their handle
+     */
+    private long estimateMemory(int row) {
+        long rowBytes = 0;
+        for (int c = 0; c < binders.length; c++) {
+            if (objects[c] == null) {
+                rowBytes += 8;
+                continue;
+            }
+            Object value = getObject(row, c);
+            if (value instanceof String) {
+                rowBytes += ((String) value).length() * 2L + 40;
+            } else if (value instanceof byte[]) {
+                rowBytes += ((byte[]) value).length + 16L;
+            } else if (value != null) {
+                rowBytes += 32;
+            }
+            rowBytes += 8;
+        }
+        return rowBytes;
+    }
+
+    private static long estimateBytes(Object value) {
+        if (value instanceof String) {
+            return ((String) value).length() * 3L + 3;
+        } else if (value instanceof byte[]) {
+            return ((byte[]) value).length * 2L + 3;
+        } else if (value instanceof SpooledLob) {
+            // not held in memory, but sent to the target as part of the batch
+            return ((SpooledLob) value).length() * (((SpooledLob) value).isText() ? 3L : 2L) + 3;
+        }
+        return 32;
+    }
+}
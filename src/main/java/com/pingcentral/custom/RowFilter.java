@@ -0,0 +1,23 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Limits the rows that are read from a source table, i.e. to those of an incremental sync, see {@link Watermark}, or
+ * those whose changes were captured, see {@link ChangeCapture}
+ */
+interface RowFilter {
+
+    /**
+     * @return The select statement of the table, limited to the rows of the filter
+     */
+    String getSelectStmt(TableColumnTypeSelect table);
+
+    /**
+     * Binds the parameters of {@link #getSelectStmt(TableColumnTypeSelect)}
+     */
+    void bind(PreparedStatement stmt) throws SQLException;
+}
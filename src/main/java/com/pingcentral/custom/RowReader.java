@@ -0,0 +1,38 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigDatabase;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Reads the rows of one source table, or of one range of its primary key, in the form the {@link RowWriter} expects: one
+ * value per target column as returned by {@link ColumnBinder#read}
+ */
+interface RowReader extends AutoCloseable {
+
+    /**
+     * Reads the next row into the batch, see {@link RowBatch#nextRow()}
+     *
+     * @return false if there are no more rows. Rows that cannot be read are skipped and logged
+     * @throws Exception If reading failed otherwise
+     */
+    boolean next(RowBatch batch) throws Exception;
+
+    @Override
+    void close() throws SQLException;
+
+    /**
+     * @param keyRange     The lowest (inclusive) and highest (exclusive) primary key value to read, null to read the complete table
+     * @param filter       The rows to read, i.e. those of an incremental sync. Null to read the complete table, not combined with a key range
+     * @param largeObjects The workers that read and create large objects ahead of the writer, null if not configured
+     * @return The reader that matches the configured {@link ConfigDatabase#getExtractMethod()} of the source. Tables with
+     * PostgreSQL large object columns and filtered rows are always read with JDBC
+     */
+    static RowReader create(TransferPlan.TablePair tablePair, Connection sourceConnection, ConfigDatabase sourceDatabase, long[] keyRange, RowFilter filter, LargeObjectWorkers largeObjects) throws SQLException {
+        if (ConfigDatabase.EXTRACT_METHOD_COPY.equals(sourceDatabase.getExtractMethod()) && !tablePair.hasLargeObjectColumns() && filter == null) {
+            return new CopyRowReader(tablePair, sourceConnection, keyRange);
+        }
+        return new JdbcRowReader(tablePair, sourceConnection, sourceDatabase, keyRange, filter, largeObjects);
+    }
+}
@@ -0,0 +1,75 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Writes the rows of one table into the current transaction of the target connection. Committing is left to the caller
+ */
+interface RowWriter extends AutoCloseable {
+
+    /**
+     * @param batch The rows, one value per target column as returned by {@link ColumnBinder#read}
+     * @return The number of rows that were written, rows that could not be converted are skipped and logged
+     * @throws BatchUpdateException If the target rejected the batch. The transaction has to be rolled back
+     * @throws SQLException         If writing failed otherwise
+     */
+    int write(RowBatch batch) throws SQLException;
+
+    /**
+     * @return The number of rows of the last {@link #write(RowBatch)} that the target skipped because their key exists
+     * already, see {@link Config#DUPLICATE_HANDLING_IGNORE}
+     */
+    default int getSkippedRows() {
+        return 0;
+    }
+
+    /**
+     * @return The number of rows of the last {@link #write(RowBatch)} that were either written or skipped, the target did
+     * not report which. They are neither part of the written nor of the {@link #getSkippedRows()}
+     */
+    default int getUnreportedRows() {
+        return 0;
+    }
+
+    @Override
+    void close() throws SQLException;
+
+    /**
+     * @param batchSize         The maximum number of rows per batch
+     * @param duplicateHandling The configured {@link Config#getDuplicateHandling()}
+     * @return The writer that matches the configured {@link ConfigDatabase#getLoadMethod()} of the target
+     */
+    static RowWriter create(TransferPlan.TablePair tablePair, Connection targetConnection, ConfigDatabase targetDatabase, int batchSize, String duplicateHandling) throws SQLException {
+        if (ConfigDatabase.LOAD_METHOD_COPY.equals(targetDatabase.getLoadMethod())) {
+            return new CopyRowWriter(tablePair, targetConnection);
+        }
+        if (ConfigDatabase.LOAD_METHOD_LOAD_DATA.equals(targetDatabase.getLoadMethod())) {
+            return LoadDataRowWriter.create(tablePair, targetConnection, duplicateHandling);
+        }
+        if (ConfigDatabase.LOAD_METHOD_MULTI_ROW.equals(targetDatabase.getLoadMethod())) {
+            return new MultiRowInsertRowWriter(tablePair, targetConnection, targetDatabase, batchSize, duplicateHandling);
+        }
+        return new InsertRowWriter(tablePair, targetConnection, duplicateHandling);
+    }
+
+    /**
+     * @return The insert statement of the table for the duplicate handling. The plain insert statement if the table has
+     * none, i.e. because the primary key is unknown
+     */
+    static String insertStmt(TableColumnTypeSelect targetTable, String duplicateHandling) {
+        String stmt = targetTable.getInsertStmt(duplicateHandling);
+        if (stmt == null) {
+            Logger.getLogger(RowWriter.class.getName()).warning(String.format("Table: %s, {duplicate_handling} '%s' is not possible without a primary key, rows are inserted instead",
+                    targetTable.getTableName(), duplicateHandling));
+            return targetTable.getInsertStmt();
+        }
+        return stmt;
+    }
+}
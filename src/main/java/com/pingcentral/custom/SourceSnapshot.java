@@ -0,0 +1,177 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.Dialect;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.logging.Logger;
+
+/**
+ * Hands out source connections that all read the same consistent image of the source database, even while the application
+ * keeps writing to it. Each connection stays in one read transaction until it is released:
+ * <ul>
+ *     <li>PostgreSQL: the coordinating connection exports its snapshot (pg_export_snapshot), all other connections import
+ *     it (SET TRANSACTION SNAPSHOT)</li>
+ *     <li>MySQL/MariaDB: all connections are opened upfront and start a transaction (START TRANSACTION WITH CONSISTENT SNAPSHOT)
+ *     while the coordinating connection holds a global read lock for a moment (FLUSH TABLES WITH READ LOCK)</li>
+ *     <li>Others: each connection uses a repeatable read transaction. With more than one connection they do not share a
+ *     point in time</li>
+ * </ul>
+ */
+final class SourceSnapshot implements ConnectionProvider, AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SourceSnapshot.class.getName());
+
+    private final Connection coordinator;
+    private final ConnectionProvider connections;
+    private final Dialect dialect;
+    private final Deque<Connection> opened;
+    private String snapshotId;
+
+    private SourceSnapshot(Connection coordinator, ConnectionProvider connections, Dialect dialect) {
+        this.coordinator = coordinator;
+        this.connections = connections;
+        this.dialect = dialect;
+        this.opened = new ArrayDeque<>();
+    }
+
+    /**
+     * @param database    The source database
+     * @param coordinator The connection created by {@link DatabaseManager#initDb(boolean, boolean)}. It keeps its
+     *                    transaction open until the snapshot is closed
+     * @param connections Provides the connections of the workers, they may include the coordinator
+     * @param workers     The number of connections that will be acquired
+     * @return The snapshot
+     * @throws SQLException If the snapshot could not be created
+     */
+    static SourceSnapshot open(ConfigDatabase database, Connection coordinator, ConnectionProvider connections, int workers) throws SQLException {
+        SourceSnapshot snapshot = new SourceSnapshot(coordinator, connections, database.getDialect());
+        switch (snapshot.dialect) {
+            case POSTGRESQL:
+                begin(coordinator);
+                try (Statement stmt = coordinator.createStatement(); ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()")) {
+                    rs.next();
+                    snapshot.snapshotId = rs.getString(1);
+                }
+                LOGGER.info(String.format("Source snapshot %s exported", snapshot.snapshotId));
+                break;
+            case MYSQL:
+                boolean locked = lock(coordinator);
+                try {
+                    for (int i = 0; i < workers; i++) {
+                        Connection connection = connections.acquire();
+                        if (connection != coordinator) {
+                            startConsistentSnapshot(connection);
+                        }
+                        snapshot.opened.add(connection);
+                    }
+                    startConsistentSnapshot(coordinator);
+                } finally {
+                    if (locked) {
+                        try (Statement stmt = coordinator.createStatement()) {
+                            stmt.execute("UNLOCK TABLES");
+                        }
+                    }
+                }
+                LOGGER.info(String.format("Source snapshot started on %d connections", snapshot.opened.size()));
+                break;
+            default:
+                if (workers > 1) {
+                    LOGGER.warning(String.format("A shared snapshot is not supported for %s, each worker reads its own point in time", database.getDbmsType()));
+                }
+                begin(coordinator);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public synchronized Connection acquire() throws SQLException {
+        if (dialect == Dialect.MYSQL) {
+            if (opened.isEmpty()) {
+                throw new SQLException("All connections of the source snapshot are in use");
+            }
+            return opened.poll();
+        }
+        Connection connection = connections.acquire();
+        if (connection != coordinator) {
+            begin(connection);
+            setSnapshot(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Starts the next transaction of a connection that was not acquired from the snapshot, i.e. of the large object
+     * workers, in the exported snapshot. The connection has to call it again after each commit. Does nothing if no
+     * snapshot was exported
+     *
+     * @param connection A source connection without an open transaction
+     * @throws SQLException If the snapshot could not be set
+     */
+    void join(Connection connection) throws SQLException {
+        if (snapshotId != null) {
+            begin(connection);
+            setSnapshot(connection);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) {
+        if (connection != coordinator) {
+            JdbcHelper.rollbackQuietly(connection);
+            JdbcHelper.restoreAutoCommit(connection);
+        }
+        connections.release(connection);
+    }
+
+    /**
+     * Ends the transaction of the coordinator and releases the connections that were opened upfront but never acquired
+     */
+    @Override
+    public synchronized void close() {
+        while (!opened.isEmpty()) {
+            release(opened.poll());
+        }
+        JdbcHelper.rollbackQuietly(coordinator);
+        JdbcHelper.restoreAutoCommit(coordinator);
+    }
+
+    private static void begin(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    }
+
+    private void setSnapshot(Connection connection) throws SQLException {
+        if (snapshotId != null) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(String.format("SET TRANSACTION SNAPSHOT '%s'", snapshotId));
+            }
+        }
+    }
+
+    private static void startConsistentSnapshot(Connection connection) throws SQLException {
+        begin(connection);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+        }
+    }
+
+    /**
+     * Blocks writes to the source until the transactions of all connections are started. This requires the RELOAD privilege,
+     * without it the transactions start one after another and may see different points in time
+     */
+    private static boolean lock(Connection coordinator) {
+        try (Statement stmt = coordinator.createStatement()) {
+            stmt.execute("FLUSH TABLES WITH READ LOCK");
+            return true;
+        } catch (SQLException e) {
+            LOGGER.warning(String.format("The source could not be locked while starting the snapshot, error: %s", e.getMessage()));
+            return false;
+        }
+    }
+}
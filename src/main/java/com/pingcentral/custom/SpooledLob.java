@@ -0,0 +1,350 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * A large text or binary value that was read from the source and spooled to a temporary file instead of being held in
+ * memory. Rows are handed over in batches, so the source stream cannot be passed to the target directly. Values up to
+ * {@link #setMemoryLimit(int) the limit} stay in memory as String or byte[], see {@link #readText(Reader)} and
+ * {@link #readBinary(InputStream)}. Text is stored as UTF-8.
+ * <p>
+ * The value is bound with setCharacterStream or setBinaryStream, each bind opens a new stream. {@link #close()} closes
+ * the streams and deletes the file once the batch of the row was written, see {@link RowBatch#release()}
+ */
+final class SpooledLob implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(SpooledLob.class.getName());
+
+    /**
+     * The default of {@link #setMemoryLimit(int)}
+     */
+    static final int MEMORY_LIMIT = 1024 * 1024;
+
+    /**
+     * The size of the pooled buffers values are copied with
+     */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int POOLED_BUFFERS = 32;
+    private static final Queue<char[]> CHAR_BUFFERS = new ConcurrentLinkedQueue<>();
+    private static final Queue<byte[]> BYTE_BUFFERS = new ConcurrentLinkedQueue<>();
+    private static final LongAdder SPILLED_VALUES = new LongAdder();
+    private static final LongAdder SPILLED_BYTES = new LongAdder();
+    private static volatile int memoryLimit = MEMORY_LIMIT;
+
+    private final Path file;
+    private final boolean text;
+    private final long length;
+    private final List<Closeable> streams;
+
+    private SpooledLob(Path file, boolean text, long length) {
+        this.file = file;
+        this.text = text;
+        this.length = length;
+        this.streams = new ArrayList<>();
+    }
+
+    /**
+     * @param limit Chars of text or bytes of binary values that are kept in memory, see {@link Config#getSpillThreshold()}
+     */
+    static void setMemoryLimit(int limit) {
+        memoryLimit = limit;
+    }
+
+    /**
+     * @return The number of values spilled to files since the start
+     */
+    static long getSpilledValues() {
+        return SPILLED_VALUES.sum();
+    }
+
+    /**
+     * @return The size of the files values were spilled to since the start
+     */
+    static long getSpilledBytes() {
+        return SPILLED_BYTES.sum();
+    }
+
+    /**
+     * @param reader The value, closed when it was read. Null for a null value
+     * @return The value as String, or as {@link SpooledLob} if it is larger than the limit
+     */
+    static Object readText(Reader reader) throws IOException {
+        return readText(reader, memoryLimit);
+    }
+
+    static Object readText(Reader reader, int memoryLimit) throws IOException {
+        if (reader == null) {
+            return null;
+        }
+        char[] buffer = takeChars();
+        try (Reader in = reader) {
+            StringBuilder sb = new StringBuilder();
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                if (sb.length() + n > memoryLimit) {
+                    return spoolText(sb, buffer, n, in);
+                }
+                sb.append(buffer, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * @param in The value, closed when it was read. Null for a null value
+     * @return The value as byte[], or as {@link SpooledLob} if it is larger than the limit
+     */
+    static Object readBinary(InputStream in) throws IOException {
+        return readBinary(in, memoryLimit);
+    }
+
+    static Object readBinary(InputStream in, int memoryLimit) throws IOException {
+        if (in == null) {
+            return null;
+        }
+        byte[] buffer = takeBytes();
+        try (InputStream source = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int n;
+            while ((n = source.read(buffer)) != -1) {
+                if (bytes.size() + n > memoryLimit) {
+                    return spoolBinary(bytes, buffer, n, source);
+                }
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Writes a value returned by {@link #readText(Reader)} as UTF-8 in chunks
+     */
+    static void writeText(Object value, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        if (value instanceof SpooledLob) {
+            try (Reader in = ((SpooledLob) value).newReader()) {
+                copy(in, writer);
+            }
+        } else {
+            String text = (String) value;
+            for (int start = 0; start < text.length(); start += BUFFER_SIZE) {
+                writer.write(text, start, Math.min(BUFFER_SIZE, text.length() - start));
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * @return The value, a {@link SpooledLob} loaded into memory as String or byte[]. For writers that need the value
+     * within the text they send
+     */
+    static Object inline(Object value) throws IOException {
+        if (value instanceof SpooledLob) {
+            SpooledLob lob = (SpooledLob) value;
+            return lob.text ? lob.readString() : lob.readBytes();
+        }
+        return value;
+    }
+
+    /**
+     * Closes the {@link SpooledLob} and {@link PendingValue} values of the row
+     */
+    static void closeAll(Object[] row) {
+        closeAll(row, 0, row.length);
+    }
+
+    /**
+     * Closes the {@link SpooledLob} and {@link PendingValue} values from (inclusive) to (exclusive)
+     */
+    static void closeAll(Object[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Object value = values[i];
+            if (value instanceof SpooledLob) {
+                ((SpooledLob) value).close();
+            } else if (value instanceof PendingValue) {
+                ((PendingValue) value).close();
+            }
+        }
+    }
+
+    /**
+     * @return The length of the value in chars for text, in bytes otherwise
+     */
+    long length() {
+        return length;
+    }
+
+    boolean isText() {
+        return text;
+    }
+
+    /**
+     * @return A new reader of the text, closed with this value
+     */
+    Reader openReader() throws IOException {
+        return track(newReader());
+    }
+
+    /**
+     * @return A new stream of the bytes, closed with this value
+     */
+    InputStream openStream() throws IOException {
+        return track(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE));
+    }
+
+    String readString() throws IOException {
+        char[] buffer = takeChars();
+        try (Reader in = newReader()) {
+            StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, length));
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                sb.append(buffer, 0, n);
+            }
+            return sb.toString();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    byte[] readBytes() throws IOException {
+        return Files.readAllBytes(file);
+    }
+
+    /**
+     * Closes the opened streams and deletes the file
+     */
+    @Override
+    public void close() {
+        synchronized (streams) {
+            for (Closeable stream : streams) {
+                try {
+                    stream.close();
+                } catch (IOException e) {
+                    // the file is deleted anyway
+                }
+            }
+            streams.clear();
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warning(String.format("The spooled value %s could not be deleted, error: %s", file, e.getMessage()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<%d %s>", length, text ? "chars" : "bytes");
+    }
+
+    private Reader newReader() throws IOException {
+        return new InputStreamReader(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE), StandardCharsets.UTF_8);
+    }
+
+    private <T extends Closeable> T track(T stream) {
+        synchronized (streams) {
+            streams.add(stream);
+        }
+        return stream;
+    }
+
+    private static SpooledLob spoolText(StringBuilder head, char[] buffer, int n, Reader rest) throws IOException {
+        Path file = Files.createTempFile("dbmerger-lob", ".txt");
+        long length = head.length() + n;
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE), StandardCharsets.UTF_8)) {
+            out.append(head);
+            out.write(buffer, 0, n);
+            head.setLength(0);
+            while ((n = rest.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                length += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        SPILLED_VALUES.increment();
+        SPILLED_BYTES.add(Files.size(file));
+        return new SpooledLob(file, true, length);
+    }
+
+    private static SpooledLob spoolBinary(ByteArrayOutputStream head, byte[] buffer, int n, InputStream rest) throws IOException {
+        Path file = Files.createTempFile("dbmerger-lob", ".bin");
+        long length = head.size() + n;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            head.writeTo(out);
+            out.write(buffer, 0, n);
+            head.reset();
+            while ((n = rest.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+                length += n;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        SPILLED_VALUES.increment();
+        SPILLED_BYTES.add(length);
+        return new SpooledLob(file, false, length);
+    }
+
+    private static void copy(Reader in, Writer out) throws IOException {
+        char[] buffer = takeChars();
+        try {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static char[] takeChars() {
+        char[] buffer = CHAR_BUFFERS.poll();
+        return buffer == null ? new char[BUFFER_SIZE] : buffer;
+    }
+
+    private static byte[] takeBytes() {
+        byte[] buffer = BYTE_BUFFERS.poll();
+        return buffer == null ? new byte[BUFFER_SIZE] : buffer;
+    }
+
+    private static void release(char[] buffer) {
+        if (CHAR_BUFFERS.size() < POOLED_BUFFERS) {
+            CHAR_BUFFERS.offer(buffer);
+        }
+    }
+
+    private static void release(byte[] buffer) {
+        if (BYTE_BUFFERS.size() < POOLED_BUFFERS) {
+            BYTE_BUFFERS.offer(buffer);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.pingcentral.custom;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Runs a job for each table on a number of workers. A table is only handed to a worker once all tables it has to wait for
+ * (i.e. the tables it references with foreign keys) are done, independent tables run concurrently. Each worker has its own
+ * source and target connection. A job may split its table into sub tasks (i.e. key ranges), idle workers take those
+ * before they start another table. A table is done once its job and all of its sub tasks are done
+ *
+ * @param <T> The type of the items that are scheduled, one per table
+ */
+final class TableScheduler<T> {
+
+    private static final Logger LOGGER = Logger.getLogger(TableScheduler.class.getName());
+
+    @FunctionalInterface
+    interface Job<T> {
+        void run(T item, Context context) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface SubTask {
+        void run(Context context) throws Exception;
+    }
+
+    private final List<T> items;
+    private final List<String> keys;
+    private final int[] pendingDependencies;
+    private final int[] pendingTasks;
+    private final List<List<Integer>> dependents;
+    private final boolean[] queued;
+    private final PriorityQueue<Integer> ready;
+    private final Deque<Task> subTasks;
+    private int running;
+    private int completed;
+
+    /**
+     * @param items    The items in the order they should be processed if nothing else is known (the order the tables were created)
+     * @param keyOf    Returns the (normalized) table name of an item
+     * @param runAfter For each table name the table names that have to be completed first. If it is empty all items run
+     *                 one after another in the given order
+     */
+    TableScheduler(List<T> items, Function<T, String> keyOf, Map<String, Set<String>> runAfter) {
+        this.items = items;
+        this.keys = new ArrayList<>();
+        this.pendingDependencies = new int[items.size()];
+        this.pendingTasks = new int[items.size()];
+        this.subTasks = new ArrayDeque<>();
+        this.dependents = new ArrayList<>();
+        this.queued = new boolean[items.size()];
+        this.ready = new PriorityQueue<>();
+        Map<String, List<Integer>> indexes = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            String key = keyOf.apply(items.get(i));
+            keys.add(key);
+            dependents.add(new ArrayList<>());
+            indexes.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+        }
+        if (runAfter.isEmpty()) {
+            LOGGER.info("No foreign keys are known, tables are processed one after another");
+            for (int i = 1; i < items.size(); i++) {
+                addDependency(i - 1, i);
+            }
+        } else {
+            for (int i = 0; i < items.size(); i++) {
+                for (String dependency : runAfter.getOrDefault(keys.get(i), Collections.emptySet())) {
+                    for (int j : indexes.getOrDefault(dependency, Collections.emptyList())) {
+                        if (j != i) {
+                            addDependency(j, i);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (pendingDependencies[i] == 0) {
+                queue(i);
+            }
+        }
+    }
+
+    /**
+     * Runs the job for all items and returns once all of them are done. Failures of a job are logged, tables that depend on
+     * a failed table are still processed
+     *
+     * @param workerCount The number of workers. With a single worker all jobs run on the calling thread
+     * @param source      Provides the source connection of each worker
+     * @param target      Provides the target connection of each worker
+     * @param job         The job to run for each item
+     */
+    void run(int workerCount, ConnectionProvider source, ConnectionProvider target, Job<T> job) throws InterruptedException {
+        int threads = Math.max(1, Math.min(workerCount, items.size()));
+        if (threads == 1) {
+            work(source, target, job);
+            return;
+        }
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    work(source, target, job);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, String.format("dbmerger-worker-%d", i + 1));
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void work(ConnectionProvider source, ConnectionProvider target, Job<T> job) throws InterruptedException {
+        try (Worker worker = new Worker(source, target)) {
+            Task next;
+            while ((next = take()) != null) {
+                Context context = new Context(this, worker, next.index);
+                try {
+                    if (next.subTask == null) {
+                        job.run(items.get(next.index), context);
+                    } else {
+                        next.subTask.run(context);
+                    }
+                } catch (Exception e) {
+                    LOGGER.warning(String.format("Table: %s, error: %s", keys.get(next.index), e.getMessage()));
+                } finally {
+                    complete(next.index);
+                }
+            }
+        }
+    }
+
+    private synchronized Task take() throws InterruptedException {
+        while (true) {
+            if (!subTasks.isEmpty()) {
+                running++;
+                return subTasks.poll();
+            }
+            if (!ready.isEmpty()) {
+                running++;
+                int index = ready.poll();
+                pendingTasks[index]++;
+                return new Task(index, null);
+            }
+            if (completed == items.size()) {
+                return null;
+            }
+            if (running == 0) {
+                breakCycle();
+            } else {
+                wait();
+            }
+        }
+    }
+
+    private synchronized void fork(int index, SubTask subTask) {
+        pendingTasks[index]++;
+        subTasks.add(new Task(index, subTask));
+        notifyAll();
+    }
+
+    private synchronized void complete(int index) {
+        running--;
+        if (--pendingTasks[index] == 0) {
+            completed++;
+            for (int dependent : dependents.get(index)) {
+                if (--pendingDependencies[dependent] == 0) {
+                    queue(dependent);
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Nothing is ready and nothing is running, the remaining tables reference each other. The first one is released
+     */
+    private void breakCycle() {
+        for (int i = 0; i < items.size(); i++) {
+            if (!queued[i]) {
+                LOGGER.warning(String.format("Table %s is part of circular foreign keys and is processed before the tables it references", keys.get(i)));
+                pendingDependencies[i] = 0;
+                queue(i);
+                return;
+            }
+        }
+    }
+
+    private void addDependency(int first, int then) {
+        dependents.get(first).add(then);
+        pendingDependencies[then]++;
+    }
+
+    private void queue(int index) {
+        if (!queued[index]) {
+            queued[index] = true;
+            ready.add(index);
+        }
+    }
+
+    private static final class Task {
+
+        private final int index;
+        private final SubTask subTask;
+
+        private Task(int index, SubTask subTask) {
+            this.index = index;
+            this.subTask = subTask;
+        }
+    }
+
+    /**
+     * What a job or sub task can access while it runs on a worker
+     */
+    static final class Context {
+
+        private final TableScheduler<?> scheduler;
+        private final Worker worker;
+        private final int index;
+
+        private Context(TableScheduler<?> scheduler, Worker worker, int index) {
+            this.scheduler = scheduler;
+            this.worker = worker;
+            this.index = index;
+        }
+
+        Connection getSourceConnection() throws SQLException {
+            return worker.getSourceConnection();
+        }
+
+        Connection getTargetConnection() throws SQLException {
+            return worker.getTargetConnection();
+        }
+
+        /**
+         * Adds a sub task of the current table. Any idle worker may run it
+         */
+        void fork(SubTask subTask) {
+            scheduler.fork(index, subTask);
+        }
+    }
+
+    /**
+     * The connections of one worker. They are acquired on first use and released when the worker is done
+     */
+    private static final class Worker implements AutoCloseable {
+
+        private final ConnectionProvider sourceProvider;
+        private final ConnectionProvider targetProvider;
+        private Connection sourceConnection;
+        private Connection targetConnection;
+
+        private Worker(ConnectionProvider sourceProvider, ConnectionProvider targetProvider) {
+            this.sourceProvider = sourceProvider;
+            this.targetProvider = targetProvider;
+        }
+
+        Connection getSourceConnection() throws SQLException {
+            if (sourceConnection == null) {
+                sourceConnection = sourceProvider.acquire();
+            }
+            return sourceConnection;
+        }
+
+        Connection getTargetConnection() throws SQLException {
+            if (targetConnection == null) {
+                targetConnection = targetProvider.acquire();
+            }
+            return targetConnection;
+        }
+
+        @Override
+        public void close() {
+            if (sourceConnection != null) {
+                sourceProvider.release(sourceConnection);
+            }
+            if (targetConnection != null) {
+                targetProvider.release(targetConnection);
+            }
+        }
+    }
+}
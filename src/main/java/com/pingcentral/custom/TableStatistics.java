@@ -0,0 +1,123 @@
+package com.pingcentral.custom;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Numbers collected while one table was transferred
+ */
+public final class TableStatistics {
+
+    private final String tableName;
+    private long rows;
+    private long skippedRows;
+    private long unreportedRows;
+    private long rejectedRows;
+    private long elapsedNanos;
+    private long readerStallNanos;
+    private long writerStallNanos;
+
+    TableStatistics(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return The number of rows that were committed in the target table
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of rows that were skipped because their key exists in the target table already
+     */
+    public long getSkippedRows() {
+        return skippedRows;
+    }
+
+    /**
+     * @return The number of rows that were either committed or skipped, the target did not report which
+     */
+    public long getUnreportedRows() {
+        return unreportedRows;
+    }
+
+    /**
+     * @return The number of rows the target rejected, see {@link RejectFile}
+     */
+    public long getRejectedRows() {
+        return rejectedRows;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * @return The time the reader waited because the queue of row batches was full
+     */
+    public long getReaderStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readerStallNanos);
+    }
+
+    /**
+     * @return The time the writer waited because the queue of row batches was empty
+     */
+    public long getWriterStallMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerStallNanos);
+    }
+
+    public long getRowsPerSecond() {
+        return rows * 1000L / Math.max(1, getElapsedMillis());
+    }
+
+    /**
+     * Adds the numbers of a part of the same table, i.e. one range of its primary key
+     */
+    synchronized void merge(TableStatistics other) {
+        this.rows += other.rows;
+        this.skippedRows += other.skippedRows;
+        this.unreportedRows += other.unreportedRows;
+        this.rejectedRows += other.rejectedRows;
+        this.readerStallNanos += other.readerStallNanos;
+        this.writerStallNanos += other.writerStallNanos;
+    }
+
+    void addRows(long rows) {
+        this.rows += rows;
+    }
+
+    void addSkippedRows(long skippedRows) {
+        this.skippedRows += skippedRows;
+    }
+
+    void addUnreportedRows(long unreportedRows) {
+        this.unreportedRows += unreportedRows;
+    }
+
+    void addRejectedRows(long rejectedRows) {
+        this.rejectedRows += rejectedRows;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void addReaderStallNanos(long nanos) {
+        this.readerStallNanos += nanos;
+    }
+
+    void addWriterStallNanos(long nanos) {
+        this.writerStallNanos += nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("row count: %d, skipped duplicates: %d%s, rejected: %d, duration: %d ms, throughput: %d rows/s, reader stall: %d ms, writer stall: %d ms",
+                rows, skippedRows, unreportedRows == 0 ? "" : String.format(", written or skipped (not reported by the target): %d", unreportedRows),
+                rejectedRows, getElapsedMillis(), getRowsPerSecond(), getReaderStallMillis(), getWriterStallMillis());
+    }
+}
@@ -0,0 +1,289 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.Dialect;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.sql.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Copies one table of the {@link TransferPlan}, or one range of its primary key. A reader thread fetches rows from the
+ * source and hands them over in batches through a bounded queue, the calling thread writes them to the target. Source
+ * fetches and target writes overlap and a full queue slows the reader down until the writer catches up. Rows are read by
+ * the {@link RowReader} of the source and written by the {@link RowWriter} of the target. A batch the target rejects is
+ * split in halves until the offending rows are found, those go to the {@link RejectFile} and all others are written. The
+ * {@link BatchSizeController} decides how many rows go into a batch
+ */
+final class TableTransfer {
+
+    private static final Logger LOGGER = Logger.getLogger(TableTransfer.class.getName());
+
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "dbmerger-reader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final TransferPlan.TablePair tablePair;
+    private final Connection sourceConnection;
+    private final Connection targetConnection;
+    private final ConfigDatabase sourceDatabase;
+    private final ConfigDatabase targetDatabase;
+    private final Config config;
+    private final int batchSize;
+    private final int commitEvery;
+    private final int queueDepth;
+    private final String duplicateHandling;
+    private final RejectFile rejects;
+    private final CheckpointFile checkpoints;
+    private final LargeObjectWorkers largeObjects;
+    private final MemoryGovernor memory;
+    private final long[] keyRange;
+    private final RowFilter filter;
+
+    TableTransfer(TransferPlan.TablePair tablePair, Connection sourceConnection, Connection targetConnection, Config config, RejectFile rejects, CheckpointFile checkpoints, LargeObjectWorkers largeObjects, MemoryGovernor memory) {
+        this(tablePair, sourceConnection, targetConnection, config, rejects, checkpoints, largeObjects, memory, null);
+    }
+
+    /**
+     * @param rejects      Receives the rows the target rejected
+     * @param checkpoints  Receives the key ranges that were committed, only used with a key range
+     * @param largeObjects Reads and creates large objects ahead of the writer, null to do it within the table transfer
+     * @param memory       Limits the batches that wait for the writer
+     * @param keyRange     The lowest (inclusive) and highest (exclusive) primary key value to copy, see
+     *                     {@link TableColumnTypeSelect#getChunkSelectStmt()}. Null to copy the complete table
+     */
+    TableTransfer(TransferPlan.TablePair tablePair, Connection sourceConnection, Connection targetConnection, Config config, RejectFile rejects, CheckpointFile checkpoints, LargeObjectWorkers largeObjects, MemoryGovernor memory, long[] keyRange) {
+        this(tablePair, sourceConnection, targetConnection, config, rejects, checkpoints, largeObjects, memory, keyRange, null);
+    }
+
+    /**
+     * @param filter The rows to copy, i.e. those of an incremental sync. Null to copy the complete table or key range
+     */
+    TableTransfer(TransferPlan.TablePair tablePair, Connection sourceConnection, Connection targetConnection, Config config, RejectFile rejects, CheckpointFile checkpoints, LargeObjectWorkers largeObjects, MemoryGovernor memory, long[] keyRange, RowFilter filter) {
+        this.filter = filter;
+        this.rejects = rejects;
+        this.checkpoints = checkpoints;
+        this.largeObjects = largeObjects;
+        this.memory = memory;
+        this.keyRange = keyRange;
+        this.tablePair = tablePair;
+        this.sourceConnection = sourceConnection;
+        this.targetConnection = targetConnection;
+        this.sourceDatabase = config.getSourceDatabase();
+        this.targetDatabase = config.getTargetDatabases().get(0);
+        this.config = config;
+        this.batchSize = config.getBatchSize();
+        this.commitEvery = config.getCommitEvery();
+        this.queueDepth = config.getQueueDepth();
+        this.duplicateHandling = config.getDuplicateHandling();
+    }
+
+    /**
+     * @return The statistics of the transferred table
+     * @throws Exception If reading or writing failed. Rows that were committed before remain in the target table, the
+     *                   {@link CheckpointFile} only covers the keys of these rows
+     */
+    TableStatistics run() throws Exception {
+        TableStatistics statistics = new TableStatistics(tablePair.getTargetTable().getTableName());
+        BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(queueDepth);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        long started = System.nanoTime();
+        BatchSizeController batchSizes = new BatchSizeController(tablePair.getTargetTable().getTableName(), config, maxBatchBytes());
+        // the source needs a transaction for streaming and reading PostgreSQL large objects, the target one for batching.
+        // A source connection that is in a transaction already reads a snapshot, see SourceSnapshot, which is left open
+        boolean sourceTransaction = sourceConnection.getAutoCommit();
+        sourceConnection.setAutoCommit(false);
+        targetConnection.setAutoCommit(false);
+        Future<Void> reader = READERS.submit(() -> read(queue, cancelled, statistics, sourceTransaction, batchSizes));
+        boolean written = false;
+        boolean complete = false;
+        try {
+            complete = write(queue, statistics, batchSizes);
+            written = true;
+        } catch (Exception e) {
+            JdbcHelper.rollbackQuietly(targetConnection);
+            throw e;
+        } finally {
+            if (!written) {
+                cancelled.set(true);
+            }
+            try {
+                reader.get();
+            } catch (ExecutionException e) {
+                if (written) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            } finally {
+                // batches the writer did not take if it failed
+                for (RowBatch left = queue.poll(); left != null; left = queue.poll()) {
+                    left.release();
+                    memory.release(left.getMemoryBytes());
+                }
+                statistics.setElapsedNanos(System.nanoTime() - started);
+                if (sourceTransaction) {
+                    JdbcHelper.restoreAutoCommit(sourceConnection);
+                }
+                JdbcHelper.restoreAutoCommit(targetConnection);
+            }
+        }
+        if (!complete) {
+            // the reader reports its own error above, this only guards against a table that silently ends early
+            throw new SQLException(String.format("Table: %s, the source rows could not be read completely", tablePair.getTargetTable().getTableName()));
+        }
+        return statistics;
+    }
+
+    /**
+     * The byte budget of a batch, for MySQL/MariaDB targets also below max_allowed_packet
+     */
+    private long maxBatchBytes() throws SQLException {
+        long maxBytes = config.getMaxBatchBytes();
+        if (targetDatabase.getDialect() == Dialect.MYSQL) {
+            maxBytes = Math.min(maxBytes, JdbcHelper.maxAllowedPacket(targetConnection) * 9 / 10);
+        }
+        return maxBytes;
+    }
+
+    private Void read(BlockingQueue<RowBatch> queue, AtomicBoolean cancelled, TableStatistics statistics, boolean sourceTransaction, BatchSizeController batchSizes) throws Exception {
+        boolean complete = false;
+        try (RowReader rowReader = RowReader.create(tablePair, sourceConnection, sourceDatabase, keyRange, filter, largeObjects)) {
+            RowBatch batch = tablePair.takeBatch(batchSizes.nextBatchSize());
+            while (!cancelled.get() && rowReader.next(batch)) {
+                if (batch.isFull() || batch.getBytes() >= batchSizes.getMaxBytes()) {
+                    put(queue, batch, cancelled, statistics);
+                    batch = tablePair.takeBatch(batchSizes.nextBatchSize());
+                }
+            }
+            if (batch.size() > 0) {
+                put(queue, batch, cancelled, statistics);
+            } else {
+                tablePair.returnBatch(batch);
+            }
+            complete = !cancelled.get();
+        } finally {
+            put(queue, complete ? RowBatch.END : RowBatch.FAILED, cancelled, statistics);
+        }
+        if (sourceTransaction) {
+            sourceConnection.commit();
+        }
+        return null;
+    }
+
+    /**
+     * Waits until the {@link MemoryGovernor} admits the batch and the queue has room for it. A batch that is not handed
+     * over because the writer failed is released
+     */
+    private void put(BlockingQueue<RowBatch> queue, RowBatch batch, AtomicBoolean cancelled, TableStatistics statistics) throws InterruptedException {
+        long waiting = System.nanoTime();
+        boolean reserved = false;
+        boolean queued = false;
+        try {
+            while (!cancelled.get() && !reserved) {
+                reserved = memory.reserve(batch.getMemoryBytes(), OFFER_TIMEOUT_MILLIS);
+            }
+            while (!cancelled.get() && !queued) {
+                queued = queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            statistics.addReaderStallNanos(System.nanoTime() - waiting);
+            if (!queued) {
+                batch.release();
+                if (reserved) {
+                    memory.release(batch.getMemoryBytes());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the batches until the reader marks the end of the table. If the reader failed, the rows written so far are
+     * committed and only their keys are recorded in the {@link CheckpointFile}
+     *
+     * @return true if all rows were read and written, false if the reader failed
+     */
+    private boolean write(BlockingQueue<RowBatch> queue, TableStatistics statistics, BatchSizeController batchSizes) throws SQLException, InterruptedException {
+        String tableName = tablePair.getTargetTable().getTableName();
+        try (RowWriter rowWriter = RowWriter.create(tablePair, targetConnection, targetDatabase, batchSize, duplicateHandling)) {
+            TableStatistics uncommitted = new TableStatistics(tableName);
+            // rows are read in the order of the key, all keys below the next one were written
+            long nextKey = keyRange == null ? 0 : keyRange[0];
+            boolean complete;
+            while (true) {
+                long waiting = System.nanoTime();
+                RowBatch batch = queue.take();
+                statistics.addWriterStallNanos(System.nanoTime() - waiting);
+                if (batch == RowBatch.END || batch == RowBatch.FAILED) {
+                    complete = batch == RowBatch.END;
+                    break;
+                }
+                long writing = System.nanoTime();
+                try {
+                    writeBatch(rowWriter, batch, uncommitted, true);
+                    if (keyRange != null && tablePair.getKeyPosition() >= 0) {
+                        nextKey = ((Number) batch.get(batch.size() - 1, tablePair.getKeyPosition())).longValue() + 1;
+                    }
+                } finally {
+                    batch.release();
+                    memory.release(batch.getMemoryBytes());
+                }
+                batchSizes.record(batch.size(), batch.getBytes(), System.nanoTime() - writing);
+                tablePair.returnBatch(batch);
+                if (uncommitted.getRows() + uncommitted.getSkippedRows() + uncommitted.getUnreportedRows() >= commitEvery) {
+                    targetConnection.commit();
+                    statistics.merge(uncommitted);
+                    uncommitted = new TableStatistics(tableName);
+                    if (keyRange != null) {
+                        checkpoints.committed(tableName, keyRange[0], nextKey);
+                    }
+                }
+            }
+            targetConnection.commit();
+            statistics.merge(uncommitted);
+            if (keyRange != null) {
+                checkpoints.committed(tableName, keyRange[0], complete ? keyRange[1] : nextKey);
+            }
+            return complete;
+        }
+    }
+
+    /**
+     * Writes a batch within a savepoint. If the target rejects it only the batch is rolled back, it is split in halves
+     * that are written on their own. A single row that is rejected goes to the {@link RejectFile}
+     *
+     * @param rowWriter   The writer of the target table
+     * @param batch       The rows to write
+     * @param uncommitted Counts the rows written, skipped and rejected since the last commit
+     * @param first       If the batch was read from the queue, used for logging
+     * @throws SQLException If writing failed otherwise or the savepoint could not be rolled back
+     */
+    private void writeBatch(RowWriter rowWriter, RowBatch batch, TableStatistics uncommitted, boolean first) throws SQLException {
+        Savepoint savepoint = targetConnection.setSavepoint();
+        try {
+            int written = rowWriter.write(batch);
+            uncommitted.addRows(written);
+            uncommitted.addSkippedRows(rowWriter.getSkippedRows());
+            uncommitted.addUnreportedRows(rowWriter.getUnreportedRows());
+            targetConnection.releaseSavepoint(savepoint);
+        } catch (BatchUpdateException e) {
+            targetConnection.rollback(savepoint);
+            if (batch.size() == 1) {
+                rejects.reject(tablePair.getTargetTable(), batch.getRow(0), e.getMessage());
+                uncommitted.addRejectedRows(1);
+                return;
+            }
+            if (first) {
+                LOGGER.info(String.format("Table: %s, a batch of %d rows was rejected, isolating the offending rows. Error: %s", tablePair.getTargetTable().getTableName(), batch.size(), e.getMessage()));
+            }
+            int middle = batch.size() / 2;
+            writeBatch(rowWriter, batch.slice(0, middle), uncommitted, false);
+            writeBatch(rowWriter, batch.slice(middle, batch.size()), uncommitted, false);
+        }
+    }
+}
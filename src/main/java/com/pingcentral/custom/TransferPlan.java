@@ -0,0 +1,257 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.ConfigDatabase;
+import com.pingcentral.custom.model.PostgresLargeObjectTranslation;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * The pairs of source and target tables that are transferred, in the order the tables were created. It is built once after
+ * the Liquibase changelog files were processed and does not change afterwards
+ */
+public final class TransferPlan {
+
+    private static final Logger LOGGER = Logger.getLogger(TransferPlan.class.getName());
+
+    private final List<TablePair> tablePairs;
+    private final Map<String, Set<String>> tableDependencies;
+
+    private TransferPlan(List<TablePair> tablePairs, Map<String, Set<String>> tableDependencies) {
+        this.tablePairs = Collections.unmodifiableList(tablePairs);
+        this.tableDependencies = Collections.unmodifiableMap(tableDependencies);
+    }
+
+    /**
+     * @param processor A processor whose changelog files were processed already
+     * @param source    The source database
+     * @param target    The target database
+     * @return The plan
+     */
+    public static TransferPlan create(LiquibaseChangelogProcessor processor, ConfigDatabase source, ConfigDatabase target) {
+        Map<String, List<TableColumnTypeSelect>> targetTables = new HashMap<>();
+        for (List<TableColumnTypeSelect> next : processor.getTargetTables().values()) {
+            for (TableColumnTypeSelect nextTargetTable : next) {
+                targetTables.computeIfAbsent(normalize(nextTargetTable.getTableName()), k -> new ArrayList<>()).add(nextTargetTable);
+            }
+        }
+        Map<String, Set<String>> fromColumns = normalize(target.getTranslateFromPostgresClobObjects());
+        Map<String, Set<String>> toColumns = normalize(target.getTranslateToPostgresClobObjects());
+        List<TablePair> tablePairs = new ArrayList<>();
+        for (List<TableColumnTypeSelect> next : processor.getSourceTables().values()) {
+            for (TableColumnTypeSelect nextSourceTable : next) {
+                String key = normalize(nextSourceTable.getTableName());
+                List<TableColumnTypeSelect> matches = targetTables.get(key);
+                if (matches == null) {
+                    LOGGER.warning(String.format("Table %s does not exist in the target database and will be skipped", nextSourceTable.getTableName()));
+                    continue;
+                }
+                for (TableColumnTypeSelect nextTargetTable : matches) {
+                    Set<String> from = fromColumns.get(key);
+                    Set<String> to = toColumns.get(key);
+                    ColumnBinder[] binders = processor.compileColumnBinders(nextSourceTable, nextTargetTable, from, to, source.isPostgresType());
+                    tablePairs.add(new TablePair(nextSourceTable, nextTargetTable, binders, from, to));
+                }
+            }
+        }
+        Map<String, Set<String>> tableDependencies = new HashMap<>();
+        for (Map.Entry<String, Set<String>> next : processor.getTableDependencies().entrySet()) {
+            Set<String> referenced = tableDependencies.computeIfAbsent(normalize(next.getKey()), k -> new HashSet<>());
+            for (String table : next.getValue()) {
+                referenced.add(normalize(table));
+            }
+        }
+        return new TransferPlan(tablePairs, tableDependencies);
+    }
+
+    public List<TablePair> getTablePairs() {
+        return tablePairs;
+    }
+
+    /**
+     * @return The normalized names of the tables each table references with foreign keys, by normalized table name
+     */
+    public Map<String, Set<String>> getTableDependencies() {
+        return tableDependencies;
+    }
+
+    /**
+     * @return The key that is used to match table and column names between the source and target database
+     */
+    static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, Set<String>> normalize(List<PostgresLargeObjectTranslation> translations) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (PostgresLargeObjectTranslation translation : translations) {
+            Set<String> columns = result.computeIfAbsent(normalize(translation.getTable()), k -> new HashSet<>());
+            for (String column : translation.getColumns()) {
+                columns.add(normalize(column));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A source table, the target table it is copied to and everything that was resolved for its columns
+     */
+    public static final class TablePair {
+
+        /**
+         * Enough for the batches a reader fills while the writer writes one, more would only hold on to memory
+         */
+        private static final int MAX_POOLED_BATCHES = 4;
+
+        private final TableColumnTypeSelect sourceTable;
+        private final TableColumnTypeSelect targetTable;
+        private final ColumnBinder[] binders;
+        private final ColumnKind[] kinds;
+        private final int[] targetPositions;
+        private final boolean[] largeObjectColumns;
+        private final int[] sourcePositions;
+        private final ColumnKind[] valueKinds;
+        private final int keyPosition;
+        private final BlockingQueue<RowBatch> batches;
+
+        private TablePair(TableColumnTypeSelect sourceTable, TableColumnTypeSelect targetTable, ColumnBinder[] binders, Set<String> fromColumns, Set<String> toColumns) {
+            this.sourceTable = sourceTable;
+            this.targetTable = targetTable;
+            this.binders = binders;
+            this.batches = new ArrayBlockingQueue<>(MAX_POOLED_BATCHES);
+            Map<String, Integer> targetIndexes = new HashMap<>();
+            for (ColumnType ct : targetTable.getColumnTypes()) {
+                targetIndexes.put(normalize(ct.getColumnName()), ct.getIndex());
+            }
+            Map<String, ColumnType> sourceColumns = new HashMap<>();
+            for (ColumnType ct : sourceTable.getColumnTypes()) {
+                sourceColumns.put(normalize(ct.getColumnName()), ct);
+            }
+            List<ColumnType> targetColumns = targetTable.getColumnTypes();
+            String key = sourceTable.getChunkSelectStmt() == null ? null : normalize(sourceTable.getPrimaryKeyColumns().get(0));
+            int keyPosition = -1;
+            this.sourcePositions = new int[targetColumns.size()];
+            this.valueKinds = new ColumnKind[targetColumns.size()];
+            for (int i = 0; i < targetColumns.size(); i++) {
+                ColumnType sourceColumn = sourceColumns.get(normalize(targetColumns.get(i).getColumnName()));
+                sourcePositions[i] = sourceColumn == null ? -1 : sourceColumn.getIndex() - 1;
+                valueKinds[i] = sourceColumn == null ? ColumnKind.OTHER : ColumnKind.of(sourceColumn.getColumnType());
+                if (sourceColumn != null && normalize(sourceColumn.getColumnName()).equals(key)) {
+                    keyPosition = i;
+                }
+            }
+            this.keyPosition = keyPosition;
+            List<ColumnType> columnTypes = sourceTable.getColumnTypes();
+            this.kinds = new ColumnKind[columnTypes.size()];
+            this.targetPositions = new int[columnTypes.size()];
+            this.largeObjectColumns = new boolean[columnTypes.size()];
+            for (int i = 0; i < columnTypes.size(); i++) {
+                String columnName = normalize(columnTypes.get(i).getColumnName());
+                kinds[i] = ColumnKind.of(columnTypes.get(i).getColumnType());
+                targetPositions[i] = targetIndexes.getOrDefault(columnName, 0);
+                largeObjectColumns[i] = (fromColumns != null && fromColumns.contains(columnName)) || (toColumns != null && toColumns.contains(columnName));
+            }
+        }
+
+        public TableColumnTypeSelect getSourceTable() {
+            return sourceTable;
+        }
+
+        public TableColumnTypeSelect getTargetTable() {
+            return targetTable;
+        }
+
+        /**
+         * @return The binders for the target insert statement, see {@link LiquibaseChangelogProcessor#compileColumnBinders}
+         */
+        public ColumnBinder[] getBinders() {
+            return binders;
+        }
+
+        /**
+         * @param position The position of the column within the source select statement, starting at 0
+         * @return The kind of the source column
+         */
+        public ColumnKind getKind(int position) {
+            return kinds[position];
+        }
+
+        /**
+         * @param position The position of the column within the source select statement, starting at 0
+         * @return The position of the same column within the target select statement, 0 if it does not exist
+         */
+        public int getTargetPosition(int position) {
+            return targetPositions[position];
+        }
+
+        /**
+         * @param position The position of the column within the source select statement, starting at 0
+         * @return true if the column is translated from or to a PostgreSQL large object
+         */
+        public boolean isLargeObjectColumn(int position) {
+            return largeObjectColumns[position];
+        }
+
+        /**
+         * @param targetPosition The position of the column within the target insert statement, starting at 0
+         * @return The position of the same column within the source select statement starting at 0, -1 if it does not exist
+         */
+        public int getSourcePosition(int targetPosition) {
+            return sourcePositions[targetPosition];
+        }
+
+        /**
+         * @param targetPosition The position of the column within the target insert statement, starting at 0
+         * @return The kind of the source column, it decides the type of the value the binder of the target column reads
+         */
+        public ColumnKind getValueKind(int targetPosition) {
+            return valueKinds[targetPosition];
+        }
+
+        /**
+         * @return The position of the single integer primary key within the target insert statement, starting at 0. -1 if
+         * the table cannot be read in key ranges, see {@link TableColumnTypeSelect#getChunkSelectStmt()}
+         */
+        public int getKeyPosition() {
+            return keyPosition;
+        }
+
+        /**
+         * @param size The number of rows the batch has to hold
+         * @return An empty batch, one that was written before if possible
+         */
+        RowBatch takeBatch(int size) {
+            RowBatch batch = batches.poll();
+            if (batch == null || batch.capacity() < size) {
+                return new RowBatch(binders, size);
+            }
+            batch.reset(size);
+            return batch;
+        }
+
+        /**
+         * @param batch A batch that was written and released, it is reused by {@link #takeBatch(int)}. The batches of all
+         *              ranges of the table share one pool
+         */
+        void returnBatch(RowBatch batch) {
+            batches.offer(batch);
+        }
+
+        /**
+         * @return true if any column is translated from or to a PostgreSQL large object
+         */
+        public boolean hasLargeObjectColumns() {
+            for (boolean largeObjectColumn : largeObjectColumns) {
+                if (largeObjectColumn) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
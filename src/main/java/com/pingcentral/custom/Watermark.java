@@ -0,0 +1,145 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.ConfigWatermark;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+
+import java.math.BigDecimal;
+import java.sql.*;
+
+/**
+ * The rows of a source table that an incremental sync copies, see {@link ConfigWatermark}: those whose watermark value is
+ * above the highest value of the previous sync and not above the highest value when the sync started. Rows that are
+ * written while the table is copied are left for the next sync. Values are kept as text between syncs, see
+ * {@link WatermarkFile}
+ */
+final class Watermark implements RowFilter {
+
+    private final String column;
+    private final Object lower;
+    private final Object upper;
+
+    private Watermark(String column, Object lower, Object upper) {
+        this.column = column;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    /**
+     * @param column The watermark column of the source table
+     * @param lower  The highest value the previous sync copied, null to copy all rows
+     * @return The rows to copy, null if there are none
+     * @throws SQLException If the highest value could not be read
+     */
+    static Watermark read(Connection source, TableColumnTypeSelect table, ColumnType column, String lower) throws SQLException {
+        ColumnKind kind = ColumnKind.of(column.getColumnType());
+        Object upper;
+        try (Statement stmt = source.createStatement();
+             ResultSet rs = stmt.executeQuery(String.format("SELECT MAX(%s) FROM %s", column.getColumnName(), table.getTableName()))) {
+            upper = rs.next() ? read(rs, kind) : null;
+        }
+        Object from = lower == null ? null : parse(lower, kind);
+        if (upper == null || (from != null && compare(upper, from) <= 0)) {
+            return null;
+        }
+        return new Watermark(column.getColumnName(), from, upper);
+    }
+
+    /**
+     * @return true if the column can be used as watermark
+     */
+    static boolean supports(ColumnKind kind) {
+        switch (kind) {
+            case INT:
+            case TINYINT:
+            case BIGINT:
+            case NUMBER:
+            case TIMESTAMP:
+            case DATE:
+            case TEXT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String getSelectStmt(TableColumnTypeSelect table) {
+        String select = table.getSelectStmt().replaceAll(";\\s*$", "");
+        if (lower == null) {
+            return String.format("%s WHERE %s <= ?", select, column);
+        }
+        return String.format("%s WHERE %s > ? AND %s <= ?", select, column, column);
+    }
+
+    @Override
+    public void bind(PreparedStatement stmt) throws SQLException {
+        int index = 1;
+        if (lower != null) {
+            stmt.setObject(index++, lower);
+        }
+        stmt.setObject(index, upper);
+    }
+
+    /**
+     * @return The value the next sync continues after
+     */
+    String getUpper() {
+        return upper.toString();
+    }
+
+    @Override
+    public String toString() {
+        return lower == null ? String.format("%s <= %s", column, upper) : String.format("%s > %s and <= %s", column, lower, upper);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object value, Object other) {
+        return ((Comparable) value).compareTo(other);
+    }
+
+    private static Object read(ResultSet rs, ColumnKind kind) throws SQLException {
+        Object value;
+        switch (kind) {
+            case INT:
+            case TINYINT:
+            case BIGINT:
+                long number = rs.getLong(1);
+                value = rs.wasNull() ? null : number;
+                break;
+            case NUMBER:
+                value = rs.getBigDecimal(1);
+                break;
+            case TIMESTAMP:
+                value = rs.getTimestamp(1);
+                break;
+            case DATE:
+                value = rs.getDate(1);
+                break;
+            default:
+                value = rs.getString(1);
+        }
+        return value;
+    }
+
+    /**
+     * @param value A value returned by {@link #getUpper()}
+     */
+    private static Object parse(String value, ColumnKind kind) {
+        switch (kind) {
+            case INT:
+            case TINYINT:
+            case BIGINT:
+                return Long.valueOf(value);
+            case NUMBER:
+                return new BigDecimal(value);
+            case TIMESTAMP:
+                return Timestamp.valueOf(value);
+            case DATE:
+                return Date.valueOf(value);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the highest watermark value each table was synced up to, see {@link Config#getWatermarkFile()}. Each line holds
+ * table, column and value (tab separated). The file is replaced after each table that was synced, a table whose sync
+ * failed keeps its previous value. All workers share one instance
+ */
+final class WatermarkFile {
+
+    private static final Logger LOGGER = Logger.getLogger(WatermarkFile.class.getName());
+
+    private final Path path;
+    private final Map<String, String[]> values;
+
+    /**
+     * @param path The file, it does not exist before the first sync. null to not record anything
+     * @throws IOException If the file exists but could not be read
+     */
+    WatermarkFile(String path) throws IOException {
+        this.path = path == null ? null : Paths.get(path);
+        this.values = new TreeMap<>();
+        if (this.path != null && Files.exists(this.path)) {
+            for (String line : Files.readAllLines(this.path, StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3) {
+                    values.put(fields[0], new String[]{fields[1], fields[2]});
+                } else if (!line.isEmpty()) {
+                    LOGGER.warning(String.format("The line '%s' of the {watermark_file} %s is ignored", line, path));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The value the table was synced up to, null if it was not synced with this column before
+     */
+    synchronized String get(String table, String column) {
+        String[] value = values.get(TransferPlan.normalize(table));
+        return value == null || !TransferPlan.normalize(column).equals(value[0]) ? null : value[1];
+    }
+
+    /**
+     * Records the value once the rows up to it were committed
+     */
+    synchronized void set(String table, String column, String value) throws IOException {
+        if (path == null) {
+            return;
+        }
+        values.put(TransferPlan.normalize(table), new String[]{TransferPlan.normalize(column), value});
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String[]> next : values.entrySet()) {
+            lines.add(String.format("%s\t%s\t%s", next.getKey(), next.getValue()[0], next.getValue()[1]));
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.pingcentral.custom.model;
+
+import java.util.Locale;
+
+/**
+ * The handling of a column while data is transferred. It is resolved once from the data type found in the Liquibase changelog files
+ */
+public enum ColumnKind {
+
+    INT,
+    TINYINT,
+    NUMBER,
+    BIGINT,
+    BOOLEAN,
+    TIMESTAMP,
+    DATE,
+    TEXT,
+    BINARY,
+    OTHER;
+
+    /**
+     * @param columnType The data type as found in the Liquibase changelog files (i.e.: varchar(255), bigint)
+     * @return The kind of column, {@link #OTHER} if the type is unknown
+     */
+    public static ColumnKind of(String columnType) {
+        if (columnType == null) {
+            return OTHER;
+        }
+        String type = columnType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("int")) {
+            return INT;
+        } else if (type.startsWith("tinyint")) {
+            return TINYINT;
+        } else if (type.startsWith("number")) {
+            return NUMBER;
+        } else if (type.startsWith("bigint")) {
+            return BIGINT;
+        } else if (type.startsWith("boolean")) {
+            return BOOLEAN;
+        } else if (type.startsWith("timestamp") || type.startsWith("datetime")) {
+            return TIMESTAMP;
+        } else if (type.startsWith("date")) {
+            return DATE;
+        } else if (type.startsWith("clob") || type.startsWith("varchar") || type.startsWith("char") || type.startsWith("text") || type.startsWith("uuid")) {
+            return TEXT;
+        } else if (type.startsWith("blob") || type.startsWith("byte")) {
+            return BINARY;
+        }
+        return OTHER;
+    }
+}
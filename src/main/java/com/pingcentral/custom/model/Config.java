@@ -3,10 +3,20 @@ package com.pingcentral.custom.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Config {
 
+    public static final String BULK_LOAD_MODE_OFF = "off";
+    public static final String BULK_LOAD_MODE_CHECKS = "checks";
+    public static final String BULK_LOAD_MODE_INDEXES = "indexes";
+    public static final String WIPE_STRATEGY_DELETE = "delete";
+    public static final String WIPE_STRATEGY_TRUNCATE = "truncate";
+    public static final String DUPLICATE_HANDLING_FAIL = "fail";
+    public static final String DUPLICATE_HANDLING_IGNORE = "ignore";
+    public static final String DUPLICATE_HANDLING_UPDATE = "update";
+
     @JsonProperty("description")
     private String description;
     @JsonIgnore(false)
@@ -14,8 +24,54 @@ public class Config {
     private String changeLogFile;
     @JsonProperty("delete_target_data")
     private boolean deleteTargetData;
+    @JsonProperty("wipe_strategy")
+    private String wipeStrategy;
+    @JsonProperty("duplicate_handling")
+    private String duplicateHandling;
+    @JsonProperty("reject_file")
+    private String rejectFile;
+    @JsonProperty("checkpoint_file")
+    private String checkpointFile;
+    @JsonProperty("watermark_file")
+    private String watermarkFile;
+    @JsonProperty("watermarks")
+    private List<ConfigWatermark> watermarks;
+    @JsonProperty("change_capture")
+    private boolean changeCapture;
+    @JsonProperty("change_capture_lag")
+    private int changeCaptureLag;
+    @JsonProperty("change_capture_max_rounds")
+    private int changeCaptureMaxRounds;
     @JsonProperty("compare_data")
     private boolean compareData;
+    @JsonProperty("batch_size")
+    private int batchSize;
+    @JsonProperty("adaptive_batch_size")
+    private boolean adaptiveBatchSize;
+    @JsonProperty("min_batch_size")
+    private int minBatchSize;
+    @JsonProperty("max_batch_size")
+    private int maxBatchSize;
+    @JsonProperty("max_batch_bytes")
+    private long maxBatchBytes;
+    @JsonProperty("memory_budget")
+    private long memoryBudget;
+    @JsonProperty("spill_threshold")
+    private int spillThreshold;
+    @JsonProperty("commit_every")
+    private int commitEvery;
+    @JsonProperty("queue_depth")
+    private int queueDepth;
+    @JsonProperty("parallel_workers")
+    private int parallelWorkers;
+    @JsonProperty("chunk_size")
+    private long chunkSize;
+    @JsonProperty("large_object_workers")
+    private int largeObjectWorkers;
+    @JsonProperty("consistent_snapshot")
+    private boolean consistentSnapshot;
+    @JsonProperty("bulk_load_mode")
+    private String bulkLoadMode;
     @JsonIgnore(false)
     @JsonProperty("source_database")
     private ConfigDatabase sourceDatabase;
@@ -25,7 +81,27 @@ public class Config {
 
     public Config() {
         deleteTargetData = true;
+        wipeStrategy = WIPE_STRATEGY_DELETE;
+        duplicateHandling = DUPLICATE_HANDLING_FAIL;
         compareData = false;
+        batchSize = 1000;
+        adaptiveBatchSize = false;
+        minBatchSize = 100;
+        maxBatchSize = 10000;
+        maxBatchBytes = 16L * 1024 * 1024;
+        memoryBudget = 0;
+        spillThreshold = 1024 * 1024;
+        commitEvery = 10000;
+        queueDepth = 4;
+        parallelWorkers = 1;
+        chunkSize = 0;
+        largeObjectWorkers = 0;
+        consistentSnapshot = false;
+        bulkLoadMode = BULK_LOAD_MODE_OFF;
+        watermarks = new ArrayList<>();
+        changeCapture = false;
+        changeCaptureLag = 0;
+        changeCaptureMaxRounds = 100;
     }
 
     public String getChangeLogFile() {
@@ -52,6 +128,244 @@ public class Config {
         this.compareData = compareData;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return If the batch size of each table is adjusted between {@link #getMinBatchSize()} and {@link #getMaxBatchSize()}
+     * by the observed throughput, starting at {@link #getBatchSize()}
+     */
+    public boolean isAdaptiveBatchSize() {
+        return adaptiveBatchSize;
+    }
+
+    public void setAdaptiveBatchSize(boolean adaptiveBatchSize) {
+        this.adaptiveBatchSize = adaptiveBatchSize;
+    }
+
+    public int getMinBatchSize() {
+        return minBatchSize;
+    }
+
+    public void setMinBatchSize(int minBatchSize) {
+        this.minBatchSize = minBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return The estimated size of the values of a batch, a batch is cut short once it is reached
+     */
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * @return The bytes of row data all workers may hold in memory at the same time, 0 for no limit
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return The chars of text or bytes of binary values above which a value is spilled to a temporary file
+     */
+    public int getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    public void setSpillThreshold(int spillThreshold) {
+        this.spillThreshold = spillThreshold;
+    }
+
+    public int getCommitEvery() {
+        return commitEvery;
+    }
+
+    public void setCommitEvery(int commitEvery) {
+        this.commitEvery = commitEvery;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getParallelWorkers() {
+        return parallelWorkers;
+    }
+
+    public void setParallelWorkers(int parallelWorkers) {
+        this.parallelWorkers = parallelWorkers;
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(long chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return The number of workers that read and create PostgreSQL large objects ahead of the table writers, 0 to do it
+     * within each table transfer
+     */
+    public int getLargeObjectWorkers() {
+        return largeObjectWorkers;
+    }
+
+    public void setLargeObjectWorkers(int largeObjectWorkers) {
+        this.largeObjectWorkers = largeObjectWorkers;
+    }
+
+    public boolean isConsistentSnapshot() {
+        return consistentSnapshot;
+    }
+
+    public void setConsistentSnapshot(boolean consistentSnapshot) {
+        this.consistentSnapshot = consistentSnapshot;
+    }
+
+    /**
+     * @return How the target is prepared for loading: {@link #BULK_LOAD_MODE_OFF}, {@link #BULK_LOAD_MODE_CHECKS} or
+     * {@link #BULK_LOAD_MODE_INDEXES}
+     */
+    public String getBulkLoadMode() {
+        return bulkLoadMode;
+    }
+
+    public void setBulkLoadMode(String bulkLoadMode) {
+        this.bulkLoadMode = bulkLoadMode;
+    }
+
+    /**
+     * @return How the data of the target is removed if {@link #isDeleteTargetData()}: {@link #WIPE_STRATEGY_DELETE} or
+     * {@link #WIPE_STRATEGY_TRUNCATE}
+     */
+    public String getWipeStrategy() {
+        return wipeStrategy;
+    }
+
+    public void setWipeStrategy(String wipeStrategy) {
+        this.wipeStrategy = wipeStrategy;
+    }
+
+    /**
+     * @return How rows are handled whose key exists in the target already: {@link #DUPLICATE_HANDLING_FAIL} rejects them,
+     * see {@link #getRejectFile()}, {@link #DUPLICATE_HANDLING_IGNORE} skips and {@link #DUPLICATE_HANDLING_UPDATE} updates
+     * them
+     */
+    public String getDuplicateHandling() {
+        return duplicateHandling;
+    }
+
+    public void setDuplicateHandling(String duplicateHandling) {
+        this.duplicateHandling = duplicateHandling;
+    }
+
+    /**
+     * @return The file rows are appended to that the target rejected, null if they are only logged
+     */
+    public String getRejectFile() {
+        return rejectFile;
+    }
+
+    public void setRejectFile(String rejectFile) {
+        this.rejectFile = rejectFile;
+    }
+
+    /**
+     * @return The file the progress of a transfer is recorded in, so that resume-transfer can continue it. Null to not
+     * record it
+     */
+    public String getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public void setCheckpointFile(String checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * @return The file sync-data keeps the highest copied watermark value of each table in, see {@link #getWatermarks()}
+     */
+    public String getWatermarkFile() {
+        return watermarkFile;
+    }
+
+    public void setWatermarkFile(String watermarkFile) {
+        this.watermarkFile = watermarkFile;
+    }
+
+    /**
+     * @return The watermark column of each table that sync-data copies incrementally. Tables without one are copied
+     * completely
+     */
+    public List<ConfigWatermark> getWatermarks() {
+        return watermarks;
+    }
+
+    public void setWatermarks(List<ConfigWatermark> watermarks) {
+        this.watermarks = watermarks == null ? new ArrayList<>() : watermarks;
+    }
+
+    /**
+     * @return true if transfer-data captures the changes applied to the source while it copies the data and replays them
+     * on the target afterwards
+     */
+    public boolean isChangeCapture() {
+        return changeCapture;
+    }
+
+    public void setChangeCapture(boolean changeCapture) {
+        this.changeCapture = changeCapture;
+    }
+
+    /**
+     * @return The number of changes a replay round may find at most to be the last round, see {@link #isChangeCapture()}
+     */
+    public int getChangeCaptureLag() {
+        return changeCaptureLag;
+    }
+
+    public void setChangeCaptureLag(int changeCaptureLag) {
+        this.changeCaptureLag = changeCaptureLag;
+    }
+
+    /**
+     * @return The number of replay rounds after which the remaining changes are given up, see {@link #isChangeCapture()}
+     */
+    public int getChangeCaptureMaxRounds() {
+        return changeCaptureMaxRounds;
+    }
+
+    public void setChangeCaptureMaxRounds(int changeCaptureMaxRounds) {
+        this.changeCaptureMaxRounds = changeCaptureMaxRounds;
+    }
+
     public ConfigDatabase getSourceDatabase() {
         return sourceDatabase;
     }
@@ -0,0 +1,76 @@
+package com.pingcentral.custom.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConfigConnectionPool {
+
+    @JsonProperty("min_size")
+    private int minSize;
+    @JsonProperty("max_size")
+    private int maxSize;
+    @JsonProperty("timeout_seconds")
+    private int timeoutSeconds;
+    @JsonProperty("validation_query")
+    private String validationQuery;
+    @JsonProperty("init_sql")
+    private List<String> initSql;
+
+    public ConfigConnectionPool() {
+        this.minSize = 1;
+        this.maxSize = 0;
+        this.timeoutSeconds = 30;
+        this.initSql = new ArrayList<>();
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+
+    /**
+     * @return The maximum number of open connections, 0 to size the pool by the number of parallel workers
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    /**
+     * @return The query that checks an idle connection before it is handed out, null to use the check of the JDBC driver
+     */
+    public String getValidationQuery() {
+        return validationQuery;
+    }
+
+    public void setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+    }
+
+    /**
+     * @return The statements that are executed once for each new connection, i.e. to set up the session
+     */
+    public List<String> getInitSql() {
+        return initSql;
+    }
+
+    public void setInitSql(List<String> initSql) {
+        this.initSql = initSql;
+    }
+}
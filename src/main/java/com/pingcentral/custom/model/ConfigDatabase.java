@@ -6,6 +6,14 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.*;
 
 public class ConfigDatabase {
+
+    public static final String LOAD_METHOD_INSERT = "insert";
+    public static final String LOAD_METHOD_COPY = "copy";
+    public static final String LOAD_METHOD_LOAD_DATA = "load_data";
+    public static final String LOAD_METHOD_MULTI_ROW = "multi_row";
+    public static final String EXTRACT_METHOD_JDBC = "jdbc";
+    public static final String EXTRACT_METHOD_COPY = "copy";
+
     @JsonIgnore(false)
     @JsonProperty("name")
     private String name;
@@ -23,6 +31,14 @@ public class ConfigDatabase {
     @JsonIgnore(false)
     @JsonProperty("password")
     private String password;
+    @JsonProperty("fetch_size")
+    private int fetchSize;
+    @JsonProperty("extract_method")
+    private String extractMethod;
+    @JsonProperty("load_method")
+    private String loadMethod;
+    @JsonProperty("connection_pool")
+    private ConfigConnectionPool connectionPool;
     @JsonProperty("translate_to_postgres_large_clob_object")
     private List<PostgresLargeObjectTranslation> translateToPostgresClobObjects;
     @JsonProperty("translate_from_postgres_large_clob_object")
@@ -32,6 +48,10 @@ public class ConfigDatabase {
         this.translateToPostgresClobObjects = new ArrayList<>();
         this.translateFromPostgresClobObjects = new ArrayList<>();
         this.postgresType = false;
+        this.fetchSize = 1000;
+        this.extractMethod = EXTRACT_METHOD_JDBC;
+        this.loadMethod = LOAD_METHOD_INSERT;
+        this.connectionPool = new ConfigConnectionPool();
     }
 
     public String getDbmsType() {
@@ -42,6 +62,11 @@ public class ConfigDatabase {
         this.dbmsType = dbmsType;
     }
 
+    @JsonIgnore
+    public Dialect getDialect() {
+        return Dialect.of(dbmsType);
+    }
+
     public String getJdbcUrl() {
         return jdbcUrl;
     }
@@ -74,6 +99,46 @@ public class ConfigDatabase {
         this.postgresType = postgresType;
     }
 
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @return How rows are read from this database as a source: {@link #EXTRACT_METHOD_JDBC} or, for PostgreSQL,
+     * {@link #EXTRACT_METHOD_COPY}
+     */
+    public String getExtractMethod() {
+        return extractMethod;
+    }
+
+    public void setExtractMethod(String extractMethod) {
+        this.extractMethod = extractMethod;
+    }
+
+    /**
+     * @return How rows are written into this database as a target: {@link #LOAD_METHOD_INSERT}, {@link #LOAD_METHOD_MULTI_ROW}, for PostgreSQL
+     * {@link #LOAD_METHOD_COPY} or for MySQL/MariaDB {@link #LOAD_METHOD_LOAD_DATA}
+     */
+    public String getLoadMethod() {
+        return loadMethod;
+    }
+
+    public void setLoadMethod(String loadMethod) {
+        this.loadMethod = loadMethod;
+    }
+
+    public ConfigConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public void setConnectionPool(ConfigConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
     public List<PostgresLargeObjectTranslation> getTranslateToPostgresClobObjects() {
         return translateToPostgresClobObjects;
     }
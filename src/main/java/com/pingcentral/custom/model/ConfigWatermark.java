@@ -0,0 +1,31 @@
+package com.pingcentral.custom.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The column of a source table whose values grow with every insert and update (i.e. updated_at or a monotonic id). An
+ * incremental sync only copies the rows whose value is above the highest one the previous sync copied
+ */
+public class ConfigWatermark {
+
+    @JsonProperty("table")
+    private String table;
+    @JsonProperty("column")
+    private String column;
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public void setColumn(String column) {
+        this.column = column;
+    }
+}
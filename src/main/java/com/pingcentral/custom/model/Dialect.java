@@ -0,0 +1,89 @@
+package com.pingcentral.custom.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * The database system behind a {@link ConfigDatabase}, derived from its dbms_type
+ */
+public enum Dialect {
+
+    POSTGRESQL,
+    MYSQL,
+    H2,
+    OTHER;
+
+    /**
+     * @param dbmsType The dbms_type of a configured database
+     * @return The dialect, {@link #OTHER} if the type is unknown
+     */
+    public static Dialect of(String dbmsType) {
+        String type = dbmsType == null ? "" : dbmsType.toLowerCase(Locale.ROOT);
+        if (type.startsWith("post")) {
+            return POSTGRESQL;
+        } else if (type.startsWith("mysql") || type.startsWith("maria")) {
+            return MYSQL;
+        } else if (type.startsWith("h2")) {
+            return H2;
+        }
+        return OTHER;
+    }
+
+    /**
+     * PostgreSQL and MySQL/MariaDB encode the number of parameters of a statement as a 16 bit value. Unknown databases get
+     * a conservative limit
+     *
+     * @return The maximum number of parameters of a prepared statement
+     */
+    public int getMaxBindParameters() {
+        return this == OTHER ? 2000 : 65535;
+    }
+
+    /**
+     * PostgreSQL only uses a cursor (and with that the fetch size) if the statement runs within a transaction
+     *
+     * @return true if reading with a cursor requires autocommit to be turned off
+     */
+    public boolean requiresTransactionForStreaming() {
+        return this == POSTGRESQL;
+    }
+
+    /**
+     * Creates a forward-only, read-only statement that fetches rows in chunks instead of buffering the complete result.
+     * The MariaDB driver streams a result as soon as a fetch size is set, PostgreSQL additionally requires
+     * {@link #requiresTransactionForStreaming()}
+     *
+     * @param connection The connection
+     * @param fetchSize  The number of rows to fetch per round-trip, 0 to use the driver default
+     * @return The statement
+     * @throws SQLException
+     */
+    public Statement createStreamingStatement(Connection connection, int fetchSize) throws SQLException {
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (fetchSize > 0) {
+            statement.setFetchSize(fetchSize);
+        }
+        return statement;
+    }
+
+    /**
+     * Same as {@link #createStreamingStatement(Connection, int)} for a prepared statement
+     *
+     * @param connection The connection
+     * @param sql        The select statement
+     * @param fetchSize  The number of rows to fetch per round-trip, 0 to use the driver default
+     * @return The statement
+     * @throws SQLException
+     */
+    public PreparedStatement prepareStreamingStatement(Connection connection, String sql, int fetchSize) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        if (fetchSize > 0) {
+            statement.setFetchSize(fetchSize);
+        }
+        return statement;
+    }
+}
@@ -4,12 +4,15 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class LiquibaseChangesAsJson {
     @JsonProperty("databases")
     Map<String, Map<String, List<TableColumnTypeSelect>>> databases;
     @JsonProperty("tables_indexes")
     Map<String, Integer> tableIndexes;
+    @JsonProperty("table_dependencies")
+    Map<String, Set<String>> tableDependencies;
 
     public Map<String, Map<String, List<TableColumnTypeSelect>>> getDatabases() {
         return databases;
@@ -26,4 +29,12 @@ public class LiquibaseChangesAsJson {
     public void setTableIndexes(Map<String, Integer> tableIndexes) {
         this.tableIndexes = tableIndexes;
     }
+
+    public Map<String, Set<String>> getTableDependencies() {
+        return tableDependencies;
+    }
+
+    public void setTableDependencies(Map<String, Set<String>> tableDependencies) {
+        this.tableDependencies = tableDependencies;
+    }
 }
@@ -1,5 +1,6 @@
 package com.pingcentral.custom.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
@@ -15,11 +16,24 @@ public class TableColumnTypeSelect {
     private String selectStmt;
     @JsonProperty("insert_stmt")
     private String insertStmt;
+    @JsonProperty("insert_ignore_stmt")
+    private String insertIgnoreStmt;
+    @JsonProperty("upsert_stmt")
+    private String upsertStmt;
+    @JsonProperty("max_rows_per_insert")
+    private int maxRowsPerInsert;
     @JsonProperty("delete_stmt")
     private String deleteStmt;
+    @JsonProperty("primary_key_columns")
+    private List<String> primaryKeyColumns;
+    @JsonProperty("key_bounds_stmt")
+    private String keyBoundsStmt;
+    @JsonProperty("chunk_select_stmt")
+    private String chunkSelectStmt;
 
     public TableColumnTypeSelect() {
         this.columnTypes = new ArrayList<>();
+        this.primaryKeyColumns = new ArrayList<>();
     }
 
     public String getTableName() {
@@ -57,6 +71,89 @@ public class TableColumnTypeSelect {
         this.insertStmt = insertStmt;
     }
 
+    /**
+     * @return The number of rows a multi row insert statement can hold without exceeding the parameter limit of the
+     * database, see {@link #getMultiRowInsertStmt(int)}. 0 if unknown
+     */
+    public int getMaxRowsPerInsert() {
+        return maxRowsPerInsert;
+    }
+
+    public void setMaxRowsPerInsert(int maxRowsPerInsert) {
+        this.maxRowsPerInsert = maxRowsPerInsert;
+    }
+
+    /**
+     * @return The insert statement that skips rows whose key exists already, i.e. INSERT ... ON CONFLICT DO NOTHING. Null
+     * if the database of the table does not support it or the primary key is unknown
+     */
+    public String getInsertIgnoreStmt() {
+        return insertIgnoreStmt;
+    }
+
+    public void setInsertIgnoreStmt(String insertIgnoreStmt) {
+        this.insertIgnoreStmt = insertIgnoreStmt;
+    }
+
+    /**
+     * @return The insert statement that updates rows whose key exists already, i.e. INSERT ... ON CONFLICT DO UPDATE. Null
+     * if the database of the table does not support it or the primary key is unknown
+     */
+    public String getUpsertStmt() {
+        return upsertStmt;
+    }
+
+    public void setUpsertStmt(String upsertStmt) {
+        this.upsertStmt = upsertStmt;
+    }
+
+    /**
+     * @param duplicateHandling One of {@link Config#DUPLICATE_HANDLING_FAIL}, {@link Config#DUPLICATE_HANDLING_IGNORE} and
+     *                          {@link Config#DUPLICATE_HANDLING_UPDATE}
+     * @return The insert statement that handles existing keys as configured, null if the table has none
+     */
+    @JsonIgnore
+    public String getInsertStmt(String duplicateHandling) {
+        if (Config.DUPLICATE_HANDLING_IGNORE.equals(duplicateHandling)) {
+            return insertIgnoreStmt;
+        }
+        if (Config.DUPLICATE_HANDLING_UPDATE.equals(duplicateHandling)) {
+            return upsertStmt;
+        }
+        return insertStmt;
+    }
+
+    /**
+     * @param rows The number of rows
+     * @return The insert statement with the given number of VALUES groups, i.e. INSERT INTO t(a,b) VALUES (?,?),(?,?)
+     */
+    @JsonIgnore
+    public String getMultiRowInsertStmt(int rows) {
+        return getMultiRowStmt(insertStmt, rows);
+    }
+
+    /**
+     * @param stmt One of the insert statements of this table
+     * @param rows The number of rows
+     * @return The statement with its first VALUES group repeated, anything that follows the group is kept, i.e.
+     * INSERT INTO t(a,b) VALUES (?,?),(?,?) ON CONFLICT DO NOTHING
+     */
+    @JsonIgnore
+    public String getMultiRowStmt(String stmt, int rows) {
+        int start = stmt.indexOf("VALUES (") + "VALUES ".length();
+        int end = start;
+        for (int depth = 0; end == start || depth > 0; end++) {
+            depth += stmt.charAt(end) == '(' ? 1 : stmt.charAt(end) == ')' ? -1 : 0;
+        }
+        String values = stmt.substring(start, end);
+        StringBuilder sb = new StringBuilder(stmt.length() + (values.length() + 1) * rows);
+        sb.append(stmt, 0, end);
+        for (int i = 1; i < rows; i++) {
+            sb.append(',').append(values);
+        }
+        return sb.append(stmt, end, stmt.length()).toString();
+    }
+
     public String getDeleteStmt() {
         return deleteStmt;
     }
@@ -65,6 +162,40 @@ public class TableColumnTypeSelect {
         this.deleteStmt = deleteStmt;
     }
 
+    public List<String> getPrimaryKeyColumns() {
+        return primaryKeyColumns;
+    }
+
+    public void setPrimaryKeyColumns(List<String> primaryKeyColumns) {
+        this.primaryKeyColumns = primaryKeyColumns == null ? new ArrayList<>() : primaryKeyColumns;
+    }
+
+    public void addPrimaryKeyColumns(List<String> primaryKeyColumns) {
+        this.primaryKeyColumns.addAll(primaryKeyColumns);
+    }
+
+    /**
+     * @return A statement selecting the lowest and highest primary key value, null if the table cannot be read in chunks
+     */
+    public String getKeyBoundsStmt() {
+        return keyBoundsStmt;
+    }
+
+    public void setKeyBoundsStmt(String keyBoundsStmt) {
+        this.keyBoundsStmt = keyBoundsStmt;
+    }
+
+    /**
+     * @return A prepared statement selecting all rows within a range of the primary key (lower bound inclusive, upper bound exclusive), ordered by the key. Null if the table cannot be read in chunks
+     */
+    public String getChunkSelectStmt() {
+        return chunkSelectStmt;
+    }
+
+    public void setChunkSelectStmt(String chunkSelectStmt) {
+        this.chunkSelectStmt = chunkSelectStmt;
+    }
+
     public void dropColumn(String columnName) {
         for(ColumnType columnType : columnTypes) {
             if(columnType.getColumnName().equalsIgnoreCase(columnName)) {
@@ -72,6 +203,7 @@ public class TableColumnTypeSelect {
                 break;
             }
         }
+        primaryKeyColumns.removeIf(next -> next.equalsIgnoreCase(columnName));
     }
 
     public void setColumnTypes(List<ColumnType> columnTypes) {
@@ -85,6 +217,7 @@ public class TableColumnTypeSelect {
                 columnType.setColumnType(dataType);
             }
         }
+        primaryKeyColumns.replaceAll(next -> next.equalsIgnoreCase(oldColumnName) ? newColumnName : next);
     }
 
     public void modifyDataType(String columnName, String dataType) {
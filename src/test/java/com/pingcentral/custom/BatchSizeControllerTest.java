@@ -0,0 +1,77 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchSizeControllerTest {
+
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testFixedSizeWithinByteBudget() {
+        BatchSizeController controller = new BatchSizeController("t", new Config(), 100_000);
+        assertEquals(1000, controller.nextBatchSize());
+        // 1000 bytes per row leave room for 100 rows
+        controller.record(1000, 1_000_000, 100 * MILLI);
+        assertEquals(100, controller.nextBatchSize());
+        assertEquals(1000, controller.getBatchSize());
+    }
+
+    @Test
+    public void testGrowsWhileThroughputImproves() {
+        BatchSizeController controller = new BatchSizeController("t", adaptive(), Long.MAX_VALUE);
+        recordBatches(controller, 10 * MILLI);
+        assertEquals(1500, controller.getBatchSize());
+        // the same time per batch for more rows is a better throughput
+        recordBatches(controller, 10 * MILLI);
+        assertEquals(2250, controller.getBatchSize());
+        // the throughput drops, the size turns around
+        recordBatches(controller, 100 * MILLI);
+        assertEquals(1500, controller.getBatchSize());
+    }
+
+    @Test
+    public void testShrinksSlowBatchesWithinBounds() {
+        BatchSizeController controller = new BatchSizeController("t", adaptive(), Long.MAX_VALUE);
+        for (int i = 0; i < 10; i++) {
+            recordBatches(controller, BatchSizeController.TARGET_BATCH_NANOS + MILLI);
+        }
+        assertEquals(500, controller.getBatchSize());
+        assertTrue(controller.nextBatchSize() >= 500);
+    }
+
+    private Config adaptive() {
+        Config config = new Config();
+        config.setAdaptiveBatchSize(true);
+        config.setMinBatchSize(500);
+        config.setMaxBatchSize(5000);
+        return config;
+    }
+
+    private void recordBatches(BatchSizeController controller, long nanos) {
+        for (int i = 0; i < 3; i++) {
+            int rows = controller.nextBatchSize();
+            controller.record(rows, rows * 100L, nanos);
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Config config = DatabaseManagerTest.config("{}");
+        assertFalse(config.isAdaptiveBatchSize());
+        assertEquals(100, config.getMinBatchSize());
+        assertEquals(10000, config.getMaxBatchSize());
+        assertEquals(16L * 1024 * 1024, config.getMaxBatchBytes());
+        config = DatabaseManagerTest.config("{'adaptive_batch_size': true, 'min_batch_size': 200, 'max_batch_size': 4000, 'max_batch_bytes': 8388608}");
+        assertTrue(config.isAdaptiveBatchSize());
+        assertEquals(200, config.getMinBatchSize());
+        assertEquals(4000, config.getMaxBatchSize());
+        assertEquals(8388608, config.getMaxBatchBytes());
+    }
+}
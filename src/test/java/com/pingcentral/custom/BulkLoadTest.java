@@ -0,0 +1,70 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class BulkLoadTest {
+
+    private Connection target;
+
+    @Before
+    public void setUp() throws Exception {
+        target = DriverManager.getConnection("jdbc:h2:mem:bulk_target;DB_CLOSE_DELAY=-1", "sa", "");
+        execute(target, "create table application (id bigint primary key, name varchar(255))");
+        execute(target, "create table application_config (id bigint primary key, application_id bigint references application(id))");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(target, "drop all objects");
+        target.close();
+    }
+
+    @Test
+    public void testChecksAreTurnedOffWhileLoading() throws Exception {
+        Config config = DatabaseManagerTest.config("{'bulk_load_mode': 'checks', 'target_databases': [{'dbms_type': 'h2t'}]}");
+        BulkLoad bulkLoad = new BulkLoad(config, target, Arrays.asList("application", "application_config"));
+        List<String> warnings = new ArrayList<>();
+        Handler handler = TableTransferTest.handler(warnings, "Table: ");
+        Logger logger = Logger.getLogger(BulkLoad.class.getName());
+        logger.addHandler(handler);
+        try {
+            bulkLoad.prepare();
+            // written before the application it references, and one that references no application at all
+            execute(target, "insert into application_config values (1, 1), (2, 2)");
+            execute(target, "insert into application values (1, 'one')");
+            bulkLoad.finish(null);
+        } finally {
+            logger.removeHandler(handler);
+        }
+        assertEquals(1, warnings.size());
+        assertTrue(warnings.get(0), warnings.get(0).startsWith("Table: application_config, 1 rows violate foreign key"));
+        assertThrows(SQLException.class, () -> execute(target, "insert into application_config values (3, 3)"));
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(Config.BULK_LOAD_MODE_OFF, DatabaseManagerTest.config("{}").getBulkLoadMode());
+        assertEquals(Config.BULK_LOAD_MODE_INDEXES, DatabaseManagerTest.config("{'bulk_load_mode': 'indexes'}").getBulkLoadMode());
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+}
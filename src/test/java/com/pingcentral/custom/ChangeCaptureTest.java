@@ -0,0 +1,217 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class ChangeCaptureTest {
+
+    private static final String SCHEMA = "create table application (id bigint primary key, name varchar(255), enabled boolean);"
+            + "create table application_config (id bigint primary key, application_id bigint references application(id), config clob);"
+            + "create table audit_event (event_id bigint, application_id bigint, created timestamp, tag_name varchar(64));"
+            + "create table tag (tag_name varchar(64) primary key)";
+
+    private Connection source;
+    private Connection target;
+
+    @Before
+    public void setUp() throws Exception {
+        source = DriverManager.getConnection("jdbc:h2:mem:capture_source;DB_CLOSE_DELAY=-1", "sa", "");
+        target = DriverManager.getConnection("jdbc:h2:mem:capture_target;DB_CLOSE_DELAY=-1", "sa", "");
+        execute(source, SCHEMA);
+        execute(target, SCHEMA);
+        execute(source, "insert into application values (1, 'one', true), (2, 'two', false), (3, 'three', true);"
+                + "insert into application_config values (10, 1, 'a'), (20, 2, 'b');"
+                + "insert into tag values ('red'), ('blue')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(source, "drop all objects");
+        execute(target, "drop all objects");
+        source.close();
+        target.close();
+    }
+
+    @Test
+    public void testReplay() throws Exception {
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-07.json");
+        dm.processLiquibaseFiles();
+        dm.startChangeCapture();
+        try {
+            assertEquals(3, count(source, "select count(distinct trigger_name) from information_schema.triggers where trigger_name like 'DBMERGER_CAPTURE_%'"));
+            // changed before the copy reads the rows, replaying them again does no harm
+            execute(source, "update application set name = 'uno' where id = 1");
+            dm.initDb(true, true);
+            dm.deleteDataFromTargetDbms();
+            dm.transferFromDbToDb();
+            // changed while the copy runs
+            execute(source, "insert into application values (4, 'four', false);"
+                    + "update application set enabled = false where id = 3;"
+                    + "delete from application_config where id = 20;"
+                    + "delete from application where id = 2;"
+                    + "insert into application_config values (30, 4, 'c');"
+                    + "update tag set tag_name = 'green' where tag_name = 'red';"
+                    + "insert into audit_event values (1, 1, null, null)");
+            dm.replayChanges();
+            dm.closeDb(true, true);
+        } finally {
+            dm.stopChangeCapture();
+        }
+        assertRows("select id, name, enabled from application order by id");
+        assertRows("select id, application_id, config from application_config order by id");
+        assertRows("select tag_name from tag order by tag_name");
+        // no primary key, only copied
+        assertEquals(0, count(target, "select count(*) from audit_event"));
+        assertEquals(0, count(source, "select count(distinct trigger_name) from information_schema.triggers where trigger_name like 'DBMERGER_%'"));
+        assertEquals(0, count(source, "select count(*) from information_schema.tables where table_name like 'DBMERGER_%'"));
+    }
+
+    @Test
+    public void testCompareAfterReplayWithSnapshot() throws Exception {
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-07.json");
+        dm.getConfig().setConsistentSnapshot(true);
+        dm.getConfig().setCompareData(true);
+        dm.processLiquibaseFiles();
+        List<String> differences = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().startsWith("table: ")) {
+                    differences.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+                // do nothing
+            }
+
+            @Override
+            public void close() throws SecurityException {
+                // do nothing
+            }
+        };
+        Logger logger = Logger.getLogger(DatabaseManager.class.getName());
+        logger.addHandler(handler);
+        dm.startChangeCapture();
+        try {
+            dm.initDb(true, true);
+            dm.deleteDataFromTargetDbms();
+            dm.transferFromDbToDb();
+            execute(source, "update application set name = 'dos' where id = 2");
+            dm.replayChanges();
+            dm.compareFromDbToDb();
+            dm.closeDb(true, true);
+        } finally {
+            dm.stopChangeCapture();
+            logger.removeHandler(handler);
+        }
+        assertEquals("dos", rows(target, "select name from application where id = 2").trim());
+        assertEquals(Collections.emptyList(), differences);
+    }
+
+    @Test
+    public void testReplayStopsAfterMaxRounds() throws Exception {
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-07.json");
+        dm.getConfig().setChangeCaptureMaxRounds(1);
+        dm.processLiquibaseFiles();
+        dm.startChangeCapture();
+        try {
+            dm.initDb(true, true);
+            dm.deleteDataFromTargetDbms();
+            dm.transferFromDbToDb();
+            // a round replays commit_every (2) changes per table, the others remain captured
+            execute(source, "insert into application select x, 'application ' || x, true from system_range(4, 8)");
+            dm.replayChanges();
+            assertEquals(3, count(source, "select count(*) from dbmerger_changes_1"));
+            assertEquals(5, count(target, "select count(*) from application"));
+            dm.closeDb(true, true);
+        } finally {
+            dm.stopChangeCapture();
+        }
+    }
+
+    @Test
+    public void testReplayFailureKeepsChanges() throws Exception {
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-07.json");
+        dm.processLiquibaseFiles();
+        dm.startChangeCapture();
+        try {
+            dm.initDb(true, true);
+            dm.deleteDataFromTargetDbms();
+            dm.transferFromDbToDb();
+            execute(source, "insert into tag values ('green')");
+            execute(target, "drop table tag");
+            try {
+                dm.replayChanges();
+                fail("The replay must fail without the target table");
+            } catch (SQLException e) {
+                assertTrue(e.getMessage().startsWith("Replaying the captured changes failed"));
+            }
+            dm.closeDb(true, true);
+        } finally {
+            dm.stopChangeCapture();
+        }
+        assertEquals(3, count(source, "select count(distinct trigger_name) from information_schema.triggers where trigger_name like 'DBMERGER_CAPTURE_%'"));
+        assertEquals(1, count(source, "select count(*) from dbmerger_changes_4"));
+    }
+
+    private void assertRows(String query) throws Exception {
+        assertEquals(rows(source, query), rows(target, query));
+    }
+
+    private static String rows(Connection connection, String query) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            while (rs.next()) {
+                for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                    sb.append(rs.getString(i)).append(i < rs.getMetaData().getColumnCount() ? "," : "\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long count(Connection connection, String query) throws Exception {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            for (String next : sql.split(";")) {
+                stmt.execute(next);
+            }
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Config config = DatabaseManagerTest.config("{}");
+        assertFalse(config.isChangeCapture());
+        assertEquals(0, config.getChangeCaptureLag());
+        assertEquals(100, config.getChangeCaptureMaxRounds());
+        config = DatabaseManagerTest.config("{'change_capture': true, 'change_capture_lag': 50, 'change_capture_max_rounds': 10}");
+        assertTrue(config.isChangeCapture());
+        assertEquals(50, config.getChangeCaptureLag());
+        assertEquals(10, config.getChangeCaptureMaxRounds());
+    }
+}
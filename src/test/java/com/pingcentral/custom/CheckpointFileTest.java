@@ -0,0 +1,81 @@
+package com.pingcentral.custom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CheckpointFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() throws Exception {
+        File file = new File(folder.getRoot(), "checkpoint.tsv");
+        try (CheckpointFile checkpoints = new CheckpointFile(file.getPath(), false)) {
+            assertTrue(checkpoints.isEnabled());
+            checkpoints.done("Tag");
+            checkpoints.started("Note");
+            checkpoints.committed("Item", 1, 50);
+            checkpoints.committed("Item", 100, 150);
+            checkpoints.committed("Item", 100, 200);
+            checkpoints.committed("Item", 300, 300);
+            assertTrue(checkpoints.isDone("tag"));
+        }
+        Files.write(file.toPath(), "range\titem\t2".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        try (CheckpointFile checkpoints = new CheckpointFile(file.getPath(), true)) {
+            assertTrue(checkpoints.isDone("TAG"));
+            assertFalse(checkpoints.isDone("item"));
+            assertTrue(checkpoints.isStarted("note"));
+            assertTrue(checkpoints.hasRanges("item"));
+            assertFalse(checkpoints.hasRanges("note"));
+            assertRanges(checkpoints.remaining("item", new long[]{1, 300}), 50, 100, 200, 300);
+            assertRanges(checkpoints.remaining("item", new long[]{120, 180}));
+            assertRanges(checkpoints.remaining("item", new long[]{40, 120}), 50, 100);
+            assertRanges(checkpoints.remaining("other", new long[]{1, 10}), 1, 10);
+            checkpoints.committed("item", 50, 100);
+            assertRanges(checkpoints.remaining("item", new long[]{1, 300}), 200, 300);
+        }
+        try (CheckpointFile checkpoints = new CheckpointFile(file.getPath(), true)) {
+            assertRanges(checkpoints.remaining("item", new long[]{1, 300}), 200, 300);
+        }
+        try (CheckpointFile checkpoints = new CheckpointFile(file.getPath(), false)) {
+            assertFalse(checkpoints.isDone("tag"));
+        }
+        assertEquals(0, file.length());
+    }
+
+    @Test
+    public void testWithoutFile() throws Exception {
+        try (CheckpointFile checkpoints = new CheckpointFile(null, false)) {
+            assertFalse(checkpoints.isEnabled());
+            checkpoints.done("tag");
+            checkpoints.committed("item", 1, 50);
+            assertFalse(checkpoints.isDone("tag"));
+            assertRanges(checkpoints.remaining("item", new long[]{1, 100}), 1, 100);
+        }
+        assertThrows(IOException.class, () -> new CheckpointFile(new File(folder.getRoot(), "missing.tsv").getPath(), true));
+    }
+
+    private static void assertRanges(List<long[]> ranges, long... bounds) {
+        assertEquals(bounds.length / 2, ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            assertArrayEquals(new long[]{bounds[2 * i], bounds[2 * i + 1]}, ranges.get(i));
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertNull(DatabaseManagerTest.config("{}").getCheckpointFile());
+        assertEquals("./checkpoint.tsv", DatabaseManagerTest.config("{'checkpoint_file': './checkpoint.tsv'}").getCheckpointFile());
+    }
+}
@@ -0,0 +1,172 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigConnectionPool;
+import com.pingcentral.custom.model.ConfigDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ConnectionPoolTest {
+
+    private Connection connection;
+    private ConfigDatabase database;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1", "sa", "");
+        execute(connection, "create table application (id bigint primary key)");
+        database = new ConfigDatabase();
+        database.setName("pool test");
+        database.setDbmsType("h2");
+        database.setJdbcUrl("jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1");
+        database.setUsername("sa");
+        database.setPassword("");
+        database.getConnectionPool().setTimeoutSeconds(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(connection, "drop all objects");
+        connection.close();
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(database, 1)) {
+            Connection first = pool.acquire();
+            long started = System.nanoTime();
+            SQLException e = assertThrows(SQLException.class, pool::acquire);
+            assertEquals("No connection to pool test available after 1 seconds", e.getMessage());
+            assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(900));
+            pool.release(first);
+        }
+    }
+
+    @Test
+    public void testAcquireWaitsForRelease() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(database, 1)) {
+            Connection first = pool.acquire();
+            Thread releasing = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                pool.release(first);
+            });
+            releasing.start();
+            assertSame(first, pool.acquire());
+            releasing.join();
+        }
+    }
+
+    @Test
+    public void testInitSql() throws Exception {
+        execute(connection, "create schema pooled");
+        database.getConnectionPool().setMinSize(0);
+        database.getConnectionPool().setInitSql(Arrays.asList("SET SCHEMA pooled", "SET QUERY_TIMEOUT 5000"));
+        try (ConnectionPool pool = new ConnectionPool(database, 2)) {
+            Connection first = pool.acquire();
+            Connection second = pool.acquire();
+            assertEquals("POOLED", first.getSchema());
+            assertEquals("POOLED", second.getSchema());
+            pool.release(first);
+            pool.release(second);
+        }
+        database.getConnectionPool().setInitSql(Arrays.asList("SET SCHEMA missing"));
+        try (ConnectionPool pool = new ConnectionPool(database, 1)) {
+            assertThrows(SQLException.class, pool::acquire);
+            // the failed connection does not count as open
+            SQLException e = assertThrows(SQLException.class, pool::acquire);
+            assertFalse(e.getMessage().startsWith("No connection to pool test available"));
+        }
+    }
+
+    @Test
+    public void testValidation() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(database, 1)) {
+            // the check of the JDBC driver
+            Connection first = pool.acquire();
+            pool.release(first);
+            first.close();
+            Connection second = pool.acquire();
+            assertNotSame(first, second);
+            assertFalse(second.isClosed());
+            pool.release(second);
+        }
+        execute(connection, "create table pool_validity (id int)");
+        database.getConnectionPool().setValidationQuery("SELECT COUNT(*) FROM pool_validity");
+        try (ConnectionPool pool = new ConnectionPool(database, 1)) {
+            Connection first = pool.acquire();
+            pool.release(first);
+            assertSame(first, pool.acquire());
+            pool.release(first);
+            execute(connection, "drop table pool_validity");
+            Connection second = pool.acquire();
+            assertNotSame(first, second);
+            assertTrue(first.isClosed());
+            pool.release(second);
+        }
+    }
+
+    @Test
+    public void testReleaseRollsBack() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool(database, 1)) {
+            Connection first = pool.acquire();
+            first.setAutoCommit(false);
+            execute(first, "insert into application values (1)");
+            pool.release(first);
+            assertEquals(0, count(connection, "select count(*) from application"));
+            Connection second = pool.acquire();
+            assertSame(first, second);
+            assertTrue(second.getAutoCommit());
+            // a connection that was closed while in use is replaced
+            second.close();
+            pool.release(second);
+            Connection third = pool.acquire();
+            assertNotSame(second, third);
+            pool.release(third);
+        }
+    }
+
+    private static long count(Connection connection, String query) throws Exception {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        ConfigConnectionPool pool = DatabaseManagerTest.config("{'source_database': {}}").getSourceDatabase().getConnectionPool();
+        assertEquals(1, pool.getMinSize());
+        assertEquals(0, pool.getMaxSize());
+        assertEquals(30, pool.getTimeoutSeconds());
+        assertNull(pool.getValidationQuery());
+        assertTrue(pool.getInitSql().isEmpty());
+        pool = DatabaseManagerTest.config("{'target_databases': [{'connection_pool': {'min_size': 2, 'max_size': 8, 'timeout_seconds': 5, "
+                + "'validation_query': 'SELECT 1', 'init_sql': ['SET statement_timeout = 0']}}]}").getTargetDatabases().get(0).getConnectionPool();
+        assertEquals(2, pool.getMinSize());
+        assertEquals(8, pool.getMaxSize());
+        assertEquals(5, pool.getTimeoutSeconds());
+        assertEquals("SELECT 1", pool.getValidationQuery());
+        assertEquals(Collections.singletonList("SET statement_timeout = 0"), pool.getInitSql());
+    }
+}
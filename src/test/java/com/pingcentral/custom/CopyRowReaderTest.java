@@ -0,0 +1,74 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import com.pingcentral.custom.model.ConfigDatabase;
+import org.junit.Test;
+import org.postgresql.PGStatement;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class CopyRowReaderTest {
+
+    @Test
+    public void testSplit() {
+        List<String> fields = new ArrayList<>();
+        CopyRowReader.split("1\t\\N\ta\\tb\\nc\\\\N\t\n", fields);
+        assertEquals(Arrays.asList("1", null, "a\tb\nc\\N", ""), fields);
+    }
+
+    @Test
+    public void testDecode() {
+        assertNull(CopyRowReader.decode(ColumnKind.INT, null));
+        assertEquals(42, CopyRowReader.decode(ColumnKind.INT, "42"));
+        assertEquals((short) 7, CopyRowReader.decode(ColumnKind.TINYINT, "7"));
+        assertEquals(123456789012L, CopyRowReader.decode(ColumnKind.BIGINT, "123456789012"));
+        assertEquals(new BigDecimal("1.50"), CopyRowReader.decode(ColumnKind.NUMBER, "1.50"));
+        assertEquals(true, CopyRowReader.decode(ColumnKind.BOOLEAN, "t"));
+        assertEquals(false, CopyRowReader.decode(ColumnKind.BOOLEAN, "f"));
+        assertEquals(Date.valueOf("2021-03-04"), CopyRowReader.decode(ColumnKind.DATE, "2021-03-04"));
+        assertEquals(Timestamp.valueOf("2021-03-04 05:06:07.123"), CopyRowReader.decode(ColumnKind.TIMESTAMP, "2021-03-04 05:06:07.123"));
+        assertEquals(Timestamp.from(Instant.parse("2021-03-04T04:06:07Z")), CopyRowReader.decode(ColumnKind.TIMESTAMP, "2021-03-04 05:06:07+01"));
+        assertArrayEquals(new byte[]{0, (byte) 0xff}, (byte[]) CopyRowReader.decode(ColumnKind.BINARY, "\\x00ff"));
+        assertEquals("text", CopyRowReader.decode(ColumnKind.TEXT, "text"));
+    }
+
+    @Test
+    public void testDecodeInfinityAndBeforeChrist() {
+        assertEquals(new Timestamp(PGStatement.DATE_POSITIVE_INFINITY), CopyRowReader.decode(ColumnKind.TIMESTAMP, "infinity"));
+        assertEquals(new Timestamp(PGStatement.DATE_NEGATIVE_INFINITY), CopyRowReader.decode(ColumnKind.TIMESTAMP, "-infinity"));
+        assertEquals(new Date(PGStatement.DATE_POSITIVE_INFINITY), CopyRowReader.decode(ColumnKind.DATE, "infinity"));
+        assertEquals(new Date(PGStatement.DATE_NEGATIVE_INFINITY), CopyRowReader.decode(ColumnKind.DATE, "-infinity"));
+
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(Calendar.ERA, GregorianCalendar.BC);
+        calendar.set(44, Calendar.MARCH, 15, 11, 0, 0);
+        Timestamp expected = new Timestamp(calendar.getTimeInMillis());
+        expected.setNanos(500_000_000);
+        assertEquals(expected, CopyRowReader.decode(ColumnKind.TIMESTAMP, "0044-03-15 12:00:00.5+01 BC"));
+
+        calendar.setTimeZone(TimeZone.getDefault());
+        calendar.set(44, Calendar.MARCH, 15, 0, 0, 0);
+        assertEquals(new Date(calendar.getTimeInMillis()), CopyRowReader.decode(ColumnKind.DATE, "0044-03-15 BC"));
+        calendar.set(Calendar.HOUR_OF_DAY, 12);
+        assertEquals(new Timestamp(calendar.getTimeInMillis()), CopyRowReader.decode(ColumnKind.TIMESTAMP, "0044-03-15 12:00:00 BC"));
+        assertTrue(((Timestamp) CopyRowReader.decode(ColumnKind.TIMESTAMP, "0044-03-15 12:00:00 BC")).before(Timestamp.valueOf("0001-01-01 00:00:00")));
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(ConfigDatabase.EXTRACT_METHOD_JDBC, DatabaseManagerTest.config("{'source_database': {}}").getSourceDatabase().getExtractMethod());
+        assertEquals(ConfigDatabase.EXTRACT_METHOD_COPY, DatabaseManagerTest.config("{'source_database': {'extract_method': 'copy'}}").getSourceDatabase().getExtractMethod());
+    }
+}
@@ -0,0 +1,39 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ConfigDatabase;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+
+import static org.junit.Assert.assertEquals;
+
+public class CopyRowWriterTest {
+
+    @Test
+    public void testAppendValue() {
+        assertEquals("\\N", format(null));
+        assertEquals("t", format(true));
+        assertEquals("f", format(false));
+        assertEquals("42", format(42));
+        assertEquals("10000000000", format(new BigDecimal("1E+10")));
+        assertEquals("2021-03-04", format(Date.valueOf("2021-03-04")));
+        assertEquals("2021-03-04 05:06:07.123", format(Timestamp.valueOf("2021-03-04 05:06:07.123")));
+        assertEquals("\\\\x00ff7f", format(new byte[]{0, (byte) 0xff, 0x7f}));
+        assertEquals("a\\tb\\nc\\rd\\\\e", format("a\tb\nc\rd\\e"));
+        assertEquals("\\\\N", format("\\N"));
+    }
+
+    private String format(Object value) {
+        StringBuilder buffer = new StringBuilder();
+        CopyRowWriter.appendValue(buffer, value);
+        return buffer.toString();
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(ConfigDatabase.LOAD_METHOD_INSERT, DatabaseManagerTest.config("{'target_databases': [{}]}").getTargetDatabases().get(0).getLoadMethod());
+        assertEquals(ConfigDatabase.LOAD_METHOD_COPY, DatabaseManagerTest.config("{'target_databases': [{'load_method': 'copy'}]}").getTargetDatabases().get(0).getLoadMethod());
+    }
+}
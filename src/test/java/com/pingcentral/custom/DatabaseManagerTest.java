@@ -154,6 +154,46 @@ public class DatabaseManagerTest {
         }
     }
 
+    @Test
+    public void testConfigInvalid09() {
+        try {
+            new DatabaseManager("src/test/resources/config-invalid-09.json");
+            fail("Config is invalid");
+        } catch (Exception e) {
+            assertEquals("The values of {batch_size} and {commit_every} have to be greater than 0", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConfigInvalid10() {
+        try {
+            new DatabaseManager("src/test/resources/config-invalid-10.json");
+            fail("Config is invalid");
+        } catch (Exception e) {
+            assertEquals("The {max_size} of the {connection_pool} of database test postgresql database has to be at least 5 and not less than {min_size}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConfigInvalid11() {
+        try {
+            new DatabaseManager("src/test/resources/config-invalid-11.json");
+            fail("Config is invalid");
+        } catch (Exception e) {
+            assertEquals("The {duplicate_handling} 'update' is not supported for the {load_method} 'copy' of target database 'test postgresql database'", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testConfigInvalid12() {
+        try {
+            new DatabaseManager("src/test/resources/config-invalid-12.json");
+            fail("Config is invalid");
+        } catch (Exception e) {
+            assertEquals("The {watermarks} need a {watermark_file}", e.getMessage());
+        }
+    }
+
     @Test
     public void testConfigInvalid07() {
         StringBuilder loggingMessage = new StringBuilder();
@@ -209,4 +249,11 @@ public class DatabaseManagerTest {
                 loggingMessage.toString()
         );
     }
+
+    /**
+     * Reads a configuration like {@link DatabaseManager} does, without validating it. Single quotes stand for double quotes
+     */
+    static Config config(String json) throws Exception {
+        return new ObjectMapper().readValue(json.replace('\'', '"'), Config.class);
+    }
 }
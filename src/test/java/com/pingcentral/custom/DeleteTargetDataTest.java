@@ -0,0 +1,126 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+
+public class DeleteTargetDataTest {
+
+    private static final String SCHEMA = "create table application (id bigint primary key, name varchar(255), enabled boolean);"
+            + "create table application_config (id bigint primary key, application_id bigint references application(id), config clob);"
+            + "create table audit_event (event_id bigint, application_id bigint references application(id), created timestamp, tag_name varchar(64));"
+            + "create table tag (tag_name varchar(64) primary key)";
+
+    private Connection source;
+    private Connection target;
+
+    @Before
+    public void setUp() throws Exception {
+        source = DriverManager.getConnection("jdbc:h2:mem:transfer_source;DB_CLOSE_DELAY=-1", "sa", "");
+        target = DriverManager.getConnection("jdbc:h2:mem:transfer_target;DB_CLOSE_DELAY=-1", "sa", "");
+        execute(source, SCHEMA);
+        execute(target, SCHEMA);
+        execute(target, "insert into application select x, 'application ' || x, true from system_range(1, 100);"
+                + "insert into application_config select x, x, 'config ' || x from system_range(1, 50);"
+                + "insert into audit_event select x, mod(x, 100) + 1, null, 'red' from system_range(1, 200);"
+                + "insert into tag values ('red'), ('blue')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(source, "drop all objects");
+        execute(target, "drop all objects");
+        source.close();
+        target.close();
+    }
+
+    @Test
+    public void testTruncateInParallel() throws Exception {
+        List<String> warnings = wipe(Config.WIPE_STRATEGY_TRUNCATE);
+        assertEquals(Collections.emptyList(), warnings);
+        assertEmpty();
+        // referential integrity is turned on again
+        assertThrows(SQLException.class, () -> execute(target, "insert into application_config values (1, 1, 'config')"));
+    }
+
+    @Test
+    public void testDeleteInParallel() throws Exception {
+        // DELETE fails unless the referencing tables were wiped first
+        List<String> warnings = wipe(Config.WIPE_STRATEGY_DELETE);
+        assertEquals(Collections.emptyList(), warnings);
+        assertEmpty();
+    }
+
+    @Test
+    public void testRemainingRowsAreLogged() throws Exception {
+        // a table of the target that is not part of the changelog keeps referencing the tags
+        execute(target, "create table tag_usage (tag_name varchar(64) references tag(tag_name));"
+                + "insert into tag_usage values ('red')");
+        List<String> warnings = wipe(Config.WIPE_STRATEGY_DELETE);
+        assertEquals(2, warnings.size());
+        assertTrue(warnings.get(0), warnings.get(0).startsWith("Table: tag, data could not be deleted"));
+        assertEquals("Table: tag, 2 rows remain after deleting target database data", warnings.get(1));
+        assertEquals(0, count(target, "select count(*) from application"));
+        assertEquals(2, count(target, "select count(*) from tag"));
+    }
+
+    private List<String> wipe(String wipeStrategy) throws Exception {
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-10.json");
+        dm.getConfig().setWipeStrategy(wipeStrategy);
+        dm.getConfig().setParallelWorkers(3);
+        dm.processLiquibaseFiles();
+        List<String> warnings = new ArrayList<>();
+        Handler handler = TableTransferTest.handler(warnings, "Table: ");
+        Logger logger = Logger.getLogger(DatabaseManager.class.getName());
+        logger.addHandler(handler);
+        dm.initDb(true, true);
+        try {
+            dm.deleteDataFromTargetDbms();
+        } finally {
+            dm.closeDb(true, true);
+            logger.removeHandler(handler);
+        }
+        return warnings;
+    }
+
+    private void assertEmpty() throws Exception {
+        for (String table : new String[]{"application", "application_config", "audit_event", "tag"}) {
+            assertEquals(table, 0, count(target, "select count(*) from " + table));
+        }
+    }
+
+    private static long count(Connection connection, String query) throws Exception {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            for (String next : sql.split(";")) {
+                stmt.execute(next);
+            }
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(Config.WIPE_STRATEGY_DELETE, DatabaseManagerTest.config("{}").getWipeStrategy());
+        assertEquals(Config.WIPE_STRATEGY_TRUNCATE, DatabaseManagerTest.config("{'wipe_strategy': 'truncate'}").getWipeStrategy());
+    }
+}
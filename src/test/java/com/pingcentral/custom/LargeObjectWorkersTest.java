@@ -0,0 +1,94 @@
+package com.pingcentral.custom;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class LargeObjectWorkersTest {
+
+    @Test
+    public void testValuesKeepTheirOrder() throws Exception {
+        Set<Connection> used = ConcurrentHashMap.newKeySet();
+        List<Connection> released = new ArrayList<>();
+        ConnectionProvider connections = provider(released);
+        List<PendingValue> values = new ArrayList<>();
+        try (LargeObjectWorkers workers = new LargeObjectWorkers(connections, connections, 3)) {
+            for (int i = 0; i < 50; i++) {
+                int delay = (50 - i) % 4;
+                values.add(workers.load((source, value) -> {
+                    assertFalse(source.getAutoCommit());
+                    used.add(source);
+                    LockSupport.parkNanos(delay * 1_000_000L);
+                    return "row " + value;
+                }, i));
+            }
+            values.add(workers.store((target, value) -> "oid of " + value, "text"));
+            for (int i = 0; i < 50; i++) {
+                assertFalse(values.get(i).isConverted());
+                assertEquals("row " + i, values.get(i).get());
+            }
+            assertTrue(values.get(50).isConverted());
+            assertEquals("oid of text", values.get(50).get());
+        }
+        assertTrue(used.size() <= 3);
+        assertEquals(used.size() + 1, released.size());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        try (LargeObjectWorkers workers = new LargeObjectWorkers(provider(new ArrayList<>()), provider(new ArrayList<>()), 1)) {
+            PendingValue value = workers.load((source, oid) -> {
+                throw new SQLException("large object " + oid + " does not exist");
+            }, 5L);
+            SQLException e = assertThrows(SQLException.class, value::get);
+            assertEquals("large object 5 does not exist", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBinderResolvesPendingValues() throws Exception {
+        ColumnBinder binder = new ColumnBinder(1, source -> null, (target, value) -> "converted " + value, (target, index, value) -> {
+        });
+        try (LargeObjectWorkers workers = new LargeObjectWorkers(provider(new ArrayList<>()), provider(new ArrayList<>()), 1)) {
+            assertEquals("converted a", binder.convert(null, "a"));
+            assertEquals("stored b", binder.convert(null, workers.store((target, value) -> "stored " + value, "b")));
+            assertEquals("converted c", binder.convert(null, workers.load((source, value) -> value, "c")));
+        }
+    }
+
+    private static ConnectionProvider provider(List<Connection> released) {
+        return new ConnectionProvider() {
+            @Override
+            public Connection acquire() throws SQLException {
+                return DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+            }
+
+            @Override
+            public void release(Connection connection) {
+                synchronized (released) {
+                    released.add(connection);
+                }
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    // ignored
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(0, DatabaseManagerTest.config("{}").getLargeObjectWorkers());
+        assertEquals(2, DatabaseManagerTest.config("{'large_object_workers': 2}").getLargeObjectWorkers());
+    }
+}
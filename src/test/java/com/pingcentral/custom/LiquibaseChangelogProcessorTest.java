@@ -0,0 +1,70 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class LiquibaseChangelogProcessorTest {
+
+    private LiquibaseChangelogProcessor processor;
+
+    @Before
+    public void setUp() {
+        processor = new LiquibaseChangelogProcessor("src/test/resources/changelog/changelog-master.xml", "mysql", "postgresql");
+        processor.processLiquibaseFiles();
+    }
+
+    @Test
+    public void testTablesInCreationOrder() {
+        assertEquals(Arrays.asList("application", "application_config", "audit_event", "tag"), new ArrayList<>(processor.getSourceTables().keySet()));
+        TableColumnTypeSelect source = processor.getSourceTables().get("application_config").get(0);
+        TableColumnTypeSelect target = processor.getTargetTables().get("application_config").get(0);
+        assertEquals("longtext", source.getColumnTypes().get(2).getColumnType());
+        assertEquals("clob", target.getColumnTypes().get(2).getColumnType());
+        assertEquals("SELECT id,application_id,config FROM application_config;", source.getSelectStmt());
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?)", target.getInsertStmt());
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?),(?,?,?)", target.getMultiRowInsertStmt(2));
+        assertEquals(65535 / 3, target.getMaxRowsPerInsert());
+    }
+
+    @Test
+    public void testTableDependencies() {
+        Map<String, Set<String>> dependencies = processor.getTableDependencies();
+        assertEquals(Collections.singleton("application"), dependencies.get("application_config"));
+        // fk_audit_tag was dropped again
+        assertEquals(Collections.singleton("application"), dependencies.get("audit_event"));
+        assertNull(dependencies.get("application"));
+        assertNull(dependencies.get("tag"));
+    }
+
+    @Test
+    public void testKeyRangeStatements() {
+        TableColumnTypeSelect application = processor.getSourceTables().get("application").get(0);
+        assertEquals(Collections.singletonList("id"), application.getPrimaryKeyColumns());
+        assertEquals("SELECT MIN(id),MAX(id) FROM application", application.getKeyBoundsStmt());
+        assertEquals("SELECT id,name,enabled FROM application WHERE id >= ? AND id < ? ORDER BY id", application.getChunkSelectStmt());
+        // a varchar primary key cannot be split into ranges
+        TableColumnTypeSelect tag = processor.getSourceTables().get("tag").get(0);
+        assertEquals(Collections.singletonList("tag_name"), tag.getPrimaryKeyColumns());
+        assertNull(tag.getChunkSelectStmt());
+        // no primary key at all
+        assertNull(processor.getSourceTables().get("audit_event").get(0).getKeyBoundsStmt());
+    }
+
+    @Test
+    public void testConflictStatements() {
+        TableColumnTypeSelect target = processor.getTargetTables().get("application_config").get(0);
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?) ON CONFLICT DO NOTHING", target.getInsertIgnoreStmt());
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?) ON CONFLICT (id) DO UPDATE SET application_id=EXCLUDED.application_id,config=EXCLUDED.config", target.getUpsertStmt());
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?),(?,?,?) ON CONFLICT DO NOTHING", target.getMultiRowStmt(target.getInsertIgnoreStmt(), 2));
+        TableColumnTypeSelect source = processor.getSourceTables().get("application_config").get(0);
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?) ON DUPLICATE KEY UPDATE id=id", source.getInsertIgnoreStmt());
+        assertEquals("INSERT INTO application_config(id,application_id,config) VALUES (?,?,?) ON DUPLICATE KEY UPDATE application_id=VALUES(application_id),config=VALUES(config)", source.getUpsertStmt());
+        // PostgreSQL needs the primary key to update
+        assertNull(processor.getTargetTables().get("audit_event").get(0).getUpsertStmt());
+    }
+}
@@ -0,0 +1,39 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.ConfigDatabase;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+
+public class LoadDataRowWriterTest {
+
+    @Test
+    public void testAppendValue() {
+        assertEquals("\\N", format(null));
+        assertEquals("1", format(true));
+        assertEquals("0", format(false));
+        assertEquals("0.00001", format(new BigDecimal("1E-5")));
+        assertEquals("00ff7f", format(new byte[]{0, (byte) 0xff, 0x7f}));
+        assertEquals("a\\tb\\nc\\rd\\\\e\\0", format("a\tb\nc\rd\\e\0"));
+    }
+
+    private String format(Object value) {
+        StringBuilder buffer = new StringBuilder();
+        LoadDataRowWriter.appendValue(buffer, value);
+        return buffer.toString();
+    }
+
+    @Test
+    public void testConfig() {
+        assertEquals(Config.DUPLICATE_HANDLING_FAIL, new Config().getDuplicateHandling());
+        Config config = new DatabaseManager("src/test/resources/config-correct-09.json").getConfig();
+        assertEquals(ConfigDatabase.EXTRACT_METHOD_COPY, config.getSourceDatabase().getExtractMethod());
+        assertEquals(Config.DUPLICATE_HANDLING_IGNORE, config.getDuplicateHandling());
+        ConfigDatabase targetDb = config.getTargetDatabases().get(0);
+        assertEquals(ConfigDatabase.LOAD_METHOD_LOAD_DATA, targetDb.getLoadMethod());
+        assertEquals(2, targetDb.getTranslateFromPostgresClobObjects().size());
+    }
+}
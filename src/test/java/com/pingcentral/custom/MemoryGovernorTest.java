@@ -0,0 +1,57 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class MemoryGovernorTest {
+
+    @Test
+    public void testBudget() throws Exception {
+        MemoryGovernor memory = new MemoryGovernor(100);
+        assertTrue(memory.reserve(60, 0));
+        assertTrue(memory.reserve(40, 0));
+        assertFalse(memory.reserve(1, 10));
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return memory.reserve(50, TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                return false;
+            }
+        });
+        memory.release(60);
+        assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        assertEquals(100, memory.getPeakBytes());
+    }
+
+    @Test
+    public void testBatchLargerThanBudget() throws Exception {
+        MemoryGovernor memory = new MemoryGovernor(100);
+        assertTrue(memory.reserve(500, 0));
+        assertFalse(memory.reserve(1, 0));
+        memory.release(500);
+        assertTrue(memory.reserve(1, 0));
+        assertEquals(500, memory.getPeakBytes());
+    }
+
+    @Test
+    public void testNoLimit() throws Exception {
+        MemoryGovernor memory = new MemoryGovernor(0);
+        assertTrue(memory.reserve(Long.MAX_VALUE / 2, 0));
+        assertTrue(memory.reserve(1, 0));
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Config config = DatabaseManagerTest.config("{}");
+        assertEquals(0, config.getMemoryBudget());
+        assertEquals(1024 * 1024, config.getSpillThreshold());
+        config = DatabaseManagerTest.config("{'memory_budget': 268435456, 'spill_threshold': 65536}");
+        assertEquals(268435456, config.getMemoryBudget());
+        assertEquals(65536, config.getSpillThreshold());
+    }
+}
@@ -0,0 +1,50 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+public class RejectFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testDescribeKey() {
+        TableColumnTypeSelect table = table();
+        assertEquals("id=1,name=a b,data=<2 bytes>", RejectFile.describeKey(table, new Object[]{1, "a\nb", new byte[2]}));
+        table.setPrimaryKeyColumns(Collections.singletonList("ID"));
+        assertEquals("id=1", RejectFile.describeKey(table, new Object[]{1, "a", null}));
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        File file = new File(folder.getRoot(), "rejects.tsv");
+        TableColumnTypeSelect table = table();
+        table.setPrimaryKeyColumns(Collections.singletonList("id"));
+        try (RejectFile rejects = new RejectFile(file.getPath())) {
+            rejects.reject(table, new Object[]{1, "a", null}, "duplicate key\nvalue");
+            rejects.reject(table, new Object[]{2, "b", null}, null);
+            assertEquals(2, rejects.getCount());
+        }
+        assertEquals("tag\tid=1\tduplicate key value\ntag\tid=2\t\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+    }
+
+    private TableColumnTypeSelect table() {
+        TableColumnTypeSelect table = new TableColumnTypeSelect();
+        table.setTableName("tag");
+        table.addColumnType(new ColumnType("id", "int"));
+        table.addColumnType(new ColumnType("name", "varchar(20)"));
+        table.addColumnType(new ColumnType("data", "blob"));
+        return table;
+    }
+}
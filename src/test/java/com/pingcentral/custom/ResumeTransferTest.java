@@ -0,0 +1,245 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.Dialect;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class ResumeTransferTest {
+
+    private static final String SCHEMA = "create table application (id bigint primary key, name varchar(255), enabled boolean);"
+            + "create table application_config (id bigint primary key, application_id bigint references application(id), config clob);"
+            + "create table audit_event (event_id bigint, application_id bigint, created timestamp, tag_name varchar(64));"
+            + "create table tag (tag_name varchar(64) primary key)";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection source;
+    private Connection target;
+
+    @Before
+    public void setUp() throws Exception {
+        DriverManager.registerDriver(FailingDriver.INSTANCE);
+        source = DriverManager.getConnection("jdbc:h2:mem:resume_source;DB_CLOSE_DELAY=-1", "sa", "");
+        target = DriverManager.getConnection("jdbc:h2:mem:resume_target;DB_CLOSE_DELAY=-1", "sa", "");
+        execute(source, SCHEMA);
+        execute(target, SCHEMA);
+        execute(source, "insert into application select x, 'application ' || x, mod(x, 2) = 0 from system_range(1, 500);"
+                + "insert into application_config select x, 1, 'config ' || x from system_range(1, 30);"
+                + "insert into audit_event select x, 1, timestamp '2024-01-01 10:00:00' + x * interval '1' minute, null from system_range(1, 50);"
+                + "insert into tag values ('red'), ('blue')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FailingDriver.FAILING_ROWS.clear();
+        DriverManager.deregisterDriver(FailingDriver.INSTANCE);
+        execute(source, "drop all objects");
+        execute(target, "drop all objects");
+        source.close();
+        target.close();
+    }
+
+    @Test
+    public void testResumeAfterReadFailure() throws Exception {
+        // the source fails in the middle of the chunk [201, 301) and at the row 30 of the unkeyed table
+        FailingDriver.FAILING_ROWS.put("application", "250");
+        FailingDriver.FAILING_ROWS.put("audit_event", "30");
+        File checkpoint = new File(folder.getRoot(), "checkpoint.tsv");
+        transfer(checkpoint, false);
+        String progress = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8);
+        assertTrue(progress.contains("range\tapplication\t201\t221\n"));
+        assertFalse(progress.contains("range\tapplication\t201\t301\n"));
+        assertEquals(0, count(target, "select count(*) from application where id between 250 and 300"));
+        assertEquals(400, count(target, "select count(*) from application where id < 201 or id > 300"));
+        assertFalse(progress.contains("done\tapplication\n"));
+        assertTrue(progress.contains("started\taudit_event\n"));
+        assertFalse(progress.contains("done\taudit_event\n"));
+        assertTrue(progress.contains("done\ttag\n"));
+
+        FailingDriver.FAILING_ROWS.clear();
+        transfer(checkpoint, true);
+        assertEquals(count(source, "select count(*) from application"), count(target, "select count(*) from application"));
+        assertEquals(count(source, "select count(*) from audit_event"), count(target, "select count(*) from audit_event"));
+        assertRows("select id, name, enabled from application order by id");
+        assertRows("select id, application_id, config from application_config order by id");
+        assertRows("select event_id, application_id, created from audit_event order by event_id");
+        assertRows("select tag_name from tag order by tag_name");
+        progress = new String(Files.readAllBytes(checkpoint.toPath()), StandardCharsets.UTF_8);
+        assertTrue(progress.contains("done\tapplication\n"));
+        assertTrue(progress.contains("done\taudit_event\n"));
+    }
+
+    private void transfer(File checkpoint, boolean resume) throws Exception {
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-08.json");
+        dm.getConfig().setCheckpointFile(checkpoint.getPath());
+        dm.processLiquibaseFiles();
+        dm.initDb(true, true);
+        try {
+            if (!resume) {
+                dm.deleteDataFromTargetDbms();
+            }
+            dm.transferFromDbToDb(resume);
+        } finally {
+            dm.closeDb(true, true);
+        }
+    }
+
+    private void assertRows(String query) throws Exception {
+        assertEquals(rows(source, query), rows(target, query));
+    }
+
+    private static String rows(Connection connection, String query) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    sb.append(rs.getString(i)).append(i < columns ? "," : "\n");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long count(Connection connection, String query) throws Exception {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            for (String next : sql.split(";")) {
+                stmt.execute(next);
+            }
+        }
+    }
+
+    /**
+     * Wraps the H2 connections of <code>jdbc:failing:</code> URLs. Reading a table fails when the first column of a row
+     * has the value registered for the table, as if the connection was lost
+     */
+    static final class FailingDriver implements Driver {
+
+        static final FailingDriver INSTANCE = new FailingDriver();
+        static final Map<String, String> FAILING_ROWS = new ConcurrentHashMap<>();
+        private static final String PREFIX = "jdbc:failing:";
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            Connection connection = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+            return proxy(Connection.class, connection, (method, result, args) -> {
+                if (!(result instanceof Statement)) {
+                    return result;
+                }
+                String prepared = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                return proxy(method.getReturnType(), result, (stmtMethod, stmtResult, stmtArgs) ->
+                        stmtResult instanceof ResultSet ? failing((ResultSet) stmtResult, prepared != null ? prepared : (String) stmtArgs[0]) : stmtResult);
+            });
+        }
+
+        private static ResultSet failing(ResultSet resultSet, String sql) {
+            String failingRow = FAILING_ROWS.entrySet().stream()
+                    .filter(entry -> Pattern.compile("\\bFROM " + entry.getKey() + "\\b", Pattern.CASE_INSENSITIVE).matcher(sql).find())
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(null);
+            return proxy(ResultSet.class, resultSet, (method, result, args) -> {
+                if (method.getName().equals("next") && Boolean.TRUE.equals(result) && resultSet.getString(1).equals(failingRow)) {
+                    throw new SQLException(String.format("Connection lost while reading row %s", failingRow));
+                }
+                return result;
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, Object target, Interceptor interceptor) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                try {
+                    return interceptor.intercept(method, method.invoke(target, args), args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url.startsWith(PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getLogger(FailingDriver.class.getName());
+        }
+
+        private interface Interceptor {
+            Object intercept(Method method, Object result, Object[] args) throws Exception;
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Config config = DatabaseManagerTest.config("{}");
+        assertEquals(0, config.getChunkSize());
+        assertFalse(config.isConsistentSnapshot());
+        config = DatabaseManagerTest.config("{'chunk_size': 50000, 'consistent_snapshot': true, "
+                + "'source_database': {'dbms_type': 'mysql', 'fetch_size': 250}, 'target_databases': [{'dbms_type': 'postgresql'}]}");
+        assertEquals(50000, config.getChunkSize());
+        assertTrue(config.isConsistentSnapshot());
+        assertEquals(250, config.getSourceDatabase().getFetchSize());
+        assertEquals(Dialect.MYSQL, config.getSourceDatabase().getDialect());
+        assertEquals(Dialect.POSTGRESQL, config.getTargetDatabases().get(0).getDialect());
+        assertEquals(1000, DatabaseManagerTest.config("{'source_database': {'dbms_type': 'h2'}}").getSourceDatabase().getFetchSize());
+    }
+}
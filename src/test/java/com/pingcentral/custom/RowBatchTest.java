@@ -0,0 +1,106 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnKind;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+public class RowBatchTest {
+
+    private static final ColumnBinder[] BINDERS = {
+            ColumnBinders.forKind(ColumnKind.INT, 1, 1),
+            ColumnBinders.forKind(ColumnKind.TEXT, 2, 2),
+            ColumnBinders.forKind(ColumnKind.BOOLEAN, 3, 3)
+    };
+
+    @Test
+    public void testValues() {
+        RowBatch batch = new RowBatch(BINDERS, 100);
+        for (int r = 0; r < 100; r++) {
+            int row = batch.nextRow();
+            batch.set(row, 0, r % 3 == 0 ? null : r);
+            batch.set(row, 1, "row " + r);
+            batch.set(row, 2, r % 2 == 0);
+            batch.addRow();
+        }
+        assertTrue(batch.isFull());
+        assertTrue(BINDERS[0].isPrimitive());
+        assertFalse(BINDERS[1].isPrimitive());
+        for (int r = 0; r < 100; r++) {
+            assertEquals(r % 3 == 0, batch.isNull(r, 0));
+            assertEquals(r % 3 == 0 ? null : r, batch.get(r, 0));
+            assertEquals("row " + r, batch.get(r, 1));
+            assertEquals(r % 2 == 0, batch.get(r, 2));
+        }
+        assertArrayEquals(new Object[]{7, "row 7", false}, batch.getRow(7));
+    }
+
+    @Test
+    public void testSliceAndReset() {
+        RowBatch batch = new RowBatch(BINDERS, 10);
+        for (int r = 0; r < 10; r++) {
+            int row = batch.nextRow();
+            batch.set(row, 0, r);
+            batch.set(row, 1, null);
+            batch.set(row, 2, true);
+            batch.addRow();
+        }
+        RowBatch slice = batch.slice(5, 8);
+        assertEquals(3, slice.size());
+        assertEquals(6, slice.get(1, 0));
+        assertTrue(slice.isNull(1, 1));
+        batch.reset(4);
+        assertEquals(0, batch.size());
+        assertEquals(0, batch.getBytes());
+        int row = batch.nextRow();
+        batch.setObject(row, 1, "first");
+        batch.discardRow();
+        assertNull(batch.getObject(row, 1));
+        batch.set(row, 0, null);
+        batch.set(row, 1, "second");
+        batch.set(row, 2, false);
+        batch.addRow();
+        assertArrayEquals(new Object[]{null, "second", false}, batch.getRow(0));
+        assertFalse(batch.isFull());
+    }
+
+    @Test
+    public void testReadAndBind() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("create table source (id int, name varchar(20), active boolean)");
+            stmt.execute("create table target (id int, name varchar(20), active boolean)");
+            stmt.execute("insert into source values (1, 'a', true), (null, null, null), (3, 'c', false)");
+            RowBatch batch = new RowBatch(BINDERS, 3);
+            try (ResultSet rs = stmt.executeQuery("select id, name, active from source order by name nulls last")) {
+                while (rs.next()) {
+                    int row = batch.nextRow();
+                    for (int i = 0; i < BINDERS.length; i++) {
+                        BINDERS[i].read(rs, batch, row, i, null);
+                    }
+                    batch.addRow();
+                }
+            }
+            try (PreparedStatement insert = connection.prepareStatement("insert into target values (?, ?, ?)")) {
+                for (int r = 0; r < batch.size(); r++) {
+                    for (int i = 0; i < BINDERS.length; i++) {
+                        BINDERS[i].bind(insert, 0, batch, r, i);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            try (ResultSet rs = stmt.executeQuery("select count(*) from target t join source s on t.id is not distinct from s.id"
+                    + " and t.name is not distinct from s.name and t.active is not distinct from s.active")) {
+                rs.next();
+                assertEquals(3, rs.getInt(1));
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.pingcentral.custom;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SpooledLobTest {
+
+    @Test
+    public void testSmallValuesStayInMemory() throws Exception {
+        assertNull(SpooledLob.readText(null));
+        assertEquals("äbc", SpooledLob.readText(new StringReader("äbc"), 3));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) SpooledLob.readBinary(new ByteArrayInputStream(new byte[]{1, 2, 3}), 3));
+    }
+
+    @Test
+    public void testText() throws Exception {
+        String text = text(3 * SpooledLob.BUFFER_SIZE + 7);
+        SpooledLob lob = (SpooledLob) SpooledLob.readText(new StringReader(text), SpooledLob.BUFFER_SIZE);
+        try {
+            assertTrue(lob.isText());
+            assertEquals(text.length(), lob.length());
+            assertEquals(text, SpooledLob.inline(lob));
+            try (Reader reader = lob.openReader()) {
+                char[] head = new char[4];
+                assertEquals(4, reader.read(head));
+                assertEquals("ä€0a", new String(head));
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            SpooledLob.writeText(lob, out);
+            assertEquals(text, new String(out.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            lob.close();
+        }
+    }
+
+    @Test
+    public void testBinary() throws Exception {
+        byte[] bytes = new byte[2 * SpooledLob.BUFFER_SIZE + 1];
+        Arrays.fill(bytes, (byte) 0x7f);
+        SpooledLob lob = (SpooledLob) SpooledLob.readBinary(new ByteArrayInputStream(bytes), SpooledLob.BUFFER_SIZE);
+        InputStream stream = lob.openStream();
+        assertFalse(lob.isText());
+        assertEquals(bytes.length, lob.length());
+        assertArrayEquals(bytes, (byte[]) SpooledLob.inline(lob));
+        assertEquals("<131073 bytes>", lob.toString());
+        SpooledLob.closeAll(new Object[]{1, lob});
+        assertThrows(Exception.class, stream::read);
+        assertThrows(Exception.class, lob::readBytes);
+    }
+
+    private static String text(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; sb.length() < length; i++) {
+            sb.append("ä€").append(i % 10).append('a');
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,167 @@
+package com.pingcentral.custom;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class TableSchedulerTest {
+
+    private static final ConnectionProvider NO_CONNECTIONS = new ConnectionProvider() {
+        @Override
+        public Connection acquire() throws SQLException {
+            throw new SQLException("The jobs do not use connections");
+        }
+
+        @Override
+        public void release(Connection connection) {
+            // nothing was acquired
+        }
+    };
+
+    @Test
+    public void testDependencyOrder() throws Exception {
+        Map<String, Set<String>> runAfter = new HashMap<>();
+        runAfter.put("b", set("a"));
+        runAfter.put("c", set("a", "b"));
+        runAfter.put("e", set("d"));
+        List<String> events = new ArrayList<>();
+        scheduler(Arrays.asList("a", "b", "c", "d", "e"), runAfter).run(3, NO_CONNECTIONS, NO_CONNECTIONS, (item, context) -> {
+            event(events, "start " + item);
+            LockSupport.parkNanos(5_000_000L);
+            event(events, "end " + item);
+        });
+        assertEquals(10, events.size());
+        assertBefore(events, "end a", "start b");
+        assertBefore(events, "end a", "start c");
+        assertBefore(events, "end b", "start c");
+        assertBefore(events, "end d", "start e");
+    }
+
+    @Test
+    public void testWithoutDependenciesOneAfterAnother() throws Exception {
+        List<String> events = new ArrayList<>();
+        scheduler(Arrays.asList("a", "b", "c"), Collections.emptyMap()).run(3, NO_CONNECTIONS, NO_CONNECTIONS, (item, context) -> {
+            event(events, "start " + item);
+            LockSupport.parkNanos(1_000_000L);
+            event(events, "end " + item);
+        });
+        assertEquals(Arrays.asList("start a", "end a", "start b", "end b", "start c", "end c"), events);
+    }
+
+    @Test
+    public void testSubTasksCompleteTheTable() throws Exception {
+        Map<String, Set<String>> runAfter = new HashMap<>();
+        runAfter.put("b", set("a"));
+        List<String> events = new ArrayList<>();
+        Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+        scheduler(Arrays.asList("a", "b"), runAfter).run(3, NO_CONNECTIONS, NO_CONNECTIONS, (item, context) -> {
+            event(events, "start " + item);
+            if (item.equals("a")) {
+                for (int i = 0; i < 6; i++) {
+                    String range = "a" + i;
+                    context.fork(subContext -> {
+                        threads.add(Thread.currentThread());
+                        LockSupport.parkNanos(5_000_000L);
+                        event(events, "end " + range);
+                    });
+                }
+            }
+            event(events, "end " + item);
+        });
+        assertEquals(10, events.size());
+        for (int i = 0; i < 6; i++) {
+            assertBefore(events, "end a" + i, "start b");
+        }
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    public void testBreakCycle() throws Exception {
+        Map<String, Set<String>> runAfter = new HashMap<>();
+        runAfter.put("a", set("b"));
+        runAfter.put("b", set("a"));
+        runAfter.put("c", set("b"));
+        List<String> events = new ArrayList<>();
+        scheduler(Arrays.asList("a", "b", "c"), runAfter).run(2, NO_CONNECTIONS, NO_CONNECTIONS, (item, context) -> {
+            event(events, "start " + item);
+            event(events, "end " + item);
+        });
+        assertEquals(Arrays.asList("start a", "end a", "start b", "end b", "start c", "end c"), events);
+    }
+
+    @Test
+    public void testFailedJobReleasesDependents() throws Exception {
+        Map<String, Set<String>> runAfter = new HashMap<>();
+        runAfter.put("b", set("a"));
+        runAfter.put("c", set("b"));
+        List<String> events = new ArrayList<>();
+        scheduler(Arrays.asList("a", "b", "c"), runAfter).run(2, NO_CONNECTIONS, NO_CONNECTIONS, (item, context) -> {
+            event(events, "start " + item);
+            if (item.equals("a")) {
+                throw new SQLException("table a failed");
+            }
+            if (item.equals("b")) {
+                context.fork(subContext -> {
+                    event(events, "start b0");
+                    throw new SQLException("range of table b failed");
+                });
+            }
+        });
+        assertEquals(Arrays.asList("start a", "start b", "start b0", "start c"), events);
+    }
+
+    @Test
+    public void testConnectionsOfTheWorker() throws Exception {
+        List<Connection> released = new ArrayList<>();
+        ConnectionProvider connections = new ConnectionProvider() {
+            @Override
+            public Connection acquire() {
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (proxy, method, args) -> null);
+            }
+
+            @Override
+            public synchronized void release(Connection connection) {
+                released.add(connection);
+            }
+        };
+        Set<Connection> used = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        scheduler(Arrays.asList("a", "b", "c"), Collections.emptyMap()).run(1, connections, NO_CONNECTIONS, (item, context) -> {
+            assertSame(context.getSourceConnection(), context.getSourceConnection());
+            used.add(context.getSourceConnection());
+        });
+        assertEquals(1, used.size());
+        assertEquals(1, released.size());
+        assertSame(used.iterator().next(), released.get(0));
+    }
+
+    private static TableScheduler<String> scheduler(List<String> items, Map<String, Set<String>> runAfter) {
+        return new TableScheduler<>(items, Function.identity(), runAfter);
+    }
+
+    private static Set<String> set(String... keys) {
+        return new HashSet<>(Arrays.asList(keys));
+    }
+
+    private static void event(List<String> events, String event) {
+        synchronized (events) {
+            events.add(event);
+        }
+    }
+
+    private static void assertBefore(List<String> events, String first, String then) {
+        assertTrue(String.format("%s before %s in %s", first, then, events), events.indexOf(first) >= 0 && events.indexOf(first) < events.indexOf(then));
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        assertEquals(1, DatabaseManagerTest.config("{}").getParallelWorkers());
+        assertEquals(4, DatabaseManagerTest.config("{'parallel_workers': 4}").getParallelWorkers());
+    }
+}
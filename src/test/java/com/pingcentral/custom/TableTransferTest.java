@@ -0,0 +1,136 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.Config;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TableTransferTest {
+
+    private static final String SCHEMA = "create table application (id bigint primary key, name varchar(255), enabled boolean);"
+            + "create table application_config (id bigint primary key, application_id bigint references application(id), config clob);"
+            + "create table audit_event (event_id bigint, application_id bigint, created timestamp, tag_name varchar(64));"
+            + "create table tag (tag_name varchar(64) primary key)";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Connection source;
+    private Connection target;
+
+    @Before
+    public void setUp() throws Exception {
+        source = DriverManager.getConnection("jdbc:h2:mem:transfer_source;DB_CLOSE_DELAY=-1", "sa", "");
+        target = DriverManager.getConnection("jdbc:h2:mem:transfer_target;DB_CLOSE_DELAY=-1", "sa", "");
+        execute(source, SCHEMA);
+        execute(target, SCHEMA);
+        execute(source, "insert into application select x, 'application ' || x, true from system_range(1, 100);"
+                + "insert into tag values ('red'), ('blue')");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(source, "drop all objects");
+        execute(target, "drop all objects");
+        source.close();
+        target.close();
+    }
+
+    @Test
+    public void testDuplicatesAreIsolated() throws Exception {
+        // three batches of ten rows contain a row the target already has, the second one two of them
+        execute(target, "insert into application values (5, 'existing 5', false), (15, 'existing 15', false), (17, 'existing 17', false), (100, 'existing 100', false)");
+        File rejectFile = new File(folder.getRoot(), "rejects.tsv");
+        DatabaseManager dm = new DatabaseManager("src/test/resources/config-correct-10.json");
+        dm.getConfig().setRejectFile(rejectFile.getPath());
+        dm.processLiquibaseFiles();
+        List<String> updates = new ArrayList<>();
+        Handler handler = handler(updates, "Target table application updated");
+        Logger logger = Logger.getLogger(DatabaseManager.class.getName());
+        logger.addHandler(handler);
+        dm.initDb(true, true);
+        try {
+            dm.transferFromDbToDb();
+        } finally {
+            dm.closeDb(true, true);
+            logger.removeHandler(handler);
+        }
+        assertEquals(1, updates.size());
+        assertTrue(updates.get(0), updates.get(0).contains("row count: 96, skipped duplicates: 0, rejected: 4,"));
+        assertEquals(100, count(target, "select count(*) from application"));
+        assertEquals(4, count(target, "select count(*) from application where name like 'existing %'"));
+        List<String> rejected = Files.readAllLines(rejectFile.toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, rejected.size());
+        assertEquals("application\tid=5,application\tid=15,application\tid=17,application\tid=100",
+                rejected.stream().map(line -> line.substring(0, line.indexOf('\t', line.indexOf('\t') + 1))).collect(Collectors.joining(",")));
+        assertEquals(2, count(target, "select count(*) from tag"));
+    }
+
+    static Handler handler(List<String> messages, String prefix) {
+        return new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if (record.getMessage().startsWith(prefix)) {
+                    messages.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+                // do nothing
+            }
+
+            @Override
+            public void close() throws SecurityException {
+                // do nothing
+            }
+        };
+    }
+
+    private static long count(Connection connection, String query) throws Exception {
+        try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws Exception {
+        try (Statement stmt = connection.createStatement()) {
+            for (String next : sql.split(";")) {
+                stmt.execute(next);
+            }
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Config config = DatabaseManagerTest.config("{}");
+        assertEquals(1000, config.getBatchSize());
+        assertEquals(10000, config.getCommitEvery());
+        assertEquals(4, config.getQueueDepth());
+        assertNull(config.getRejectFile());
+        config = DatabaseManagerTest.config("{'batch_size': 500, 'commit_every': 5000, 'queue_depth': 8, 'reject_file': './rejects.tsv'}");
+        assertEquals(500, config.getBatchSize());
+        assertEquals(5000, config.getCommitEvery());
+        assertEquals(8, config.getQueueDepth());
+        assertEquals("./rejects.tsv", config.getRejectFile());
+    }
+}
@@ -0,0 +1,38 @@
+package com.pingcentral.custom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class WatermarkFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testValues() throws Exception {
+        File file = new File(folder.getRoot(), "watermarks.tsv");
+        WatermarkFile watermarks = new WatermarkFile(file.getPath());
+        assertNull(watermarks.get("item", "updated_at"));
+        watermarks.set("Item", "Updated_At", "2024-01-02 03:04:05.0");
+        watermarks.set("tag", "id", "10");
+        watermarks.set("tag", "id", "20");
+        assertEquals("2024-01-02 03:04:05.0", watermarks.get("ITEM", "updated_at"));
+        watermarks = new WatermarkFile(file.getPath());
+        assertEquals("2024-01-02 03:04:05.0", watermarks.get("item", "updated_at"));
+        assertEquals("20", watermarks.get("tag", "id"));
+        assertNull(watermarks.get("tag", "version"));
+        assertFalse(new File(folder.getRoot(), "watermarks.tsv.tmp").exists());
+    }
+
+    @Test
+    public void testWithoutFile() throws Exception {
+        WatermarkFile watermarks = new WatermarkFile(null);
+        watermarks.set("tag", "id", "10");
+        assertNull(watermarks.get("tag", "id"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.pingcentral.custom;
+
+import com.pingcentral.custom.model.ColumnType;
+import com.pingcentral.custom.model.Config;
+import com.pingcentral.custom.model.TableColumnTypeSelect;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.*;
+
+public class WatermarkTest {
+
+    @Test
+    public void testRead() throws Exception {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:", "sa", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("create table item (id int, updated_at timestamp)");
+            TableColumnTypeSelect table = new TableColumnTypeSelect();
+            table.setTableName("item");
+            table.setSelectStmt("SELECT id, updated_at FROM item;");
+            ColumnType id = new ColumnType("id", "int");
+            ColumnType updatedAt = new ColumnType("updated_at", "timestamp");
+            assertNull(Watermark.read(connection, table, id, null));
+
+            stmt.execute("insert into item values (1, timestamp '2024-01-01 10:00:00'), (2, timestamp '2024-01-02 10:00:00'), (3, null)");
+            Watermark watermark = Watermark.read(connection, table, updatedAt, null);
+            assertEquals("2024-01-02 10:00:00.0", watermark.getUpper());
+            assertIds(connection, table, watermark, 1, 2);
+
+            stmt.execute("insert into item values (4, timestamp '2024-01-03 10:00:00')");
+            stmt.execute("update item set updated_at = timestamp '2024-01-03 11:00:00' where id = 1");
+            watermark = Watermark.read(connection, table, updatedAt, watermark.getUpper());
+            assertEquals("2024-01-03 11:00:00.0", watermark.getUpper());
+            assertIds(connection, table, watermark, 1, 4);
+            assertNull(Watermark.read(connection, table, updatedAt, watermark.getUpper()));
+
+            watermark = Watermark.read(connection, table, id, "3");
+            assertEquals("4", watermark.getUpper());
+            assertIds(connection, table, watermark, 4);
+        }
+    }
+
+    private static void assertIds(Connection connection, TableColumnTypeSelect table, Watermark watermark, int... ids) throws Exception {
+        try (PreparedStatement stmt = connection.prepareStatement(watermark.getSelectStmt(table) + " ORDER BY id")) {
+            watermark.bind(stmt);
+            try (ResultSet rs = stmt.executeQuery()) {
+                for (int id : ids) {
+                    assertTrue(rs.next());
+                    assertEquals(id, rs.getInt(1));
+                }
+                assertFalse(rs.next());
+            }
+        }
+    }
+
+    @Test
+    public void testConfig() throws Exception {
+        Config config = DatabaseManagerTest.config("{}");
+        assertNull(config.getWatermarkFile());
+        assertTrue(config.getWatermarks().isEmpty());
+        config = DatabaseManagerTest.config("{'watermark_file': './watermarks.tsv', 'watermarks': [{'table': 'child', 'column': 'updated_at'}]}");
+        assertEquals("./watermarks.tsv", config.getWatermarkFile());
+        assertEquals(1, config.getWatermarks().size());
+        assertEquals("child", config.getWatermarks().get(0).getTable());
+        assertEquals("updated_at", config.getWatermarks().get(0).getColumn());
+    }
+}